@@ -0,0 +1,92 @@
+package com.truex.ctv.referenceapp.ads.benchmarks;
+
+import com.truex.ctv.referenceapp.ads.Ad;
+import com.truex.ctv.referenceapp.ads.AdPod;
+import com.truex.ctv.referenceapp.ads.AdTimeline;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pod construction, state progression and position lookup for pods of 4 to 500 ads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AdPodBenchmark {
+    @Param({"4", "20", "100", "500"})
+    public int podSize;
+
+    private List<Ad> ads;
+    private AdPod pod;
+    private AdTimeline timeline;
+    private long[] lookupPositionsMs;
+    private long[] realDurationsMs;
+    private int nextLookup;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ads = Pods.createAds(podSize);
+        pod = Pods.createPod();
+        pod.setAds(ads);
+
+        timeline = new AdTimeline();
+        timeline.reset(ads);
+
+        // Positions spread over the whole pod, visited in a scattered order
+        lookupPositionsMs = new long[1024];
+        long podDurationMs = timeline.getEndPositionMs(podSize - 1);
+        for (int i = 0; i < lookupPositionsMs.length; i++) {
+            lookupPositionsMs[i] = (i * 7919L * 1000L) % podDurationMs;
+        }
+
+        // Real creative lengths that differ slightly from the nominal durations
+        realDurationsMs = new long[podSize];
+        for (int i = 0; i < podSize; i++) {
+            realDurationsMs[i] = ads.get(i).duration * 1000L + (i % 3) * 40 - 40;
+        }
+    }
+
+    @Benchmark
+    public AdPod constructPod() {
+        AdPod newPod = Pods.createPod();
+        newPod.setAds(Pods.createAds(podSize));
+        return newPod;
+    }
+
+    @Benchmark
+    public int playThroughPod() {
+        pod.start();
+        while (pod.isAdBreakInProgress()) {
+            pod.onAdTransition();
+        }
+        return pod.getCurrentAdIndex();
+    }
+
+    @Benchmark
+    public void lookUpAdAtPosition(Blackhole blackhole) {
+        long positionMs = lookupPositionsMs[nextLookup];
+        nextLookup = (nextLookup + 1) & (lookupPositionsMs.length - 1);
+
+        int adIndex = timeline.getAdIndexAt(positionMs);
+        blackhole.consume(adIndex);
+        blackhole.consume(timeline.getEndPositionMs(adIndex));
+    }
+
+    @Benchmark
+    public boolean refreshRealDurations() {
+        timeline.reset(ads);
+        return timeline.update(realDurationsMs);
+    }
+}
@@ -0,0 +1,262 @@
+package com.truex.ctv.referenceapp.ads.benchmarks;
+
+import com.truex.ctv.referenceapp.ads.http.HttpStack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * A VAST config sized request through {@link HttpStack} to a local HTTPS server that stands in
+ * for the ad server, on a new connection, on a connection opened by {@link HttpStack#prewarm},
+ * and on a connection reused from the pool.
+ *
+ * The stand-in server only speaks HTTP/1.1, so this measures the handshakes that pooling and
+ * pre-warming save, not HTTP/2 multiplexing. Over a real network each handshake also costs
+ * round trips, so the gap is wider on a device.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HttpStackBenchmark {
+    private static final String KEY_STORE = "/standin-server.p12";
+    private static final char[] KEY_STORE_PASSWORD = "standin".toCharArray();
+    private static final String USER_AGENT = "HttpStackBenchmark";
+    private static final long PREWARM_TIMEOUT_MS = 5000;
+
+    /**
+     * Answers every GET with the same VAST config, and HEAD with its headers, over HTTP/1.1 with
+     * keep-alive. The JDK's own HttpServer drops the connection after a HEAD request, which
+     * would defeat pre-warming.
+     */
+    @State(Scope.Benchmark)
+    public static class StandInServer {
+        private SSLServerSocket serverSocket;
+        private ExecutorService executor;
+        private byte[] body;
+        SSLContext clientTls;
+        X509TrustManager trustManager;
+        String url;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException, GeneralSecurityException {
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            try (InputStream in = HttpStackBenchmark.class.getResourceAsStream(KEY_STORE)) {
+                keyStore.load(in, KEY_STORE_PASSWORD);
+            }
+
+            KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagers.init(keyStore, KEY_STORE_PASSWORD);
+            SSLContext serverTls = SSLContext.getInstance("TLS");
+            serverTls.init(keyManagers.getKeyManagers(), null, null);
+
+            // The client trusts the stand-in's self-signed certificate, and nothing else
+            TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagers.init(keyStore);
+            trustManager = (X509TrustManager) trustManagers.getTrustManagers()[0];
+            clientTls = SSLContext.getInstance("TLS");
+            clientTls.init(null, trustManagers.getTrustManagers(), null);
+
+            body = createVastConfig().getBytes(StandardCharsets.UTF_8);
+            serverSocket = (SSLServerSocket) serverTls.getServerSocketFactory().createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "StandInServer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.execute(this::accept);
+            url = "https://localhost:" + serverSocket.getLocalPort() + "/vast/config?slot=1";
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws IOException {
+            serverSocket.close();
+            executor.shutdownNow();
+        }
+
+        HttpStack createStack() {
+            return new HttpStack(USER_AGENT, new OkHttpClient.Builder().sslSocketFactory(clientTls.getSocketFactory(), trustManager));
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    socket.setTcpNoDelay(true);
+                    executor.execute(() -> serve(socket));
+                } catch (IOException e) {
+                    // Closed at the end of the trial
+                }
+            }
+        }
+
+        private void serve(Socket socket) {
+            try (Socket connection = socket) {
+                InputStream in = new BufferedInputStream(connection.getInputStream());
+                OutputStream out = connection.getOutputStream();
+                byte[] headers = ("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: " + body.length
+                    + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+                String method;
+                while ((method = readRequest(in)) != null) {
+                    out.write(headers);
+                    if (!"HEAD".equals(method)) {
+                        out.write(body);
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // The client closed the connection
+            }
+        }
+
+        // Reads the request up to the end of its headers, the requests have no body
+        private static String readRequest(InputStream in) throws IOException {
+            StringBuilder requestLine = new StringBuilder();
+            int matched = 0;
+            boolean inRequestLine = true;
+            int b;
+            while ((b = in.read()) != -1) {
+                if (inRequestLine) {
+                    if (b == '\r' || b == '\n') {
+                        inRequestLine = false;
+                    } else {
+                        requestLine.append((char) b);
+                    }
+                }
+                matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+                if (matched == 4) {
+                    int space = requestLine.indexOf(" ");
+                    return space > 0 ? requestLine.substring(0, space) : requestLine.toString();
+                }
+            }
+            return null;
+        }
+    }
+
+    // A stack of its own for every request, as when each component has its own HTTP client
+    @State(Scope.Thread)
+    public static class ColdStack {
+        HttpStack stack;
+
+        @Setup(Level.Invocation)
+        public void setUp(StandInServer server) {
+            stack = server.createStack();
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            release(stack);
+        }
+    }
+
+    // A stack of its own for every request, with the connection opened ahead of time
+    @State(Scope.Thread)
+    public static class PrewarmedStack {
+        HttpStack stack;
+
+        @Setup(Level.Invocation)
+        public void setUp(StandInServer server) throws InterruptedException {
+            stack = server.createStack();
+            stack.prewarm(Collections.singletonList(server.url));
+            awaitIdleConnection(stack);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            release(stack);
+        }
+    }
+
+    // The one shared stack of the process
+    @State(Scope.Thread)
+    public static class SharedStack {
+        HttpStack stack;
+
+        @Setup(Level.Trial)
+        public void setUp(StandInServer server) {
+            stack = server.createStack();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            release(stack);
+        }
+    }
+
+    @Benchmark
+    public int coldRequest(StandInServer server, ColdStack cold) throws IOException {
+        return fetch(cold.stack, server.url);
+    }
+
+    @Benchmark
+    public int prewarmedRequest(StandInServer server, PrewarmedStack prewarmed) throws IOException {
+        return fetch(prewarmed.stack, server.url);
+    }
+
+    @Benchmark
+    public int pooledRequest(StandInServer server, SharedStack shared) throws IOException {
+        return fetch(shared.stack, server.url);
+    }
+
+    private static int fetch(HttpStack stack, String url) throws IOException {
+        try (Response response = stack.newCall(url).execute()) {
+            return response.body().bytes().length;
+        }
+    }
+
+    private static void awaitIdleConnection(HttpStack stack) throws InterruptedException {
+        long deadlineMs = System.currentTimeMillis() + PREWARM_TIMEOUT_MS;
+        while (stack.getClient().connectionPool().idleConnectionCount() == 0) {
+            if (System.currentTimeMillis() > deadlineMs) {
+                throw new IllegalStateException("Pre-warmed connection not ready within " + PREWARM_TIMEOUT_MS + "ms");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static void release(HttpStack stack) {
+        stack.evictIdleConnections();
+        stack.getClient().dispatcher().executorService().shutdown();
+    }
+
+    private static String createVastConfig() {
+        StringBuilder json = new StringBuilder("{\"ads\":[");
+        for (int i = 0; i < 8; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"ad-").append(i).append("\",\"url\":\"https://media.example.com/creative-").append(i)
+                .append(".mp4\",\"duration\":30,\"trackers\":[\"https://events.example.com/impression?ad=").append(i).append("\"]}");
+        }
+        return json.append("]}").toString();
+    }
+}
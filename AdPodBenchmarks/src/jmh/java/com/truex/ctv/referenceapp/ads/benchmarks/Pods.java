@@ -0,0 +1,83 @@
+package com.truex.ctv.referenceapp.ads.benchmarks;
+
+import com.truex.ctv.referenceapp.ads.Ad;
+import com.truex.ctv.referenceapp.ads.AdPod;
+import com.truex.ctv.referenceapp.ads.InteractiveAdRenderer;
+import com.truex.ctv.referenceapp.ads.PodPlayer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic pods and no-op collaborators for the benchmarks.
+ */
+final class Pods {
+    private static final String[] AD_SYSTEMS = {"trueX", "GDFP", "GDFP", "IDVx", "GDFP"};
+
+    static final PodPlayer NO_OP_PLAYER = new PodPlayer() {
+        @Override
+        public void play() {
+        }
+
+        @Override
+        public void seekAndPause(long positionMs) {
+        }
+
+        @Override
+        public void seekTo(long positionMs) {
+        }
+    };
+
+    // Completes every interactive ad without credit as soon as it starts
+    static final InteractiveAdRenderer COMPLETING_RENDERER = new InteractiveAdRenderer() {
+        @Override
+        public void startAd(Ad ad, CompletionCallback callback) {
+            callback.onAdComplete(false);
+        }
+
+        @Override
+        public void stopAd() {
+        }
+    };
+
+    static final AdPod.Listener NO_OP_LISTENER = new AdPod.Listener() {
+        @Override
+        public void onAdStarted(int adIndex, Ad ad) {
+        }
+
+        @Override
+        public void onAdBreakComplete() {
+        }
+
+        @Override
+        public void onSkipToContent() {
+        }
+    };
+
+    private Pods() {
+    }
+
+    /**
+     * A pod of the given size with a mix of interactive and regular ads of 15 to 60 seconds.
+     */
+    static List<Ad> createAds(int size) {
+        List<Ad> ads = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String adSystem = AD_SYSTEMS[i % AD_SYSTEMS.length];
+            boolean interactive = !"GDFP".equals(adSystem);
+            ads.add(new Ad(
+                adSystem,
+                "https://media.example.com/creative-" + i + ".mp4",
+                interactive ? "https://get.example.com/vast/config?slot=" + i : null,
+                15 * (1 + i % 4),
+                i + 1,
+                "ad-" + i
+            ));
+        }
+        return ads;
+    }
+
+    static AdPod createPod() {
+        return new AdPod(NO_OP_PLAYER, COMPLETING_RENDERER, NO_OP_LISTENER);
+    }
+}
@@ -0,0 +1,106 @@
+package com.truex.ctv.referenceapp.ads.benchmarks;
+
+import com.truex.ctv.referenceapp.ads.SubscriberList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event dispatch to player subscribers, and the cost of many ad breaks that each subscribe
+ * several listeners for the break. That the subscribers don't pile up over the breaks is
+ * checked by SubscriberListTest, which runs with the build.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SubscriberListBenchmark {
+    interface EventListener {
+        void onEvent(int value);
+    }
+
+    private static class CountingListener implements EventListener {
+        long sum;
+
+        @Override
+        public void onEvent(int value) {
+            sum += value;
+        }
+    }
+
+    @Param({"5000"})
+    public int breakCount;
+
+    // Events the ad player reports during one break
+    @Param({"20"})
+    public int eventsPerBreak;
+
+    // Listeners subscribed for each break, e.g. progress, boundaries and completion
+    @Param({"4"})
+    public int listenersPerBreak;
+
+    private SubscriberList<EventListener> subscribers;
+    private CountingListener permanentListener;
+    private CountingListener[] adBreakListeners;
+    private int permanentCount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        subscribers = new SubscriberList<>();
+        permanentListener = new CountingListener();
+        adBreakListeners = new CountingListener[listenersPerBreak];
+        for (int i = 0; i < listenersPerBreak; i++) {
+            adBreakListeners[i] = new CountingListener();
+        }
+        subscribers.add(permanentListener);
+        permanentCount = subscribers.getSubscriberCount();
+    }
+
+    @Benchmark
+    public long dispatch() {
+        dispatch(subscribers, 1);
+        return permanentListener.sum;
+    }
+
+    @Benchmark
+    public int soakAdBreaks() {
+        for (int i = 0; i < breakCount; i++) {
+            subscribers.releaseScoped();
+            for (CountingListener listener : adBreakListeners) {
+                subscribers.addScoped(listener);
+            }
+            for (int event = 0; event < eventsPerBreak; event++) {
+                dispatch(subscribers, event);
+            }
+
+            // Half of the breaks end early, e.g. on true[X] credit, and are released on the next one
+            if ((i & 1) == 0) {
+                subscribers.releaseScoped();
+            }
+
+            int count = subscribers.getSubscriberCount();
+            if (count > permanentCount + listenersPerBreak) {
+                throw new IllegalStateException(count + " subscribers after " + (i + 1) + " breaks");
+            }
+        }
+        return subscribers.getSubscriberCount();
+    }
+
+    private static void dispatch(SubscriberList<EventListener> subscribers, int value) {
+        for (int i = 0, n = subscribers.beginDispatch(); i < n; i++) {
+            EventListener listener = subscribers.get(i);
+            if (listener != null) {
+                listener.onEvent(value);
+            }
+        }
+        subscribers.endDispatch();
+    }
+}
@@ -0,0 +1,99 @@
+package com.truex.ctv.referenceapp.ads.benchmarks;
+
+import com.truex.ctv.referenceapp.ads.Ad;
+import com.truex.ctv.referenceapp.ads.vast.VastParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of VMAP responses with 1 to 500 breaks of four ads each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VastParserBenchmark {
+    private static final int ADS_PER_BREAK = 4;
+
+    @Param({"1", "20", "500"})
+    public int breakCount;
+
+    private byte[] vmap;
+    private VastParser parser;
+    private final CountingHandler handler = new CountingHandler();
+
+    @Setup(Level.Trial)
+    public void setUp() throws XmlPullParserException {
+        vmap = createVmap(breakCount).getBytes(StandardCharsets.UTF_8);
+        parser = new VastParser(XmlPullParserFactory.newInstance(), uri -> {
+            throw new IOException("No wrappers in benchmark documents");
+        });
+    }
+
+    @Benchmark
+    public int parseVmap() throws IOException, XmlPullParserException {
+        handler.adCount = 0;
+        parser.parseVmap(new ByteArrayInputStream(vmap), handler);
+        return handler.adCount;
+    }
+
+    private static class CountingHandler implements VastParser.Handler {
+        int adCount;
+
+        @Override
+        public void onAd(Ad ad) {
+            adCount++;
+        }
+    }
+
+    static String createVmap(int breakCount) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<vmap:VMAP xmlns:vmap=\"http://www.iab.net/videosuite/vmap\" version=\"1.0\">\n");
+        for (int b = 0; b < breakCount; b++) {
+            xml.append("<vmap:AdBreak timeOffset=\"").append(formatOffset(b * 60)).append("\" breakType=\"linear\" breakId=\"break-").append(b).append("\">\n")
+                .append("<vmap:AdSource id=\"ads-").append(b).append("\"><vmap:VASTAdData><VAST version=\"3.0\">\n");
+            for (int a = 0; a < ADS_PER_BREAK; a++) {
+                boolean interactive = a == 0;
+                xml.append("<Ad id=\"ad-").append(b).append('-').append(a).append("\" sequence=\"").append(a + 1).append("\"><InLine>")
+                    .append("<AdSystem>").append(interactive ? "trueX" : "GDFP").append("</AdSystem>")
+                    .append("<AdTitle>Ad ").append(a).append("</AdTitle>")
+                    .append("<Impression><![CDATA[https://ads.example.com/impression?ad=").append(a).append("]]></Impression>")
+                    .append("<Creatives><Creative><Linear><Duration>00:00:30.000</Duration>");
+                if (interactive) {
+                    xml.append("<AdParameters><![CDATA[{\"vast_config_url\": \"https://get.truex.com/")
+                        .append(b).append("/vast/config\"}]]></AdParameters>");
+                }
+                xml.append("<TrackingEvents><Tracking event=\"start\"><![CDATA[https://ads.example.com/start]]></Tracking>")
+                    .append("<Tracking event=\"complete\"><![CDATA[https://ads.example.com/complete]]></Tracking></TrackingEvents>")
+                    .append("<MediaFiles>")
+                    .append("<MediaFile delivery=\"progressive\" type=\"video/mp4\" width=\"1920\" height=\"1080\"><![CDATA[https://media.example.com/")
+                    .append(b).append('/').append(a).append("-1080.mp4]]></MediaFile>")
+                    .append("<MediaFile delivery=\"progressive\" type=\"video/mp4\" width=\"1280\" height=\"720\"><![CDATA[https://media.example.com/")
+                    .append(b).append('/').append(a).append("-720.mp4]]></MediaFile>")
+                    .append("</MediaFiles></Linear></Creative></Creatives></InLine></Ad>\n");
+            }
+            xml.append("</VAST></vmap:VASTAdData></vmap:AdSource></vmap:AdBreak>\n");
+        }
+        xml.append("</vmap:VMAP>\n");
+        return xml.toString();
+    }
+
+    private static String formatOffset(int seconds) {
+        return String.format("%02d:%02d:%02d.000", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+}
@@ -0,0 +1,265 @@
+package com.truex.ctv.referenceapp.ads.soak;
+
+import com.truex.ctv.referenceapp.ads.Ad;
+import com.truex.ctv.referenceapp.ads.AdPod;
+import com.truex.ctv.referenceapp.ads.ManualScheduler;
+import com.truex.ctv.referenceapp.ads.PlaybackWatchdog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Plays thousands of randomized ad breaks through {@link AdPod} and {@link PlaybackWatchdog} in
+ * virtual time, with a simulated player that stalls and a simulated interactive ad renderer that
+ * earns credit, opts out, errors, cancels the stream or never responds.
+ *
+ * Checks the invariants of every break, and reports the throughput, the deepest the scheduler
+ * queue got and how much the heap grew. Exits with a non-zero status on any violation, or when
+ * the throughput or heap growth is past its threshold, so it can fail the build:
+ *   ./gradlew :AdPodBenchmarks:podSoak
+ *
+ * Options: --breaks N, --seed N, --min-transitions-per-second N, --max-heap-growth-kb N,
+ * --max-queue-depth N
+ */
+public class PodSoak {
+    private static final long TICK_MS = 250;
+    // Time given to late renderer callbacks after a break ended, before its leftovers are checked
+    private static final long DRAIN_MS = 1000;
+    // Breaks played before the heap baseline is taken, so that warm-up allocations don't count
+    private static final int WARM_UP_BREAKS = 500;
+    private static final int MAX_REPORTED_VIOLATIONS = 10;
+
+    private static final String[] AD_SYSTEMS = {"trueX", "IDVx", "GDFP", "GDFP", "GDFP"};
+
+    private final Random random;
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private final PlaybackWatchdog watchdog;
+    private final SimulatedPlayer player;
+    private final SimulatedInteractiveRenderer renderer;
+    private final AdPod pod;
+
+    private final List<String> violations = new ArrayList<>();
+    private int breakNumber;
+    private int lastAdIndex;
+    private int breakEndCount;
+
+    private long transitionCount;
+    private long creditCount;
+    private long abandonCount;
+    private long skipCount;
+    private int maxQueueDepth;
+
+    PodSoak(long seed) {
+        random = new Random(seed);
+        watchdog = new PlaybackWatchdog(scheduler, scheduler, this::onIntervention);
+        player = new SimulatedPlayer(random, watchdog);
+        renderer = new SimulatedInteractiveRenderer(random, scheduler, watchdog);
+        pod = new AdPod(player, renderer, new AdPod.Listener() {
+            @Override
+            public void onAdStarted(int adIndex, Ad ad) {
+                onPodAdStarted(adIndex, ad);
+            }
+
+            @Override
+            public void onAdBreakComplete() {
+                onBreakEnded(false);
+            }
+
+            @Override
+            public void onSkipToContent() {
+                onBreakEnded(true);
+            }
+        });
+        player.setPod(pod);
+    }
+
+    void playBreak() {
+        breakNumber++;
+        lastAdIndex = -1;
+        breakEndCount = 0;
+
+        List<Ad> ads = createAds();
+        pod.setAds(ads);
+        // The real creatives are a little longer or shorter than their placeholder duration
+        long[] durationsMs = new long[ads.size()];
+        long deadlineMs = 60000;
+        for (int i = 0; i < durationsMs.length; i++) {
+            durationsMs[i] = ads.get(i).duration * 1000L + random.nextInt(1001) - 500;
+            // Room for the worst case of every ad: a full stall, or an unresponsive overlay
+            deadlineMs += durationsMs[i] * PlaybackWatchdog.INTERACTIVE_AD_DURATION_MULTIPLIER + 60000;
+        }
+        pod.updateAdDurations(durationsMs);
+
+        player.load();
+        watchdog.onAdBreakStarted();
+        pod.start();
+
+        long elapsedMs = 0;
+        while (breakEndCount == 0 && elapsedMs < deadlineMs) {
+            player.tick(TICK_MS);
+            scheduler.advanceBy(TICK_MS);
+            elapsedMs += TICK_MS;
+            maxQueueDepth = Math.max(maxQueueDepth, scheduler.getPendingTaskCount());
+
+            if (renderer.getShowingCount() > 1) {
+                violation(renderer.getShowingCount() + " interactive ads showing");
+            }
+        }
+        scheduler.advanceBy(DRAIN_MS);
+
+        if (breakEndCount != 1) {
+            violation("ended " + breakEndCount + " times within " + deadlineMs + "ms");
+        }
+        if (pod.isInteractiveAdShowing() || renderer.getShowingCount() != 0) {
+            violation("interactive ad still showing after the break");
+        }
+        if (scheduler.getPendingTaskCount() != 0) {
+            violation(scheduler.getPendingTaskCount() + " tasks left after the break");
+        }
+    }
+
+    private List<Ad> createAds() {
+        int adCount = 1 + random.nextInt(6);
+        List<Ad> ads = new ArrayList<>(adCount);
+        for (int i = 0; i < adCount; i++) {
+            String adSystem = AD_SYSTEMS[random.nextInt(AD_SYSTEMS.length)];
+            ads.add(new Ad(adSystem, "https://media.example.com/creative-" + i + ".mp4",
+                "https://get.example.com/vast/config?slot=" + i, 15 * (1 + random.nextInt(4)), i + 1, "ad-" + i));
+        }
+        return ads;
+    }
+
+    private void onPodAdStarted(int adIndex, Ad ad) {
+        transitionCount++;
+        if (breakEndCount > 0) {
+            violation("ad " + adIndex + " started after the break ended");
+        }
+        if (adIndex != lastAdIndex + 1 || adIndex >= pod.getAds().size()) {
+            violation("ad " + adIndex + " started after ad " + lastAdIndex + " of " + pod.getAds().size());
+        }
+        lastAdIndex = adIndex;
+        watchdog.onAdStarted(ad, pod.getAdTimeline().getDurationMs(adIndex));
+    }
+
+    private void onBreakEnded(boolean onCredit) {
+        breakEndCount++;
+        if (onCredit) {
+            creditCount++;
+            if (renderer.getCurrentOutcome() != SimulatedInteractiveRenderer.Outcome.CREDIT) {
+                violation("skipped to content after " + renderer.getCurrentOutcome());
+            }
+        }
+        watchdog.onAdBreakEnded();
+        player.unload();
+    }
+
+    private void onIntervention(PlaybackWatchdog.Stall stall, PlaybackWatchdog.Intervention intervention, long stalledMs) {
+        switch (intervention) {
+            case SKIP_AD:
+                skipCount++;
+                pod.skipCurrentAd();
+                break;
+            case ABANDON_AD_BREAK:
+                abandonCount++;
+                pod.abandonAdBreak();
+                break;
+            default:
+                violation(intervention + " for " + stall + " during an ad break");
+                break;
+        }
+    }
+
+    private void violation(String message) {
+        if (violations.size() < MAX_REPORTED_VIOLATIONS) {
+            violations.add("break " + breakNumber + ": " + message);
+        } else if (violations.size() == MAX_REPORTED_VIOLATIONS) {
+            violations.add("...");
+        }
+    }
+
+    public static void main(String[] args) {
+        int breaks = 5000;
+        long seed = 1;
+        long minTransitionsPerSecond = 5000;
+        long maxHeapGrowthKb = 8 * 1024;
+        int maxQueueDepth = 16;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--breaks":
+                    breaks = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--min-transitions-per-second":
+                    minTransitionsPerSecond = Long.parseLong(value);
+                    break;
+                case "--max-heap-growth-kb":
+                    maxHeapGrowthKb = Long.parseLong(value);
+                    break;
+                case "--max-queue-depth":
+                    maxQueueDepth = Integer.parseInt(value);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        PodSoak soak = new PodSoak(seed);
+        int warmUpBreaks = Math.min(WARM_UP_BREAKS, breaks / 10);
+        for (int i = 0; i < warmUpBreaks; i++) {
+            soak.playBreak();
+        }
+        long heapBeforeBytes = getUsedHeapBytes();
+        long transitionsBefore = soak.transitionCount;
+        long startNs = System.nanoTime();
+        for (int i = warmUpBreaks; i < breaks; i++) {
+            soak.playBreak();
+        }
+        long elapsedNs = System.nanoTime() - startNs;
+        long heapGrowthKb = (getUsedHeapBytes() - heapBeforeBytes) / 1024;
+        long transitionsPerSecond = (soak.transitionCount - transitionsBefore) * 1_000_000_000L / Math.max(elapsedNs, 1);
+
+        System.out.println("Breaks:                " + breaks + " (seed " + seed + ")");
+        System.out.println("Ad transitions:        " + soak.transitionCount);
+        for (SimulatedInteractiveRenderer.Outcome outcome : SimulatedInteractiveRenderer.Outcome.values()) {
+            System.out.println("  " + outcome + ": " + soak.renderer.getOutcomeCount(outcome));
+        }
+        System.out.println("Late renderer events:  " + soak.renderer.getLateCallbackCount());
+        System.out.println("Ended on credit:       " + soak.creditCount);
+        System.out.println("Ads skipped:           " + soak.skipCount);
+        System.out.println("Breaks abandoned:      " + soak.abandonCount);
+        System.out.println("Transitions/second:    " + transitionsPerSecond + " (min " + minTransitionsPerSecond + ")");
+        System.out.println("Max queue depth:       " + soak.maxQueueDepth + " (max " + maxQueueDepth + ")");
+        System.out.println("Heap growth:           " + heapGrowthKb + "KB (max " + maxHeapGrowthKb + "KB)");
+
+        boolean failed = !soak.violations.isEmpty();
+        for (String violation : soak.violations) {
+            System.out.println("VIOLATION " + violation);
+        }
+        if (transitionsPerSecond < minTransitionsPerSecond) {
+            System.out.println("FAILED: throughput below threshold");
+            failed = true;
+        }
+        if (soak.maxQueueDepth > maxQueueDepth) {
+            System.out.println("FAILED: queue depth above threshold");
+            failed = true;
+        }
+        if (heapGrowthKb > maxHeapGrowthKb) {
+            System.out.println("FAILED: heap growth above threshold");
+            failed = true;
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static long getUsedHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
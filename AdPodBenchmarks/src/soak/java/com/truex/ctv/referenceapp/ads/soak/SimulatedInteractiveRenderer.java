@@ -0,0 +1,130 @@
+package com.truex.ctv.referenceapp.ads.soak;
+
+import com.truex.ctv.referenceapp.ads.Ad;
+import com.truex.ctv.referenceapp.ads.InteractiveAdRenderer;
+import com.truex.ctv.referenceapp.ads.ManualScheduler;
+import com.truex.ctv.referenceapp.ads.PlaybackWatchdog;
+import com.truex.ctv.referenceapp.ads.Scheduler;
+
+import java.util.Random;
+
+/**
+ * Stands in for the true[X] ad renderer. Every interactive ad gets a random outcome, played out
+ * in virtual time the way the renderer's events would arrive.
+ */
+class SimulatedInteractiveRenderer implements InteractiveAdRenderer {
+    enum Outcome {
+        // AD_FREE_POD then AD_COMPLETED
+        CREDIT,
+        // AD_COMPLETED without credit, e.g. the viewer opted out
+        NO_CREDIT,
+        // AD_ERROR shortly after starting
+        ERROR,
+        // USER_CANCEL_STREAM
+        CANCEL_STREAM,
+        // NO_ADS_AVAILABLE, before startAd returns
+        NO_ADS,
+        // Never reports AD_STARTED or completes, the watchdog has to step in
+        UNRESPONSIVE
+    }
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+    // Chance that a completion arrives once more after the ad was torn down
+    private static final double LATE_CALLBACK_PROBABILITY = 0.05;
+
+    private final Random random;
+    private final ManualScheduler scheduler;
+    private final PlaybackWatchdog watchdog;
+
+    private Outcome currentOutcome;
+    private CompletionCallback currentCallback;
+    private Scheduler.Cancellable pendingStart;
+    private Scheduler.Cancellable pendingCompletion;
+
+    private final long[] outcomeCounts = new long[OUTCOMES.length];
+    private int showingCount;
+    private long lateCallbackCount;
+
+    SimulatedInteractiveRenderer(Random random, ManualScheduler scheduler, PlaybackWatchdog watchdog) {
+        this.random = random;
+        this.scheduler = scheduler;
+        this.watchdog = watchdog;
+    }
+
+    @Override
+    public void startAd(Ad ad, CompletionCallback callback) {
+        Outcome outcome = OUTCOMES[random.nextInt(OUTCOMES.length)];
+        outcomeCounts[outcome.ordinal()]++;
+        currentOutcome = outcome;
+        currentCallback = callback;
+        showingCount++;
+
+        if (outcome == Outcome.NO_ADS) {
+            callback.onAdComplete(false);
+            return;
+        }
+        if (outcome == Outcome.UNRESPONSIVE) {
+            return;
+        }
+
+        long startDelayMs = 200 + random.nextInt(3000);
+        pendingStart = scheduler.schedule(() -> {
+            pendingStart = null;
+            watchdog.onInteractiveAdRendering();
+        }, startDelayMs);
+
+        long engagementMs = outcome == Outcome.ERROR
+            ? startDelayMs + random.nextInt(2000)
+            : startDelayMs + 1000 + random.nextInt((int) (ad.duration * 1000L * 3 / 2));
+        pendingCompletion = scheduler.schedule(() -> {
+            pendingCompletion = null;
+            callback.onAdComplete(outcome == Outcome.CREDIT);
+        }, engagementMs);
+    }
+
+    @Override
+    public void stopAd() {
+        showingCount--;
+        if (pendingStart != null) {
+            pendingStart.cancel();
+            pendingStart = null;
+        }
+        if (pendingCompletion != null) {
+            pendingCompletion.cancel();
+            pendingCompletion = null;
+        }
+        watchdog.onInteractiveAdEnded();
+
+        // The real renderer may still deliver an event after it was torn down. Once the next
+        // ad is showing the event belongs to a renderer that is gone, and is not delivered.
+        CompletionCallback callback = currentCallback;
+        currentCallback = null;
+        if (callback != null && random.nextDouble() < LATE_CALLBACK_PROBABILITY) {
+            lateCallbackCount++;
+            scheduler.schedule(() -> {
+                if (showingCount == 0) {
+                    callback.onAdComplete(random.nextBoolean());
+                }
+            }, random.nextInt(1000));
+        }
+    }
+
+    Outcome getCurrentOutcome() {
+        return currentOutcome;
+    }
+
+    /**
+     * @return how many ads are showing, which must never be more than one
+     */
+    int getShowingCount() {
+        return showingCount;
+    }
+
+    long getOutcomeCount(Outcome outcome) {
+        return outcomeCounts[outcome.ordinal()];
+    }
+
+    long getLateCallbackCount() {
+        return lateCallbackCount;
+    }
+}
@@ -0,0 +1,136 @@
+package com.truex.ctv.referenceapp.ads.soak;
+
+import com.truex.ctv.referenceapp.ads.AdPod;
+import com.truex.ctv.referenceapp.ads.AdTimeline;
+import com.truex.ctv.referenceapp.ads.PlaybackWatchdog;
+import com.truex.ctv.referenceapp.ads.PodPlayer;
+
+import java.util.Random;
+
+/**
+ * Stands in for the ad player: plays the pod in virtual time, reports ad transitions and the
+ * end of the pod the way the player's discontinuities and STATE_ENDED do, and now and then
+ * stalls to buffer.
+ */
+class SimulatedPlayer implements PodPlayer {
+    // Chance per tick of playback that the player starts buffering
+    private static final double STALL_PROBABILITY = 0.0015;
+    private static final long MAX_STALL_MS = 60000;
+
+    private final Random random;
+    private final PlaybackWatchdog watchdog;
+    private AdPod pod;
+
+    private long positionMs;
+    private boolean playing;
+    private int currentAdIndex;
+    private long stallRemainingMs;
+    private boolean ended;
+
+    SimulatedPlayer(Random random, PlaybackWatchdog watchdog) {
+        this.random = random;
+        this.watchdog = watchdog;
+    }
+
+    void setPod(AdPod pod) {
+        this.pod = pod;
+    }
+
+    /**
+     * Load a new pod and start playing it from the beginning.
+     */
+    void load() {
+        positionMs = 0;
+        playing = true;
+        currentAdIndex = 0;
+        stallRemainingMs = 0;
+        ended = false;
+    }
+
+    void unload() {
+        playing = false;
+        if (stallRemainingMs > 0) {
+            stallRemainingMs = 0;
+            watchdog.onBufferingEnded();
+        }
+    }
+
+    boolean isPlaying() {
+        return playing;
+    }
+
+    long getPositionMs() {
+        return positionMs;
+    }
+
+    /**
+     * Play for the given time.
+     */
+    void tick(long tickMs) {
+        if (!playing || ended) {
+            return;
+        }
+
+        if (stallRemainingMs > 0) {
+            stallRemainingMs -= tickMs;
+            if (stallRemainingMs <= 0) {
+                stallRemainingMs = 0;
+                watchdog.onBufferingEnded();
+            }
+            return;
+        }
+        if (random.nextDouble() < STALL_PROBABILITY) {
+            stallRemainingMs = 1 + (long) (random.nextDouble() * MAX_STALL_MS);
+            watchdog.onBufferingStarted(true);
+            return;
+        }
+
+        positionMs += tickMs;
+        AdTimeline adTimeline = pod.getAdTimeline();
+        int lastAdIndex = adTimeline.getAdCount() - 1;
+        if (positionMs >= adTimeline.getEndPositionMs(lastAdIndex)) {
+            ended = true;
+            playing = false;
+            pod.onPlaybackEnded();
+            return;
+        }
+
+        // One discontinuity per ad boundary crossed
+        int adIndex = adTimeline.getAdIndexAt(positionMs);
+        while (currentAdIndex < adIndex && playing) {
+            currentAdIndex++;
+            pod.onAdTransition();
+        }
+    }
+
+    @Override
+    public void play() {
+        playing = true;
+    }
+
+    @Override
+    public void seekAndPause(long positionMs) {
+        seek(positionMs);
+        playing = false;
+    }
+
+    @Override
+    public void seekTo(long positionMs) {
+        seek(positionMs);
+        playing = true;
+    }
+
+    private void seek(long positionMs) {
+        this.positionMs = positionMs;
+        int adIndex = pod.getAdTimeline().getAdIndexAt(positionMs);
+        if (adIndex >= 0) {
+            currentAdIndex = adIndex;
+        }
+
+        // A seek restarts loading, which gets a stalled player going again
+        if (stallRemainingMs > 0) {
+            stallRemainingMs = 0;
+            watchdog.onBufferingEnded();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.truex.ctv.referenceapp.ads;
 
+import java.util.Collections;
+import java.util.List;
+
 public class Ad {
     public String adSystem;
     public String adUrl;
@@ -8,14 +11,30 @@ public class Ad {
     public int position;
     public String adId;
     public AdType adType;
+    // All encodings of the creative, adUrl is played when none of them is selected
+    public List<AdRendition> renditions;
+    // Impression and progress URLs, including those of the wrappers the ad was served through
+    public List<TrackingEvent> trackingEvents;
 
     public Ad(String adSystem, String adUrl, String vastConfigUrl, int duration, int position, String adId) {
+        this(adSystem, adUrl, vastConfigUrl, duration, position, adId, Collections.emptyList());
+    }
+
+    public Ad(String adSystem, String adUrl, String vastConfigUrl, int duration, int position, String adId,
+              List<AdRendition> renditions) {
+        this(adSystem, adUrl, vastConfigUrl, duration, position, adId, renditions, Collections.emptyList());
+    }
+
+    public Ad(String adSystem, String adUrl, String vastConfigUrl, int duration, int position, String adId,
+              List<AdRendition> renditions, List<TrackingEvent> trackingEvents) {
         this.adSystem = adSystem;
         this.adUrl = adUrl;
         this.vastConfigUrl = vastConfigUrl;
         this.duration = duration;
         this.position = position;
         this.adId = adId;
+        this.renditions = renditions;
+        this.trackingEvents = trackingEvents;
         this.adType = determineAdType(adSystem);
     }
 
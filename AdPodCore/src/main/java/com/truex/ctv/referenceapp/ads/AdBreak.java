@@ -0,0 +1,24 @@
+package com.truex.ctv.referenceapp.ads;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ads decided for one break of the content's ad schedule.
+ */
+public class AdBreak {
+    public final String breakId;
+    // Where in the content the break plays, TimeOffset.START for a preroll
+    public final TimeOffset timeOffset;
+    public final List<Ad> ads;
+
+    public AdBreak(String breakId, long timeOffsetMs, List<Ad> ads) {
+        this(breakId, TimeOffset.atMs(timeOffsetMs), ads);
+    }
+
+    public AdBreak(String breakId, TimeOffset timeOffset, List<Ad> ads) {
+        this.breakId = breakId;
+        this.timeOffset = timeOffset;
+        this.ads = Collections.unmodifiableList(ads);
+    }
+}
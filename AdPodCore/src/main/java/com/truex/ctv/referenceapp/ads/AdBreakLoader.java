@@ -0,0 +1,29 @@
+package com.truex.ctv.referenceapp.ads;
+
+import java.io.IOException;
+
+/**
+ * Makes the ad decision for a break, e.g. by requesting it from an ad server. Called on a
+ * background thread by {@link CachingAdProvider}, so implementations may block.
+ */
+public interface AdBreakLoader {
+    interface AdSink {
+        void onAdDecided(Ad ad);
+    }
+
+    AdBreak loadAdBreak(String breakId) throws IOException;
+
+    /**
+     * Load a break, handing over each ad as soon as it is decided, so playback can start before
+     * the later slots are. Loaders that decide a break all at once can rely on the default.
+     */
+    default AdBreak loadAdBreak(String breakId, AdSink sink) throws IOException {
+        AdBreak adBreak = loadAdBreak(breakId);
+        if (adBreak != null) {
+            for (Ad ad : adBreak.ads) {
+                sink.onAdDecided(ad);
+            }
+        }
+        return adBreak;
+    }
+}
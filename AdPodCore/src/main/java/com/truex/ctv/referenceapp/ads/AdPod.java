@@ -0,0 +1,257 @@
+package com.truex.ctv.referenceapp.ads;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The platform independent state of an ad pod: which ad is playing, where the ads start and end on
+ * the pod timeline, and when an interactive ad has to be shown and given up on.
+ *
+ * Note that the pod does not drive the player - it only:
+ *  1. advances its state to reflect the progress reported by the player
+ *  2. holds the player on an interactive ad's placeholder and shows the overlay on top of it
+ *
+ * Ads that get stuck are not detected by the pod itself, see {@link PlaybackWatchdog}.
+ * All methods are expected to be called on the same thread.
+ */
+public class AdPod {
+    // Interactive ads are seeked to just before the end of their placeholder video
+    public static final long PLACEHOLDER_END_MARGIN_MS = 100;
+
+    public interface Listener {
+        /**
+         * The pod moved on to the ad at the given index, including the first ad of the break.
+         */
+        void onAdStarted(int adIndex, Ad ad);
+
+        void onAdBreakComplete();
+
+        void onSkipToContent();
+    }
+
+    private final PodPlayer player;
+    private final InteractiveAdRenderer renderer;
+    private final Listener listener;
+    private final AdTimeline adTimeline;
+
+    private List<Ad> ads;
+    private int currentAdIndexInSegment;
+    private boolean adBreakInProgress;
+    private boolean interactiveAdShowing;
+
+    private final InteractiveAdRenderer.CompletionCallback completionCallback = this::onInteractiveAdComplete;
+
+    public AdPod(PodPlayer player, InteractiveAdRenderer renderer, Listener listener) {
+        this.player = player;
+        this.renderer = renderer;
+        this.listener = listener;
+        this.adTimeline = new AdTimeline();
+        this.ads = new ArrayList<>();
+    }
+
+    public void setAds(List<Ad> ads) {
+        stopInteractiveAd();
+
+        this.ads = ads;
+        this.currentAdIndexInSegment = 0;
+        this.adBreakInProgress = false;
+        this.adTimeline.reset(ads);
+    }
+
+    /**
+     * Add an ad to the end of the pod, e.g. a slot that was decided after the break started.
+     * The pod player is expected to play it after the ads that are already in the pod.
+     */
+    public void appendAd(Ad ad) {
+        // Copied rather than added to, the list may be shared or unmodifiable
+        List<Ad> appended = new ArrayList<>(ads.size() + 1);
+        appended.addAll(ads);
+        appended.add(ad);
+        ads = appended;
+        adTimeline.append(ad);
+    }
+
+    /**
+     * Start the break from the first ad. The pod player is expected to be playing from the start.
+     */
+    public void start() {
+        startAt(0);
+    }
+
+    /**
+     * Start the break from the given ad, e.g. to resume a break that was interrupted. The pod
+     * player is expected to be playing from a position within that ad.
+     */
+    public void startAt(int adIndex) {
+        stopInteractiveAd();
+
+        currentAdIndexInSegment = adIndex;
+        adBreakInProgress = adIndex < ads.size();
+        if (adBreakInProgress) {
+            enterCurrentAd();
+        } else {
+            listener.onAdBreakComplete();
+        }
+    }
+
+    /**
+     * Stop the break without completing it, e.g. when the app goes away.
+     */
+    public void stop() {
+        stopInteractiveAd();
+    }
+
+    /**
+     * Give up on the current ad, e.g. when it is stuck. An interactive ad completes without
+     * credit, a regular ad is skipped by seeking to the start of the next ad.
+     */
+    public void skipCurrentAd() {
+        if (!adBreakInProgress || getCurrentAd() == null) {
+            return;
+        }
+
+        if (interactiveAdShowing) {
+            onInteractiveAdComplete(false);
+            return;
+        }
+
+        currentAdIndexInSegment++;
+        if (currentAdIndexInSegment >= ads.size()) {
+            completeAdBreak();
+        } else {
+            player.seekTo(adTimeline.getStartPositionMs(currentAdIndexInSegment));
+            enterCurrentAd();
+        }
+    }
+
+    /**
+     * Give up on the rest of the break and return to content.
+     */
+    public void abandonAdBreak() {
+        stopInteractiveAd();
+        if (adBreakInProgress) {
+            completeAdBreak();
+        }
+    }
+
+    // You should call this when the player transitions to the next ad in the pod
+    public void onAdTransition() {
+        if (getCurrentAd() == null) {
+            return;
+        }
+
+        currentAdIndexInSegment++;
+        if (currentAdIndexInSegment >= ads.size()) {
+            completeAdBreak();
+        } else {
+            enterCurrentAd();
+        }
+    }
+
+    // You should call this when the player reaches the end of the pod
+    public void onPlaybackEnded() {
+        if (adBreakInProgress) {
+            completeAdBreak();
+        }
+    }
+
+    /**
+     * Refresh the ad boundaries from the real creative durations, either probed before the
+     * break starts or reported by the player while it plays.
+     *
+     * @see AdTimeline#update(long[])
+     * @return true if any boundary moved
+     */
+    public boolean updateAdDurations(long[] durationsMs) {
+        if (!adTimeline.update(durationsMs)) {
+            return false;
+        }
+
+        // The overlay may already be up on a placeholder whose real length differs from
+        // its nominal duration, so move the paused player to the corrected boundary
+        if (interactiveAdShowing) {
+            player.seekAndPause(getPlaceholderHoldPositionMs());
+        }
+        return true;
+    }
+
+    public List<Ad> getAds() {
+        return ads;
+    }
+
+    public Ad getCurrentAd() {
+        if (currentAdIndexInSegment < ads.size()) {
+            return ads.get(currentAdIndexInSegment);
+        }
+        return null;
+    }
+
+    public int getCurrentAdIndex() {
+        return currentAdIndexInSegment;
+    }
+
+    public AdTimeline getAdTimeline() {
+        return adTimeline;
+    }
+
+    public boolean isAdBreakInProgress() {
+        return adBreakInProgress;
+    }
+
+    public boolean isPlayingInteractiveAd() {
+        Ad currentAd = getCurrentAd();
+        return currentAd != null && currentAd.isInfillionAd();
+    }
+
+    public boolean isInteractiveAdShowing() {
+        return interactiveAdShowing;
+    }
+
+    private void enterCurrentAd() {
+        Ad currentAd = getCurrentAd();
+        listener.onAdStarted(currentAdIndexInSegment, currentAd);
+        if (!currentAd.isInfillionAd()) {
+            return;
+        }
+
+        // Hold on the end of the placeholder video while the overlay is shown
+        player.seekAndPause(getPlaceholderHoldPositionMs());
+
+        // Mark the ad as showing first, the renderer may complete before startAd returns
+        interactiveAdShowing = true;
+        renderer.startAd(currentAd, completionCallback);
+    }
+
+    private void onInteractiveAdComplete(boolean receivedCredit) {
+        if (!interactiveAdShowing) {
+            // A late callback for an ad that already completed, e.g. after it was skipped
+            return;
+        }
+        stopInteractiveAd();
+
+        if (receivedCredit) {
+            // true[X] credit earned - skip remaining ads and return to content
+            adBreakInProgress = false;
+            listener.onSkipToContent();
+        } else {
+            // Resume playback - the player will report the transition to the next ad
+            player.play();
+        }
+    }
+
+    private void stopInteractiveAd() {
+        if (interactiveAdShowing) {
+            interactiveAdShowing = false;
+            renderer.stopAd();
+        }
+    }
+
+    private void completeAdBreak() {
+        adBreakInProgress = false;
+        listener.onAdBreakComplete();
+    }
+
+    private long getPlaceholderHoldPositionMs() {
+        return adTimeline.getEndPositionMs(currentAdIndexInSegment) - PLACEHOLDER_END_MARGIN_MS;
+    }
+}
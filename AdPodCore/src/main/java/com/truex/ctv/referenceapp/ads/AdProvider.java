@@ -0,0 +1,26 @@
+package com.truex.ctv.referenceapp.ads;
+
+/**
+ * Asynchronous source of ad breaks. Results are delivered to the callback on the thread
+ * the provider was set up to deliver on, never from within {@link #requestAdBreak}.
+ */
+public interface AdProvider {
+    interface Callback {
+        /**
+         * An ad of the break was decided, ahead of {@link #onAdBreakLoaded}. Ads are handed over
+         * in pod order. Not called for breaks that were decided before the request.
+         */
+        default void onAdDecided(String breakId, Ad ad) {
+        }
+
+        void onAdBreakLoaded(AdBreak adBreak);
+
+        void onAdBreakFailed(String breakId, Exception error);
+    }
+
+    /**
+     * Request the ads of a break. Cancelling the request only stops the callback from being
+     * invoked, the decision is still made and kept for later requests.
+     */
+    Scheduler.Cancellable requestAdBreak(String breakId, Callback callback);
+}
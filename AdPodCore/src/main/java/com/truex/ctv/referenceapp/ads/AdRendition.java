@@ -0,0 +1,56 @@
+package com.truex.ctv.referenceapp.ads;
+
+/**
+ * One encoding of an ad's creative, as listed by a VAST MediaFile.
+ */
+public class AdRendition {
+    public static final int UNKNOWN = 0;
+
+    public final String url;
+    // Container MIME type, e.g. video/mp4
+    public final String mimeType;
+    // RFC 6381 codec string, e.g. avc1.4d401f, or null if not given
+    public final String codec;
+    // Bits per second, or UNKNOWN
+    public final long bitrate;
+    public final int width;
+    public final int height;
+
+    public AdRendition(String url, String mimeType, String codec, long bitrate, int width, int height) {
+        this.url = url;
+        this.mimeType = mimeType;
+        this.codec = codec;
+        this.bitrate = bitrate;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @return the MIME type of the video codec, assuming H.264 for MP4 files that don't say
+     */
+    public String getVideoCodecMimeType() {
+        if (codec != null) {
+            String lowerCaseCodec = codec.toLowerCase();
+            if (lowerCaseCodec.startsWith("avc") || lowerCaseCodec.startsWith("h.264") || lowerCaseCodec.startsWith("h264")) {
+                return "video/avc";
+            } else if (lowerCaseCodec.startsWith("hev") || lowerCaseCodec.startsWith("hvc") || lowerCaseCodec.startsWith("h.265")) {
+                return "video/hevc";
+            } else if (lowerCaseCodec.startsWith("vp09") || lowerCaseCodec.startsWith("vp9")) {
+                return "video/x-vnd.on2.vp9";
+            } else if (lowerCaseCodec.startsWith("vp8")) {
+                return "video/x-vnd.on2.vp8";
+            } else if (lowerCaseCodec.startsWith("av01")) {
+                return "video/av01";
+            }
+        }
+        if ("video/webm".equals(mimeType)) {
+            return "video/x-vnd.on2.vp9";
+        }
+        return "video/avc";
+    }
+
+    @Override
+    public String toString() {
+        return mimeType + (codec != null ? " " + codec : "") + " " + width + "x" + height + " " + bitrate / 1000 + "kbps";
+    }
+}
@@ -0,0 +1,121 @@
+package com.truex.ctv.referenceapp.ads;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index of the ads of a pod on the concatenated player timeline.
+ *
+ * Boundaries are kept as prefix sums, so looking up the ad at a player position is a binary search
+ * and looking up where an ad starts or ends is constant time. The index starts out with the
+ * placeholder durations of the ads and is refreshed with the real durations of the creatives as
+ * the player learns them.
+ */
+public class AdTimeline {
+    // Passed to update() for ads whose real duration is not known yet
+    public static final long DURATION_UNKNOWN = -1;
+
+    // startPositionsMs[i] is where ad i starts, startPositionsMs[adCount] is where the pod ends
+    private long[] startPositionsMs;
+    private int adCount;
+
+    public AdTimeline() {
+        startPositionsMs = new long[1];
+    }
+
+    /**
+     * Rebuild the index from the placeholder durations of the ads.
+     */
+    public void reset(List<Ad> ads) {
+        adCount = ads.size();
+        if (startPositionsMs.length < adCount + 1) {
+            startPositionsMs = new long[adCount + 1];
+        }
+
+        startPositionsMs[0] = 0;
+        for (int i = 0; i < adCount; i++) {
+            startPositionsMs[i + 1] = startPositionsMs[i] + ads.get(i).duration * 1000L;
+        }
+    }
+
+    /**
+     * Add an ad at the end of the pod, with its placeholder duration.
+     */
+    public void append(Ad ad) {
+        if (startPositionsMs.length < adCount + 2) {
+            startPositionsMs = Arrays.copyOf(startPositionsMs, Math.max(adCount + 2, startPositionsMs.length * 2));
+        }
+        startPositionsMs[adCount + 1] = startPositionsMs[adCount] + ad.duration * 1000L;
+        adCount++;
+    }
+
+    /**
+     * Refresh the boundaries from the real ad durations. Ads whose duration is
+     * {@link #DURATION_UNKNOWN} keep their current length.
+     *
+     * @param durationsMs the duration of every ad in the pod, at least {@link #getAdCount()} entries
+     * @return true if any boundary moved
+     */
+    public boolean update(long[] durationsMs) {
+        boolean changed = false;
+        long startMs = 0;
+        // Where the current ad started before this update, startPositionsMs[i] is already rewritten
+        long previousStartMs = startPositionsMs[0];
+        for (int i = 0; i < adCount; i++) {
+            long previousEndMs = startPositionsMs[i + 1];
+            long durationMs = durationsMs[i];
+            if (durationMs == DURATION_UNKNOWN) {
+                durationMs = previousEndMs - previousStartMs;
+            }
+
+            startPositionsMs[i] = startMs;
+            long endMs = startMs + durationMs;
+            if (previousEndMs != endMs) {
+                startPositionsMs[i + 1] = endMs;
+                changed = true;
+            }
+            startMs = endMs;
+            previousStartMs = previousEndMs;
+        }
+        return changed;
+    }
+
+    public int getAdCount() {
+        return adCount;
+    }
+
+    public long getStartPositionMs(int adIndex) {
+        return startPositionsMs[adIndex];
+    }
+
+    public long getEndPositionMs(int adIndex) {
+        return startPositionsMs[adIndex + 1];
+    }
+
+    public long getDurationMs(int adIndex) {
+        return startPositionsMs[adIndex + 1] - startPositionsMs[adIndex];
+    }
+
+    /**
+     * @return the index of the ad playing at the given pod position, or -1 if the
+     * position is outside of the pod
+     */
+    public int getAdIndexAt(long positionMs) {
+        if (adCount == 0 || positionMs < 0 || positionMs >= startPositionsMs[adCount]) {
+            return -1;
+        }
+
+        // Find the last start position that is <= positionMs
+        int low = 0;
+        int high = adCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (startPositionsMs[mid] <= positionMs) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
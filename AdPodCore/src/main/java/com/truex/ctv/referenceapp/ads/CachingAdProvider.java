@@ -0,0 +1,173 @@
+package com.truex.ctv.referenceapp.ads;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link AdProvider} that runs an {@link AdBreakLoader} on a background executor.
+ *
+ * Concurrent requests for the same break share a single load, and loaded breaks are cached until
+ * their TTL runs out, so re-entering the player shortly after leaving it does not hit the ad
+ * server again. Failed loads are not cached, whether the loader threw an IOException or any
+ * other exception.
+ *
+ * While a break is being loaded, its ads are handed to the callbacks one by one as the loader
+ * decides them. Requests that join a load in progress first get the ads decided so far.
+ */
+public class CachingAdProvider implements AdProvider {
+    public static final long DEFAULT_TTL_MS = 5 * 60 * 1000L;
+
+    private static class CacheEntry {
+        final AdBreak adBreak;
+        final long expiresAtMs;
+
+        CacheEntry(AdBreak adBreak, long expiresAtMs) {
+            this.adBreak = adBreak;
+            this.expiresAtMs = expiresAtMs;
+        }
+    }
+
+    private static class Request implements Scheduler.Cancellable {
+        final Callback callback;
+        volatile boolean cancelled;
+
+        Request(Callback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final AdBreakLoader loader;
+    private final Executor loadExecutor;
+    private final Executor callbackExecutor;
+    private final Clock clock;
+    private final long ttlMs;
+
+    // Guarded by this
+    private final Map<String, CacheEntry> cache = new HashMap<>();
+    private final Map<String, PendingLoad> pendingLoads = new HashMap<>();
+
+    private static class PendingLoad {
+        final List<Request> requests = new ArrayList<>();
+        final List<Ad> decidedAds = new ArrayList<>();
+    }
+
+    public CachingAdProvider(AdBreakLoader loader, Executor loadExecutor, Executor callbackExecutor) {
+        this(loader, loadExecutor, callbackExecutor, Clock.SYSTEM, DEFAULT_TTL_MS);
+    }
+
+    public CachingAdProvider(AdBreakLoader loader, Executor loadExecutor, Executor callbackExecutor, Clock clock, long ttlMs) {
+        this.loader = loader;
+        this.loadExecutor = loadExecutor;
+        this.callbackExecutor = callbackExecutor;
+        this.clock = clock;
+        this.ttlMs = ttlMs;
+    }
+
+    @Override
+    public Scheduler.Cancellable requestAdBreak(String breakId, Callback callback) {
+        Request request = new Request(callback);
+        synchronized (this) {
+            CacheEntry cached = cache.get(breakId);
+            if (cached != null && clock.nowMs() < cached.expiresAtMs) {
+                deliver(request, cached.adBreak, breakId, null);
+                return request;
+            }
+            cache.remove(breakId);
+
+            PendingLoad pending = pendingLoads.get(breakId);
+            if (pending != null) {
+                // Join the load that is already running for this break
+                pending.requests.add(request);
+                for (Ad ad : pending.decidedAds) {
+                    deliverAd(request, breakId, ad);
+                }
+                return request;
+            }
+
+            pending = new PendingLoad();
+            pending.requests.add(request);
+            pendingLoads.put(breakId, pending);
+        }
+
+        loadExecutor.execute(() -> load(breakId));
+        return request;
+    }
+
+    /**
+     * Drop the cached decision for a break, e.g. after its ads have been played.
+     */
+    public synchronized void invalidate(String breakId) {
+        cache.remove(breakId);
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    private void load(String breakId) {
+        AdBreak adBreak = null;
+        Exception error = null;
+        List<Request> requests;
+        try {
+            adBreak = loader.loadAdBreak(breakId, ad -> onAdDecided(breakId, ad));
+            if (adBreak == null) {
+                error = new IOException("No ad break with id " + breakId);
+            }
+        } catch (Exception e) {
+            // Also a bug in the loader, e.g. on an ad server response it does not expect, fails
+            // the requests rather than leaving them waiting for good
+            error = e;
+        } finally {
+            synchronized (this) {
+                requests = pendingLoads.remove(breakId).requests;
+                if (adBreak != null) {
+                    cache.put(breakId, new CacheEntry(adBreak, clock.nowMs() + ttlMs));
+                }
+            }
+        }
+
+        for (Request request : requests) {
+            deliver(request, adBreak, breakId, error);
+        }
+    }
+
+    private void onAdDecided(String breakId, Ad ad) {
+        synchronized (this) {
+            PendingLoad pending = pendingLoads.get(breakId);
+            pending.decidedAds.add(ad);
+            for (Request request : pending.requests) {
+                deliverAd(request, breakId, ad);
+            }
+        }
+    }
+
+    private void deliverAd(Request request, String breakId, Ad ad) {
+        callbackExecutor.execute(() -> {
+            if (!request.cancelled) {
+                request.callback.onAdDecided(breakId, ad);
+            }
+        });
+    }
+
+    private void deliver(Request request, AdBreak adBreak, String breakId, Exception error) {
+        callbackExecutor.execute(() -> {
+            if (request.cancelled) {
+                return;
+            }
+            if (adBreak != null) {
+                request.callback.onAdBreakLoaded(adBreak);
+            } else {
+                request.callback.onAdBreakFailed(breakId, error);
+            }
+        });
+    }
+}
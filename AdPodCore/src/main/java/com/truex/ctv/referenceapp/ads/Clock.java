@@ -0,0 +1,10 @@
+package com.truex.ctv.referenceapp.ads;
+
+/**
+ * Monotonic time source, replaceable so time based behavior can be driven deterministically.
+ */
+public interface Clock {
+    Clock SYSTEM = () -> System.nanoTime() / 1_000_000;
+
+    long nowMs();
+}
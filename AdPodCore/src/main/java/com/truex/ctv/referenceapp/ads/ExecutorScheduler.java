@@ -0,0 +1,22 @@
+package com.truex.ctv.referenceapp.ads;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs delayed tasks on a background executor, e.g. a single thread that owns some state.
+ */
+public class ExecutorScheduler implements Scheduler {
+    private final ScheduledExecutorService executor;
+
+    public ExecutorScheduler(ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public Cancellable schedule(Runnable task, long delayMs) {
+        ScheduledFuture<?> future = executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        return () -> future.cancel(false);
+    }
+}
@@ -0,0 +1,21 @@
+package com.truex.ctv.referenceapp.ads;
+
+/**
+ * Shows the interactive overlay for Infillion (true[X] and IDVx) ads, as seen by {@link AdPod}.
+ */
+public interface InteractiveAdRenderer {
+    interface CompletionCallback {
+        void onAdComplete(boolean receivedCredit);
+    }
+
+    /**
+     * Start the engagement for the ad. The callback may be invoked before this method returns,
+     * e.g. when it is already known that there is no ad to show.
+     */
+    void startAd(Ad ad, CompletionCallback callback);
+
+    /**
+     * Tear down the engagement that is currently showing, if any.
+     */
+    void stopAd();
+}
@@ -0,0 +1,143 @@
+package com.truex.ctv.referenceapp.ads;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hands trim-memory callbacks to the parts of the app that hold on to memory they can do without:
+ * player buffers, prefetched ad data and warm ad renderers. Responders must never release what
+ * the ad or content on screen is using.
+ *
+ * Keeps a log of what was released and when. While memory has been under pressure recently,
+ * non-critical preloading should be deferred, see {@link #shouldDeferPreloading()}.
+ */
+public class MemoryPressureManager {
+    // The platform's trim-memory levels, as passed to ComponentCallbacks2.onTrimMemory
+    public static final int TRIM_MEMORY_RUNNING_MODERATE = 5;
+    public static final int TRIM_MEMORY_RUNNING_LOW = 10;
+    public static final int TRIM_MEMORY_RUNNING_CRITICAL = 15;
+    public static final int TRIM_MEMORY_UI_HIDDEN = 20;
+    public static final int TRIM_MEMORY_BACKGROUND = 40;
+    public static final int TRIM_MEMORY_MODERATE = 60;
+    public static final int TRIM_MEMORY_COMPLETE = 80;
+
+    // How long preloading stays deferred after the last trim-memory callback
+    static final long PRESSURE_HOLD_MS = 60 * 1000L;
+    static final int MAX_RELEASE_LOG_ENTRIES = 32;
+
+    public enum Level {
+        // Drop caches that are cheap to rebuild
+        MODERATE,
+        // Also drop instances kept around only to save time later
+        LOW,
+        // Also drop buffers of players that are not on screen
+        CRITICAL
+    }
+
+    public interface Responder {
+        /**
+         * @return a description of what was released, or null if nothing was
+         */
+        String onMemoryPressure(Level level);
+    }
+
+    public static class Release {
+        public final long timeMs;
+        public final int trimLevel;
+        public final String released;
+
+        Release(long timeMs, int trimLevel, String released) {
+            this.timeMs = timeMs;
+            this.trimLevel = trimLevel;
+            this.released = released;
+        }
+
+        @Override
+        public String toString() {
+            return "at " + timeMs + "ms, trim level " + trimLevel + ": " + released;
+        }
+    }
+
+    private final Clock clock;
+    private final List<Responder> responders = new ArrayList<>();
+    private final ArrayDeque<Release> releaseLog = new ArrayDeque<>();
+    private long lastPressureMs = -1;
+
+    public MemoryPressureManager(Clock clock) {
+        this.clock = clock;
+    }
+
+    public void addResponder(Responder responder) {
+        responders.add(responder);
+    }
+
+    public void removeResponder(Responder responder) {
+        responders.remove(responder);
+    }
+
+    /**
+     * You should call this from the activity's onTrimMemory.
+     *
+     * @return what the responders released for this callback, empty if nothing was
+     */
+    public List<Release> onTrimMemory(int trimLevel) {
+        Level level = toLevel(trimLevel);
+        if (level == null) {
+            return Collections.emptyList();
+        }
+
+        long nowMs = clock.nowMs();
+        lastPressureMs = nowMs;
+
+        List<Release> releases = new ArrayList<>();
+        for (Responder responder : responders) {
+            String released = responder.onMemoryPressure(level);
+            if (released == null) {
+                continue;
+            }
+
+            Release release = new Release(nowMs, trimLevel, released);
+            releases.add(release);
+            if (releaseLog.size() == MAX_RELEASE_LOG_ENTRIES) {
+                releaseLog.removeFirst();
+            }
+            releaseLog.addLast(release);
+        }
+        return releases;
+    }
+
+    /**
+     * @return true if memory has been under pressure recently, so that work which only saves time
+     * later, like warming up renderers or prefetching, should be skipped
+     */
+    public boolean shouldDeferPreloading() {
+        return lastPressureMs >= 0 && clock.nowMs() - lastPressureMs < PRESSURE_HOLD_MS;
+    }
+
+    /**
+     * @return the most recent releases, oldest first
+     */
+    public List<Release> getReleaseLog() {
+        return new ArrayList<>(releaseLog);
+    }
+
+    static Level toLevel(int trimLevel) {
+        if (trimLevel >= TRIM_MEMORY_MODERATE) {
+            // Next in line to be killed in the background
+            return Level.CRITICAL;
+        } else if (trimLevel >= TRIM_MEMORY_BACKGROUND) {
+            return Level.LOW;
+        } else if (trimLevel >= TRIM_MEMORY_UI_HIDDEN) {
+            return Level.MODERATE;
+        } else if (trimLevel >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            return Level.CRITICAL;
+        } else if (trimLevel >= TRIM_MEMORY_RUNNING_LOW) {
+            return Level.LOW;
+        } else if (trimLevel >= TRIM_MEMORY_RUNNING_MODERATE) {
+            return Level.MODERATE;
+        }
+        return null;
+    }
+}
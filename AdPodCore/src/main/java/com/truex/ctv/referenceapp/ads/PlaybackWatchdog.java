@@ -0,0 +1,307 @@
+package com.truex.ctv.referenceapp.ads;
+
+/**
+ * Central watchdog for everything that can leave the viewer stuck: a player that keeps
+ * buffering, a regular ad that never finishes and an interactive ad whose renderer never
+ * completes.
+ *
+ * Each watch has a deadline, and when it runs out the listener is told to intervene. A buffering
+ * deadline is re-armed with twice the time in case the intervention does not help. Buffering
+ * deadlines adapt to the measured network throughput: the watchdog waits for about as long as
+ * it should take to refill the player's rebuffer target at the current bandwidth, within fixed
+ * bounds. Repeated trouble within one ad break escalates from skipping the ad to abandoning the
+ * break.
+ *
+ * All methods are expected to be called on the thread the scheduler runs its tasks on.
+ */
+public class PlaybackWatchdog {
+    public enum Stall {
+        AD_BUFFERING,
+        CONTENT_BUFFERING,
+        // A regular ad has been playing for well over its duration
+        AD_OVERDUE,
+        // The interactive ad renderer has not completed within its deadline
+        INTERACTIVE_AD_UNRESPONSIVE
+    }
+
+    public enum Intervention {
+        SKIP_AD,
+        ABANDON_AD_BREAK,
+        RETRY_CONTENT
+    }
+
+    public interface Listener {
+        void onIntervention(Stall stall, Intervention intervention, long stalledMs);
+    }
+
+    // Interactive ads whose renderer has not reported the ad started within this time are given up on
+    public static final long INTERACTIVE_AD_START_TIMEOUT_MS = 15000;
+    // Interactive ads that have not completed after this many times their duration are given up on
+    public static final long INTERACTIVE_AD_DURATION_MULTIPLIER = 2;
+
+    // Bounds and fallback for the buffering deadline
+    public static final long MIN_BUFFERING_TIMEOUT_MS = 4000;
+    public static final long MAX_BUFFERING_TIMEOUT_MS = 30000;
+    public static final long DEFAULT_BUFFERING_TIMEOUT_MS = 10000;
+
+    // How much media the player buffers before resuming after a rebuffer, and how many times
+    // the expected refill time to wait for it
+    private static final long REBUFFER_TARGET_MS = 5000;
+    private static final long BUFFERING_TIMEOUT_SAFETY_FACTOR = 4;
+    // Assumed media bitrate until the player reports one
+    private static final long DEFAULT_MEDIA_BITRATE = 2_500_000;
+
+    // Slack on top of a regular ad's duration before it counts as overdue
+    private static final long AD_OVERDUE_GRACE_MS = 5000;
+
+    // Interventions within one break before the whole break is given up on
+    public static final int MAX_AD_INTERVENTIONS_PER_BREAK = 2;
+
+    private final Scheduler scheduler;
+    private final Clock clock;
+    private final Listener listener;
+
+    private long bandwidthEstimate;
+    private long mediaBitrate = DEFAULT_MEDIA_BITRATE;
+
+    private final Watch bufferingWatch = new Watch();
+    private boolean bufferingInAd;
+    private final Watch adWatch = new Watch();
+    private boolean interactiveAdWatched;
+    private long interactiveAdDurationMs;
+    private int adInterventionsInBreak;
+    private int interventionCount;
+    private boolean paused;
+
+    // A single deadline that can be re-armed with a backoff, and held while the watchdog is paused
+    private class Watch {
+        Scheduler.Cancellable deadline;
+        Runnable onExpired;
+        long startedAtMs;
+        long timeoutMs;
+        long dueAtMs;
+        // Time that was left until the deadline when the watchdog was paused, or -1
+        long remainingMs = -1;
+        long pausedAtMs;
+
+        void start(long timeoutMs, Runnable onExpired) {
+            cancel();
+            startedAtMs = clock.nowMs();
+            arm(timeoutMs, onExpired);
+        }
+
+        void arm(long timeoutMs, Runnable onExpired) {
+            this.timeoutMs = timeoutMs;
+            this.onExpired = onExpired;
+            schedule(timeoutMs);
+        }
+
+        void rearmWithBackoff(Runnable onExpired) {
+            arm(timeoutMs * 2, onExpired);
+        }
+
+        void cancel() {
+            if (deadline != null) {
+                deadline.cancel();
+                deadline = null;
+            }
+            remainingMs = -1;
+        }
+
+        void pause() {
+            if (deadline != null) {
+                pausedAtMs = clock.nowMs();
+                remainingMs = Math.max(0, dueAtMs - pausedAtMs);
+                deadline.cancel();
+                deadline = null;
+            }
+        }
+
+        void resume() {
+            if (remainingMs >= 0) {
+                long delayMs = remainingMs;
+                remainingMs = -1;
+                // Time spent paused does not count as stalled
+                startedAtMs += clock.nowMs() - pausedAtMs;
+                schedule(delayMs);
+            }
+        }
+
+        boolean isActive() {
+            return deadline != null || remainingMs >= 0;
+        }
+
+        long getElapsedMs() {
+            return clock.nowMs() - startedAtMs;
+        }
+
+        private void schedule(long delayMs) {
+            if (paused) {
+                pausedAtMs = clock.nowMs();
+                remainingMs = delayMs;
+                return;
+            }
+            dueAtMs = clock.nowMs() + delayMs;
+            deadline = scheduler.schedule(() -> {
+                deadline = null;
+                onExpired.run();
+            }, delayMs);
+        }
+    }
+
+    public PlaybackWatchdog(Scheduler scheduler, Clock clock, Listener listener) {
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.listener = listener;
+    }
+
+    // You should call this with the player's bandwidth estimate whenever it changes
+    public void onBandwidthEstimate(long bitsPerSecond) {
+        bandwidthEstimate = bitsPerSecond;
+    }
+
+    // You should call this with the bitrate of the media that is playing, when it is known
+    public void onMediaBitrate(long bitsPerSecond) {
+        if (bitsPerSecond > 0) {
+            mediaBitrate = bitsPerSecond;
+        }
+    }
+
+    /**
+     * @return how long a player may buffer at the current throughput before it counts as stalled
+     */
+    public long getBufferingTimeoutMs() {
+        if (bandwidthEstimate <= 0) {
+            return DEFAULT_BUFFERING_TIMEOUT_MS;
+        }
+        long refillMs = REBUFFER_TARGET_MS * mediaBitrate / bandwidthEstimate;
+        long timeoutMs = refillMs * BUFFERING_TIMEOUT_SAFETY_FACTOR;
+        return Math.max(MIN_BUFFERING_TIMEOUT_MS, Math.min(MAX_BUFFERING_TIMEOUT_MS, timeoutMs));
+    }
+
+    /**
+     * The active player is waiting for data while it should be playing.
+     */
+    public void onBufferingStarted(boolean inAd) {
+        if (bufferingWatch.isActive() && bufferingInAd == inAd) {
+            return;
+        }
+        bufferingInAd = inAd;
+        bufferingWatch.start(getBufferingTimeoutMs(), this::onBufferingExpired);
+    }
+
+    public void onBufferingEnded() {
+        bufferingWatch.cancel();
+    }
+
+    public void onAdBreakStarted() {
+        adInterventionsInBreak = 0;
+    }
+
+    /**
+     * An ad of the pod started playing, or its interactive overlay is being shown.
+     *
+     * @param durationMs the duration of the ad on the pod timeline
+     */
+    public void onAdStarted(Ad ad, long durationMs) {
+        interactiveAdWatched = ad.isInfillionAd();
+        if (interactiveAdWatched) {
+            // Until the renderer shows a sign of life only a short wait is allowed
+            adWatch.start(INTERACTIVE_AD_START_TIMEOUT_MS, this::onAdExpired);
+            interactiveAdDurationMs = ad.duration * 1000L;
+        } else {
+            // Allow for a full buffering timeout on top of the ad itself
+            adWatch.start(durationMs + getBufferingTimeoutMs() + AD_OVERDUE_GRACE_MS, this::onAdExpired);
+        }
+    }
+
+    // You should call this when the interactive ad renderer reports that the ad has started
+    public void onInteractiveAdRendering() {
+        if (interactiveAdWatched) {
+            adWatch.cancel();
+            adWatch.arm(interactiveAdDurationMs * INTERACTIVE_AD_DURATION_MULTIPLIER, this::onAdExpired);
+        }
+    }
+
+    // You should call this when the interactive ad completed, was skipped or was torn down
+    public void onInteractiveAdEnded() {
+        if (interactiveAdWatched) {
+            adWatch.cancel();
+            interactiveAdWatched = false;
+        }
+    }
+
+    public void onAdBreakEnded() {
+        adWatch.cancel();
+        interactiveAdWatched = false;
+        if (bufferingInAd) {
+            bufferingWatch.cancel();
+        }
+    }
+
+    /**
+     * Stop all watches, e.g. when playback goes away.
+     */
+    public void stop() {
+        adWatch.cancel();
+        bufferingWatch.cancel();
+        interactiveAdWatched = false;
+    }
+
+    /**
+     * Hold all deadlines, e.g. while the activity is paused and playback with it. Watches started
+     * while paused only start counting on {@link #resume()}.
+     */
+    public void pause() {
+        if (paused) {
+            return;
+        }
+        paused = true;
+        adWatch.pause();
+        bufferingWatch.pause();
+    }
+
+    /**
+     * Continue the held deadlines with the time they had left.
+     */
+    public void resume() {
+        if (!paused) {
+            return;
+        }
+        paused = false;
+        adWatch.resume();
+        bufferingWatch.resume();
+    }
+
+    public int getInterventionCount() {
+        return interventionCount;
+    }
+
+    private void onBufferingExpired() {
+        // Keep watching in case the intervention does not get playback going again
+        bufferingWatch.rearmWithBackoff(this::onBufferingExpired);
+        if (bufferingInAd) {
+            interveneInAd(Stall.AD_BUFFERING, bufferingWatch.getElapsedMs());
+        } else {
+            intervene(Stall.CONTENT_BUFFERING, Intervention.RETRY_CONTENT, bufferingWatch.getElapsedMs());
+        }
+    }
+
+    private void onAdExpired() {
+        Stall stall = interactiveAdWatched ? Stall.INTERACTIVE_AD_UNRESPONSIVE : Stall.AD_OVERDUE;
+        interveneInAd(stall, adWatch.getElapsedMs());
+    }
+
+    private void interveneInAd(Stall stall, long stalledMs) {
+        adInterventionsInBreak++;
+        Intervention intervention = adInterventionsInBreak > MAX_AD_INTERVENTIONS_PER_BREAK
+            ? Intervention.ABANDON_AD_BREAK
+            : Intervention.SKIP_AD;
+        intervene(stall, intervention, stalledMs);
+    }
+
+    private void intervene(Stall stall, Intervention intervention, long stalledMs) {
+        interventionCount++;
+        listener.onIntervention(stall, intervention, stalledMs);
+    }
+}
@@ -0,0 +1,22 @@
+package com.truex.ctv.referenceapp.ads;
+
+/**
+ * The player that plays the concatenated pod, as seen by {@link AdPod}.
+ */
+public interface PodPlayer {
+    /**
+     * Resume playback of the pod.
+     */
+    void play();
+
+    /**
+     * Seek to the given position in the pod and pause there, e.g. to hold on the last frame
+     * of an interactive ad's placeholder video while the overlay is shown.
+     */
+    void seekAndPause(long positionMs);
+
+    /**
+     * Seek to the given position in the pod and keep playing, e.g. to skip an ad that is stuck.
+     */
+    void seekTo(long positionMs);
+}
@@ -0,0 +1,85 @@
+package com.truex.ctv.referenceapp.ads;
+
+/**
+ * Holds what was prepared ahead for an upcoming ad, e.g. an interactive renderer that has
+ * already been initialized with its VAST config, until the ad is started.
+ *
+ * Only one ad is held at a time, since each prepared renderer holds a WebView. What was
+ * prepared expires after a while, the config it loaded may not be valid anymore by the time
+ * its slot is reached, and it is released rather than shown.
+ */
+public class PreparedAhead<T> {
+    public interface Releaser<T> {
+        void release(T prepared);
+    }
+
+    private final Clock clock;
+    private final long ttlMs;
+    private final Releaser<T> releaser;
+
+    private Ad ad;
+    private T prepared;
+    private long preparedAtMs;
+
+    public PreparedAhead(Clock clock, long ttlMs, Releaser<T> releaser) {
+        this.clock = clock;
+        this.ttlMs = ttlMs;
+        this.releaser = releaser;
+    }
+
+    /**
+     * @return true if the ad has been prepared and has not expired yet
+     */
+    public boolean isPrepared(Ad ad) {
+        return prepared != null && this.ad == ad && !isExpired();
+    }
+
+    /**
+     * Hold what was prepared for the ad, releasing anything prepared for another ad before.
+     */
+    public void put(Ad ad, T prepared) {
+        release();
+        this.ad = ad;
+        this.prepared = prepared;
+        preparedAtMs = clock.nowMs();
+    }
+
+    /**
+     * Hand over what was prepared for the ad, which is then no longer held. Anything prepared
+     * for another ad, or expired, is released.
+     *
+     * @return what was prepared, or null if the ad has to be prepared now
+     */
+    public T take(Ad ad) {
+        if (!isPrepared(ad)) {
+            release();
+            return null;
+        }
+
+        T taken = prepared;
+        this.ad = null;
+        prepared = null;
+        return taken;
+    }
+
+    /**
+     * Release anything held.
+     *
+     * @return true if something was released
+     */
+    public boolean release() {
+        if (prepared == null) {
+            return false;
+        }
+
+        T released = prepared;
+        ad = null;
+        prepared = null;
+        releaser.release(released);
+        return true;
+    }
+
+    private boolean isExpired() {
+        return clock.nowMs() - preparedAtMs >= ttlMs;
+    }
+}
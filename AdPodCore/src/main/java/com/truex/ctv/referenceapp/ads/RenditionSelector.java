@@ -0,0 +1,75 @@
+package com.truex.ctv.referenceapp.ads;
+
+import java.util.List;
+
+/**
+ * Picks the rendition of an ad's creative to play on this device: the best one that the device
+ * can decode, that is no larger than the display and that fits the available bandwidth.
+ */
+public class RenditionSelector {
+    // Share of the bandwidth estimate a rendition's bitrate may use, leaving headroom for variance
+    public static final float BANDWIDTH_FRACTION = 0.75f;
+
+    public interface DecoderSupport {
+        boolean isSupported(AdRendition rendition);
+    }
+
+    private final DecoderSupport decoderSupport;
+    private final int maxWidth;
+    private final int maxHeight;
+
+    /**
+     * @param maxWidth  width of the display, or 0 for no limit
+     * @param maxHeight height of the display, or 0 for no limit
+     */
+    public RenditionSelector(DecoderSupport decoderSupport, int maxWidth, int maxHeight) {
+        this.decoderSupport = decoderSupport;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    /**
+     * @param bandwidthEstimate the current bandwidth estimate in bits per second, or 0 if unknown
+     * @return the rendition to play, or null if none of them can be played on this device
+     */
+    public AdRendition select(List<AdRendition> renditions, long bandwidthEstimate) {
+        long budget = bandwidthEstimate > 0 ? (long) (bandwidthEstimate * BANDWIDTH_FRACTION) : Long.MAX_VALUE;
+
+        AdRendition best = null;
+        AdRendition lowest = null;
+        for (int i = 0; i < renditions.size(); i++) {
+            AdRendition rendition = renditions.get(i);
+            if (!isPlayable(rendition)) {
+                continue;
+            }
+
+            if (lowest == null || rendition.bitrate < lowest.bitrate) {
+                lowest = rendition;
+            }
+            if (rendition.bitrate <= budget && (best == null || isBetter(rendition, best))) {
+                best = rendition;
+            }
+        }
+
+        // Nothing fits the bandwidth, the smallest file gets to the first frame soonest
+        return best != null ? best : lowest;
+    }
+
+    private boolean isPlayable(AdRendition rendition) {
+        if (rendition.mimeType != null && !rendition.mimeType.startsWith("video/")) {
+            // e.g. VPAID JavaScript or Flash
+            return false;
+        }
+        if (maxWidth > 0 && maxHeight > 0 && (rendition.width > maxWidth || rendition.height > maxHeight)) {
+            return false;
+        }
+        return decoderSupport.isSupported(rendition);
+    }
+
+    private static boolean isBetter(AdRendition candidate, AdRendition current) {
+        if (candidate.bitrate != current.bitrate) {
+            return candidate.bitrate > current.bitrate;
+        }
+        return candidate.width * candidate.height > current.width * current.height;
+    }
+}
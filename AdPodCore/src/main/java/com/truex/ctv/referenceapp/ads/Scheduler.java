@@ -0,0 +1,12 @@
+package com.truex.ctv.referenceapp.ads;
+
+/**
+ * Runs delayed tasks on the thread that drives the pod, e.g. a main looper Handler.
+ */
+public interface Scheduler {
+    interface Cancellable {
+        void cancel();
+    }
+
+    Cancellable schedule(Runnable task, long delayMs);
+}
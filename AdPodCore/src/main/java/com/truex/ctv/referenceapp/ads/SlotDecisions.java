@@ -0,0 +1,72 @@
+package com.truex.ctv.referenceapp.ads;
+
+/**
+ * The bookkeeping of a break that is played slot by slot as its slots are decided: the first slot
+ * starts the break and later slots are appended to the pod while it plays.
+ *
+ * Once the pod has ended, e.g. on true[X] credit, the break is closed but still being decided
+ * until its request has finished. Slots the provider decides after that are dropped, and so are
+ * the rest of the slots of the whole break, rather than starting the break a second time.
+ */
+public class SlotDecisions {
+    public enum Action {
+        // The first slot of the break, the break starts with it
+        START,
+        // A later slot, it is added to the end of the pod
+        APPEND,
+        // A slot decided after the pod was closed
+        DROP
+    }
+
+    private int decidedSlotCount;
+    private boolean accepting;
+
+    /**
+     * A slot of the break was decided.
+     */
+    public Action onSlotDecided() {
+        if (decidedSlotCount++ == 0) {
+            accepting = true;
+            return Action.START;
+        }
+        return accepting ? Action.APPEND : Action.DROP;
+    }
+
+    /**
+     * @return the number of slots handed over one by one, the slots of the whole break from
+     * this index on are still to be handed over
+     */
+    public int getDecidedSlotCount() {
+        return decidedSlotCount;
+    }
+
+    /**
+     * @return true if slots of the break were handed over and its request has not finished, i.e.
+     * the whole break must not be played when it is decided
+     */
+    public boolean isDecidingSlots() {
+        return decidedSlotCount > 0;
+    }
+
+    /**
+     * @return true if decided slots can still be added to the pod
+     */
+    public boolean isAccepting() {
+        return accepting;
+    }
+
+    /**
+     * The pod ended, or passed the deadline for slots. Later slots of the break are dropped.
+     */
+    public void close() {
+        accepting = false;
+    }
+
+    /**
+     * The request of the break finished or was cancelled, no more slots of it will be decided.
+     */
+    public void reset() {
+        decidedSlotCount = 0;
+        accepting = false;
+    }
+}
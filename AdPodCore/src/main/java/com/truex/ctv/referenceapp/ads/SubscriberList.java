@@ -0,0 +1,133 @@
+package com.truex.ctv.referenceapp.ads;
+
+import java.util.Arrays;
+
+/**
+ * Subscribers of a single event source, e.g. a player. Subscriptions are either permanent or
+ * scoped, and scoped ones are all released together, e.g. when an ad break ends, so callbacks of
+ * a finished break can't pile up over a long session.
+ *
+ * Dispatching does not allocate: the caller walks the subscribers by index between
+ * {@link #beginDispatch()} and {@link #endDispatch()}. Subscribers removed while an event is
+ * being dispatched are skipped (their slot reads as null), subscribers added while an event is
+ * being dispatched receive the next event.
+ *
+ * All methods are expected to be called on the same thread.
+ */
+public class SubscriberList<L> {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private Object[] subscribers = new Object[INITIAL_CAPACITY];
+    private boolean[] scoped = new boolean[INITIAL_CAPACITY];
+    private int size;
+
+    private int dispatchDepth;
+    private boolean hasRemovedSlots;
+
+    /**
+     * Subscribe until {@link #remove(Object)} is called.
+     */
+    public void add(L subscriber) {
+        add(subscriber, false);
+    }
+
+    /**
+     * Subscribe until the next {@link #releaseScoped()}.
+     */
+    public void addScoped(L subscriber) {
+        add(subscriber, true);
+    }
+
+    public void remove(L subscriber) {
+        for (int i = 0; i < size; i++) {
+            if (subscribers[i] == subscriber) {
+                clearSlot(i);
+                break;
+            }
+        }
+        compactUnlessDispatching();
+    }
+
+    /**
+     * Release all scoped subscriptions.
+     */
+    public void releaseScoped() {
+        for (int i = 0; i < size; i++) {
+            if (scoped[i] && subscribers[i] != null) {
+                clearSlot(i);
+            }
+        }
+        // Only compacted once all of them are cleared, compacting moves the later subscribers
+        compactUnlessDispatching();
+    }
+
+    /**
+     * @return the number of subscribers to walk with {@link #get(int)}
+     */
+    public int beginDispatch() {
+        dispatchDepth++;
+        return size;
+    }
+
+    /**
+     * @return the subscriber at the given index, or null if it was removed during the dispatch
+     */
+    @SuppressWarnings("unchecked")
+    public L get(int index) {
+        return (L) subscribers[index];
+    }
+
+    public void endDispatch() {
+        dispatchDepth--;
+        compactUnlessDispatching();
+    }
+
+    /**
+     * @return the number of live subscriptions
+     */
+    public int getSubscriberCount() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (subscribers[i] != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void add(L subscriber, boolean isScoped) {
+        if (size == subscribers.length) {
+            subscribers = Arrays.copyOf(subscribers, size * 2);
+            scoped = Arrays.copyOf(scoped, size * 2);
+        }
+        subscribers[size] = subscriber;
+        scoped[size] = isScoped;
+        size++;
+    }
+
+    private void clearSlot(int index) {
+        subscribers[index] = null;
+        hasRemovedSlots = true;
+    }
+
+    private void compactUnlessDispatching() {
+        // Keep the indices stable for a dispatch in progress, it compacts when it ends
+        if (dispatchDepth == 0 && hasRemovedSlots) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        int live = 0;
+        for (int i = 0; i < size; i++) {
+            if (subscribers[i] != null) {
+                subscribers[live] = subscribers[i];
+                scoped[live] = scoped[i];
+                live++;
+            }
+        }
+        Arrays.fill(subscribers, live, size, null);
+        size = live;
+        hasRemovedSlots = false;
+    }
+}
@@ -0,0 +1,79 @@
+package com.truex.ctv.referenceapp.ads;
+
+/**
+ * Where in the content an ad break plays: at a content position, at a share of the content
+ * duration, or after the content has ended.
+ */
+public final class TimeOffset {
+    // Returned by resolveMs() while the content duration is not known yet
+    public static final long UNRESOLVED = -1;
+    // Passed to resolveMs() when the content duration is not known yet
+    public static final long DURATION_UNKNOWN = -1;
+
+    public static final TimeOffset START = new TimeOffset(0, -1, false);
+    public static final TimeOffset END = new TimeOffset(-1, -1, true);
+
+    private final long positionMs;
+    private final double percent;
+    private final boolean end;
+
+    private TimeOffset(long positionMs, double percent, boolean end) {
+        this.positionMs = positionMs;
+        this.percent = percent;
+        this.end = end;
+    }
+
+    public static TimeOffset atMs(long positionMs) {
+        if (positionMs < 0) {
+            throw new IllegalArgumentException("Negative time offset " + positionMs);
+        }
+        return positionMs == 0 ? START : new TimeOffset(positionMs, -1, false);
+    }
+
+    /**
+     * @param percent share of the content duration, 0 to 100
+     */
+    public static TimeOffset atPercent(double percent) {
+        if (!(percent >= 0 && percent <= 100)) {
+            throw new IllegalArgumentException("Time offset of " + percent + "%");
+        }
+        if (percent == 0) {
+            return START;
+        }
+        // A player message at the very last position is not reliably delivered, the ended event is
+        return percent == 100 ? END : new TimeOffset(-1, percent, false);
+    }
+
+    public boolean isStart() {
+        return this == START;
+    }
+
+    /**
+     * @return true for a break that plays once the content has ended, it has no cue point
+     */
+    public boolean isEnd() {
+        return end;
+    }
+
+    /**
+     * @return the content position of the break, or {@link #UNRESOLVED} if it is placed by share of
+     * a content duration that is not known yet. Not meaningful for {@link #END}.
+     */
+    public long resolveMs(long contentDurationMs) {
+        if (percent < 0) {
+            return positionMs;
+        }
+        if (contentDurationMs == DURATION_UNKNOWN) {
+            return UNRESOLVED;
+        }
+        return Math.round(contentDurationMs * percent / 100);
+    }
+
+    @Override
+    public String toString() {
+        if (end) {
+            return "end";
+        }
+        return percent >= 0 ? percent + "%" : positionMs + "ms";
+    }
+}
@@ -0,0 +1,47 @@
+package com.truex.ctv.referenceapp.ads;
+
+/**
+ * A VAST tracking URL of an ad, fired when playback of the ad reaches the event.
+ */
+public class TrackingEvent {
+    // In the order they happen during playback of an ad
+    public enum Type {
+        IMPRESSION,
+        START,
+        FIRST_QUARTILE,
+        MIDPOINT,
+        THIRD_QUARTILE,
+        COMPLETE;
+
+        /**
+         * @return the type for a VAST Tracking event name, or null for events that are not tracked
+         */
+        public static Type fromVastEvent(String event) {
+            if (event == null) {
+                return null;
+            }
+            switch (event) {
+                case "start":
+                    return START;
+                case "firstQuartile":
+                    return FIRST_QUARTILE;
+                case "midpoint":
+                    return MIDPOINT;
+                case "thirdQuartile":
+                    return THIRD_QUARTILE;
+                case "complete":
+                    return COMPLETE;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    public final Type type;
+    public final String url;
+
+    public TrackingEvent(Type type, String url) {
+        this.type = type;
+        this.url = url;
+    }
+}
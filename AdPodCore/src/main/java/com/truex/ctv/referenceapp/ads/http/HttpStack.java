@@ -0,0 +1,149 @@
+package com.truex.ctv.referenceapp.ads.http;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The one HTTP client of the process. Content, ad creatives, VAST documents and tracking beacons
+ * all go through the same connection pool, so a host only pays for DNS, TCP and TLS once and
+ * every later request to it reuses a warm connection, multiplexed over HTTP/2 where the server
+ * supports it.
+ *
+ * Connections to hosts that are known ahead of time can be opened with {@link #prewarm}, so the
+ * first real request to them does not wait on the handshakes either.
+ */
+public class HttpStack {
+    // Idle connections kept per process. Content, creatives, VAST and beacons each use a handful
+    // of hosts, and an HTTP/2 connection carries all requests to its host.
+    static final int MAX_IDLE_CONNECTIONS = 8;
+    // Long enough to span the content between two ad breaks, servers usually close earlier
+    static final long KEEP_ALIVE_MS = 5 * 60 * 1000L;
+    static final long CONNECT_TIMEOUT_MS = 5000;
+    static final long READ_TIMEOUT_MS = 8000;
+
+    private final OkHttpClient client;
+    private final String userAgent;
+
+    // When each origin was last pre-warmed, so it is not pre-warmed again while the connection lives
+    private final Map<HttpUrl, Long> prewarmedAtMs = new ConcurrentHashMap<>();
+
+    public HttpStack(String userAgent) {
+        this(userAgent, new OkHttpClient.Builder());
+    }
+
+    /**
+     * @param builder the base client configuration, e.g. with the TLS setup of a test server
+     */
+    public HttpStack(String userAgent, OkHttpClient.Builder builder) {
+        this.userAgent = userAgent;
+        this.client = builder
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MS, TimeUnit.MILLISECONDS))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .readTimeout(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .retryOnConnectionFailure(true)
+            .followRedirects(true)
+            .followSslRedirects(true)
+            .addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                .header("User-Agent", this.userAgent)
+                .build()))
+            .build();
+    }
+
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    /**
+     * A GET request with the shared client's defaults.
+     */
+    public Call newCall(String url) {
+        return client.newCall(new Request.Builder().url(url).build());
+    }
+
+    /**
+     * Fires a GET and discards the response, as a {@link com.truex.ctv.referenceapp.ads.tracking.BeaconPipeline.Sender}.
+     *
+     * @return the HTTP status code of the response
+     */
+    public int send(String url) throws IOException {
+        // Closing the response drains the body, so the connection goes back to the pool
+        try (Response response = newCall(url).execute()) {
+            return response.code();
+        }
+    }
+
+    /**
+     * Open connections to the origins of the given URLs in the background, with a HEAD request
+     * each. Origins that were pre-warmed within the keep-alive time are skipped, as are URLs
+     * that are not HTTP.
+     *
+     * @return the number of origins a connection is opened to
+     */
+    public int prewarm(Collection<String> urls) {
+        long nowMs = System.currentTimeMillis();
+        int count = 0;
+        for (String url : urls) {
+            HttpUrl parsed = url != null ? HttpUrl.parse(url) : null;
+            if (parsed == null) {
+                continue;
+            }
+
+            HttpUrl origin = parsed.newBuilder().encodedPath("/").query(null).fragment(null).build();
+            Long lastMs = prewarmedAtMs.get(origin);
+            if (lastMs != null && nowMs - lastMs < KEEP_ALIVE_MS) {
+                continue;
+            }
+            prewarmedAtMs.put(origin, nowMs);
+            count++;
+
+            Request request = new Request.Builder().url(origin).head().build();
+            client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onResponse(Call call, Response response) {
+                    // The status does not matter, the connection is in the pool once this is closed
+                    response.close();
+                }
+
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    // The real request will try again
+                    prewarmedAtMs.remove(origin);
+                }
+            });
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of connections in the pool, idle or in use
+     */
+    public int getConnectionCount() {
+        return client.connectionPool().connectionCount();
+    }
+
+    /**
+     * Close the idle connections, e.g. when the system is low on memory.
+     */
+    public void evictIdleConnections() {
+        client.connectionPool().evictAll();
+        prewarmedAtMs.clear();
+    }
+}
@@ -0,0 +1,88 @@
+package com.truex.ctv.referenceapp.ads.tracking;
+
+import com.truex.ctv.referenceapp.ads.Ad;
+import com.truex.ctv.referenceapp.ads.TrackingEvent;
+
+/**
+ * Raises the impression and quartile events of the ad that is playing from the player position.
+ * Each event is raised at most once per ad, in order, so a position that jumps ahead raises the
+ * events in between as well.
+ *
+ * Interactive ads are tracked by the ad renderer and are ignored here. All methods are expected
+ * to be called on the same thread.
+ */
+public class AdProgressTracker {
+    private static final TrackingEvent.Type[] TYPES = TrackingEvent.Type.values();
+
+    public interface Listener {
+        void onTrackingEvent(Ad ad, TrackingEvent.Type type);
+    }
+
+    private final Listener listener;
+
+    private Ad ad;
+    // Ordinal of the next event to raise for the ad
+    private int nextType;
+
+    public AdProgressTracker(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void onAdStarted(Ad ad) {
+        this.ad = ad.isRegularAd() ? ad : null;
+        nextType = 0;
+    }
+
+    /**
+     * Raise the events up to the given position of the playing ad. Only positions at which
+     * the ad is actually playing should be reported.
+     */
+    public void onProgress(long positionInAdMs, long durationMs) {
+        if (ad == null || durationMs <= 0) {
+            return;
+        }
+        raiseUpTo(positionInAdMs, durationMs);
+    }
+
+    /**
+     * The ad played to its end.
+     */
+    public void onAdCompleted() {
+        if (ad == null) {
+            return;
+        }
+        raiseUpTo(Long.MAX_VALUE, 1);
+        ad = null;
+    }
+
+    /**
+     * The ad was left before its end, e.g. skipped or cut short by true[X] credit.
+     */
+    public void onAdStopped() {
+        ad = null;
+    }
+
+    private void raiseUpTo(long positionInAdMs, long durationMs) {
+        while (nextType < TYPES.length && reached(TYPES[nextType], positionInAdMs, durationMs)) {
+            listener.onTrackingEvent(ad, TYPES[nextType]);
+            nextType++;
+        }
+    }
+
+    private static boolean reached(TrackingEvent.Type type, long positionInAdMs, long durationMs) {
+        switch (type) {
+            case IMPRESSION:
+            case START:
+                return positionInAdMs >= 0;
+            case FIRST_QUARTILE:
+                return positionInAdMs >= durationMs / 4;
+            case MIDPOINT:
+                return positionInAdMs >= durationMs / 2;
+            case THIRD_QUARTILE:
+                return positionInAdMs >= durationMs * 3 / 4;
+            default:
+                // Only raised when the ad completes
+                return positionInAdMs == Long.MAX_VALUE;
+        }
+    }
+}
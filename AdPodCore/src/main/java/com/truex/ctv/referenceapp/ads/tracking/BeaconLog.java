@@ -0,0 +1,155 @@
+package com.truex.ctv.referenceapp.ads.tracking;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only log of the beacons that still have to be sent, so they survive process death.
+ *
+ * Every queued beacon is appended as "B id url" and every sent beacon as "A id". Opening the log
+ * replays it: the beacons without an acknowledgement are pending. Once enough acknowledgements
+ * have piled up, the log is rewritten with only the pending beacons. A line that was cut short
+ * by the process dying mid write is ignored.
+ *
+ * Not thread safe, use it from a single thread.
+ */
+public class BeaconLog {
+    // Rewrite the log once it holds this many acknowledged beacons
+    static final int COMPACTION_THRESHOLD = 256;
+
+    public static class Beacon {
+        public final long id;
+        public final String url;
+
+        Beacon(long id, String url) {
+            this.id = id;
+            this.url = url;
+        }
+    }
+
+    private final File file;
+    private final Map<Long, Beacon> pending = new LinkedHashMap<>();
+    private Writer writer;
+    private long nextId;
+    private int acknowledgedCount;
+
+    public BeaconLog(File file) throws IOException {
+        this.file = file;
+        boolean endsWithPartialLine = replay();
+        writer = openWriter();
+        if (endsWithPartialLine) {
+            // Terminate it, so the next beacon starts on a line of its own
+            writer.write("\n");
+            writer.flush();
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public Beacon append(String url) throws IOException {
+        Beacon beacon = new Beacon(nextId++, url);
+        writer.write("B " + beacon.id + " " + url + "\n");
+        writer.flush();
+        pending.put(beacon.id, beacon);
+        return beacon;
+    }
+
+    public void acknowledge(List<Beacon> beacons) throws IOException {
+        if (beacons.isEmpty()) {
+            return;
+        }
+        for (Beacon beacon : beacons) {
+            writer.write("A " + beacon.id + "\n");
+            pending.remove(beacon.id);
+        }
+        writer.flush();
+
+        acknowledgedCount += beacons.size();
+        if (acknowledgedCount >= COMPACTION_THRESHOLD) {
+            compact();
+        }
+    }
+
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    // Returns true if the log ends with a line that was cut short
+    private boolean replay() throws IOException {
+        if (!file.exists()) {
+            return false;
+        }
+
+        // The log only holds what is pending plus at most COMPACTION_THRESHOLD acknowledgements
+        String log = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        int lineStart = 0;
+        int lineEnd;
+        while ((lineEnd = log.indexOf('\n', lineStart)) >= 0) {
+            replayLine(log.substring(lineStart, lineEnd));
+            lineStart = lineEnd + 1;
+        }
+        return lineStart < log.length();
+    }
+
+    private void replayLine(String line) {
+        int idEnd = line.indexOf(' ', 2);
+        try {
+            if (line.startsWith("B ") && idEnd > 2) {
+                long id = Long.parseLong(line.substring(2, idEnd));
+                pending.put(id, new Beacon(id, line.substring(idEnd + 1)));
+                nextId = Math.max(nextId, id + 1);
+            } else if (line.startsWith("A ")) {
+                if (pending.remove(Long.parseLong(line.substring(2))) != null) {
+                    acknowledgedCount++;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // A partially written line
+        }
+    }
+
+    private void compact() throws IOException {
+        writer.close();
+
+        // Write the pending beacons to a new file and swap it in, so a crash during
+        // compaction leaves either the old or the new log
+        File compacted = new File(file.getPath() + ".tmp");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(compacted), StandardCharsets.UTF_8)) {
+            for (Beacon beacon : pending.values()) {
+                out.write("B " + beacon.id + " " + beacon.url + "\n");
+            }
+        }
+        boolean replaced = compacted.renameTo(file);
+        writer = openWriter();
+        if (!replaced) {
+            throw new IOException("Failed to replace " + file);
+        }
+        acknowledgedCount = 0;
+    }
+
+    private Writer openWriter() throws IOException {
+        return new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+    }
+
+    List<Beacon> getPendingBatch(int maxCount) {
+        List<Beacon> batch = new ArrayList<>(Math.min(maxCount, pending.size()));
+        for (Beacon beacon : pending.values()) {
+            if (batch.size() == maxCount) {
+                break;
+            }
+            batch.add(beacon);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,195 @@
+package com.truex.ctv.referenceapp.ads.tracking;
+
+import com.truex.ctv.referenceapp.ads.Scheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Sends ad tracking beacons in batches, from a {@link BeaconLog} so that beacons that have not
+ * been sent yet survive process death and are sent on the next run.
+ *
+ * Beacons are collected for {@link #BATCH_DELAY_MS} and then sent one after the other over the
+ * sender's reused connection. When the ad server can't be reached, or answers with a server
+ * error, the rest of the batch is kept and retried with an exponential backoff. Beacons the
+ * server rejects are dropped, retrying them would not help, and so are beacons the sender fails
+ * on without an IOException. URLs that are not valid HTTP URLs are not queued at all.
+ *
+ * All work, including the disk and network I/O, runs on the scheduler, which is expected to run
+ * its tasks one at a time on a background thread. The public methods can be called from any
+ * thread.
+ */
+public class BeaconPipeline {
+    public interface Sender {
+        /**
+         * @return the HTTP status code of the response
+         * @throws IOException if no response was received
+         */
+        int send(String url) throws IOException;
+    }
+
+    static final int BATCH_SIZE = 20;
+    static final long BATCH_DELAY_MS = 2000;
+    static final long INITIAL_BACKOFF_MS = 1000;
+    static final long MAX_BACKOFF_MS = 5 * 60 * 1000L;
+
+    private final File logFile;
+    private final Sender sender;
+    private final Scheduler scheduler;
+
+    // Owned by the scheduler thread
+    private BeaconLog log;
+    private Scheduler.Cancellable scheduledFlush;
+    private int consecutiveFailures;
+
+    private volatile long sentCount;
+    private volatile long droppedCount;
+    private volatile long failedAttemptCount;
+    private volatile int pendingCount;
+
+    public BeaconPipeline(File logFile, Sender sender, Scheduler scheduler) {
+        this.logFile = logFile;
+        this.sender = sender;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Open the log and send what is left over from earlier runs.
+     */
+    public void start() {
+        scheduler.schedule(() -> {
+            try {
+                log = new BeaconLog(logFile);
+            } catch (IOException e) {
+                // Without the log beacons are not persisted, and can't be queued
+                return;
+            }
+            pendingCount = log.getPendingCount();
+            if (pendingCount > 0) {
+                scheduleFlush(0);
+            }
+        }, 0);
+    }
+
+    public void enqueue(String url) {
+        scheduler.schedule(() -> {
+            HttpUrl parsed = url != null ? HttpUrl.parse(url) : null;
+            if (log == null || parsed == null) {
+                droppedCount++;
+                return;
+            }
+            try {
+                // The parsed form is encoded, so it fits on one line of the log
+                log.append(parsed.toString());
+            } catch (IOException e) {
+                droppedCount++;
+                return;
+            }
+            pendingCount = log.getPendingCount();
+            scheduleFlush(BATCH_DELAY_MS);
+        }, 0);
+    }
+
+    /**
+     * Send the pending beacons now instead of waiting for the batch delay or the backoff,
+     * e.g. when the network comes back or the app goes to the background.
+     */
+    public void flushNow() {
+        scheduler.schedule(() -> {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel();
+                scheduledFlush = null;
+            }
+            consecutiveFailures = 0;
+            flush();
+        }, 0);
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public long getFailedAttemptCount() {
+        return failedAttemptCount;
+    }
+
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    private void scheduleFlush(long delayMs) {
+        if (scheduledFlush == null) {
+            scheduledFlush = scheduler.schedule(() -> {
+                scheduledFlush = null;
+                flush();
+            }, delayMs);
+        }
+    }
+
+    private void flush() {
+        if (log == null) {
+            return;
+        }
+
+        List<BeaconLog.Beacon> batch = log.getPendingBatch(BATCH_SIZE);
+        List<BeaconLog.Beacon> done = new ArrayList<>(batch.size());
+        boolean failed = false;
+        for (BeaconLog.Beacon beacon : batch) {
+            int status;
+            try {
+                status = sender.send(beacon.url);
+            } catch (IOException e) {
+                failed = true;
+                break;
+            } catch (RuntimeException e) {
+                // Not the network but the beacon itself, e.g. a malformed URL persisted by an
+                // earlier version. It would fail again on every retry and hold up the queue.
+                droppedCount++;
+                done.add(beacon);
+                continue;
+            }
+
+            if (status >= 500) {
+                failed = true;
+                break;
+            }
+            if (status >= 400) {
+                droppedCount++;
+            } else {
+                sentCount++;
+            }
+            done.add(beacon);
+        }
+
+        try {
+            log.acknowledge(done);
+        } catch (IOException e) {
+            // The beacons were sent, at worst they are sent again on the next run
+        }
+        pendingCount = log.getPendingCount();
+
+        if (failed) {
+            failedAttemptCount++;
+            consecutiveFailures++;
+            scheduleFlush(getBackoffMs());
+        } else {
+            consecutiveFailures = 0;
+            if (pendingCount > 0) {
+                scheduleFlush(0);
+            }
+        }
+    }
+
+    private long getBackoffMs() {
+        int doublings = Math.min(consecutiveFailures - 1, 30);
+        return Math.min(INITIAL_BACKOFF_MS << doublings, MAX_BACKOFF_MS);
+    }
+}
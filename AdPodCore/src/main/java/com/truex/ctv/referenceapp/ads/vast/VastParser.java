@@ -0,0 +1,408 @@
+package com.truex.ctv.referenceapp.ads.vast;
+
+import com.truex.ctv.referenceapp.ads.Ad;
+import com.truex.ctv.referenceapp.ads.AdRendition;
+import com.truex.ctv.referenceapp.ads.TimeOffset;
+import com.truex.ctv.referenceapp.ads.TrackingEvent;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streaming VAST and VMAP parser built on XmlPullParser. No document tree is built: every ad is
+ * handed to the {@link Handler} as soon as its closing tag has been read, so ad server responses
+ * with hundreds of breaks can be consumed incrementally.
+ *
+ * Wrapper ads are resolved through the {@link WrapperResolver}, up to {@link #getMaxWrapperDepth()}
+ * levels deep. Wrappers that are nested deeper, or that fail to load or parse, are dropped.
+ * VMAP breaks with a time offset other than start, end, a clock value or a percentage are
+ * dropped too.
+ *
+ * A parser instance keeps the state of the ad being read, so it must not be shared between threads.
+ */
+public class VastParser {
+    public static final int DEFAULT_MAX_WRAPPER_DEPTH = 5;
+
+    public interface Handler {
+        /**
+         * A VMAP ad break starts. Not called for plain VAST documents.
+         */
+        default void onAdBreakStart(String breakId, TimeOffset timeOffset) {
+        }
+
+        void onAd(Ad ad);
+
+        /**
+         * A VMAP ad break ends. Not called for plain VAST documents.
+         */
+        default void onAdBreakEnd() {
+        }
+    }
+
+    public interface WrapperResolver {
+        InputStream open(String vastAdTagUri) throws IOException;
+    }
+
+    private final XmlPullParserFactory parserFactory;
+    private final WrapperResolver wrapperResolver;
+    private final int maxWrapperDepth;
+
+    // Fields of the ad being parsed, reset for every <Ad>
+    private String adId;
+    private int adSequence;
+    private String adSystem;
+    private String mediaFileUrl;
+    private List<AdRendition> renditions;
+    private String vastConfigUrl;
+    private int durationSeconds;
+    private String wrapperUri;
+    private List<TrackingEvent> trackingEvents;
+
+    // Tracking of the wrappers around the ads being parsed, fired along with their own
+    private List<TrackingEvent> inheritedTracking = Collections.emptyList();
+
+    // Position of the next ad within the current break
+    private int nextPosition;
+
+    public VastParser(XmlPullParserFactory parserFactory, WrapperResolver wrapperResolver) {
+        this(parserFactory, wrapperResolver, DEFAULT_MAX_WRAPPER_DEPTH);
+    }
+
+    public VastParser(XmlPullParserFactory parserFactory, WrapperResolver wrapperResolver, int maxWrapperDepth) {
+        this.parserFactory = parserFactory;
+        this.wrapperResolver = wrapperResolver;
+        this.maxWrapperDepth = maxWrapperDepth;
+        this.parserFactory.setNamespaceAware(true);
+    }
+
+    public int getMaxWrapperDepth() {
+        return maxWrapperDepth;
+    }
+
+    /**
+     * Parse a VAST document, emitting each ad as it is read.
+     */
+    public void parseVast(InputStream in, Handler handler) throws IOException, XmlPullParserException {
+        nextPosition = 1;
+        inheritedTracking = Collections.emptyList();
+        parseVast(newParser(in), handler, 0);
+    }
+
+    /**
+     * Parse a VMAP document, emitting each break and its ads as they are read. Breaks whose ads
+     * are referenced by an AdTagURI are resolved through the wrapper resolver.
+     */
+    public void parseVmap(InputStream in, Handler handler) throws IOException, XmlPullParserException {
+        XmlPullParser parser = newParser(in);
+        inheritedTracking = Collections.emptyList();
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG && "AdBreak".equals(parser.getName())) {
+                parseAdBreak(parser, handler);
+            }
+            eventType = parser.next();
+        }
+    }
+
+    private XmlPullParser newParser(InputStream in) throws XmlPullParserException {
+        XmlPullParser parser = parserFactory.newPullParser();
+        parser.setInput(in, null);
+        return parser;
+    }
+
+    private void parseAdBreak(XmlPullParser parser, Handler handler) throws IOException, XmlPullParserException {
+        String breakId = parser.getAttributeValue(null, "breakId");
+        TimeOffset timeOffset = parseTimeOffset(parser.getAttributeValue(null, "timeOffset"));
+        int depth = parser.getDepth();
+        if (timeOffset == null) {
+            // Playing the break anywhere else than where the ad server placed it would be wrong
+            skipElement(parser, depth);
+            return;
+        }
+        handler.onAdBreakStart(breakId, timeOffset);
+        nextPosition = 1;
+
+        int eventType = parser.next();
+        while (!(eventType == XmlPullParser.END_TAG && parser.getDepth() == depth)) {
+            if (eventType == XmlPullParser.START_TAG) {
+                String name = parser.getName();
+                if ("VAST".equals(name)) {
+                    parseVastElement(parser, handler, 0);
+                } else if ("AdTagURI".equals(name)) {
+                    resolveWrapper(readText(parser), handler, 0);
+                }
+            } else if (eventType == XmlPullParser.END_DOCUMENT) {
+                break;
+            }
+            eventType = parser.next();
+        }
+
+        handler.onAdBreakEnd();
+    }
+
+    private void parseVast(XmlPullParser parser, Handler handler, int wrapperDepth) throws IOException, XmlPullParserException {
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG && "VAST".equals(parser.getName())) {
+                parseVastElement(parser, handler, wrapperDepth);
+            }
+            eventType = parser.next();
+        }
+    }
+
+    private void parseVastElement(XmlPullParser parser, Handler handler, int wrapperDepth) throws IOException, XmlPullParserException {
+        int depth = parser.getDepth();
+        int eventType = parser.next();
+        while (!(eventType == XmlPullParser.END_TAG && parser.getDepth() == depth)) {
+            if (eventType == XmlPullParser.START_TAG && "Ad".equals(parser.getName())) {
+                parseAd(parser, handler, wrapperDepth);
+            } else if (eventType == XmlPullParser.END_DOCUMENT) {
+                return;
+            }
+            eventType = parser.next();
+        }
+    }
+
+    private void parseAd(XmlPullParser parser, Handler handler, int wrapperDepth) throws IOException, XmlPullParserException {
+        adId = parser.getAttributeValue(null, "id");
+        adSequence = parseInt(parser.getAttributeValue(null, "sequence"), 0);
+        adSystem = null;
+        mediaFileUrl = null;
+        renditions = new ArrayList<>();
+        vastConfigUrl = null;
+        durationSeconds = 0;
+        wrapperUri = null;
+        trackingEvents = new ArrayList<>();
+
+        int depth = parser.getDepth();
+        int eventType = parser.next();
+        while (!(eventType == XmlPullParser.END_TAG && parser.getDepth() == depth)) {
+            if (eventType == XmlPullParser.START_TAG) {
+                switch (parser.getName()) {
+                    case "AdSystem":
+                        adSystem = readText(parser);
+                        break;
+                    case "Duration":
+                        durationSeconds = parseDurationSeconds(readText(parser));
+                        break;
+                    case "MediaFile":
+                        readMediaFile(parser);
+                        break;
+                    case "AdParameters":
+                        vastConfigUrl = extractVastConfigUrl(readText(parser));
+                        break;
+                    case "VASTAdTagURI":
+                        wrapperUri = readText(parser);
+                        break;
+                    case "Impression":
+                        addTrackingEvent(TrackingEvent.Type.IMPRESSION, readText(parser));
+                        break;
+                    case "Tracking":
+                        addTrackingEvent(TrackingEvent.Type.fromVastEvent(parser.getAttributeValue(null, "event")), readText(parser));
+                        break;
+                    default:
+                        break;
+                }
+            } else if (eventType == XmlPullParser.END_DOCUMENT) {
+                return;
+            }
+            eventType = parser.next();
+        }
+
+        if (wrapperUri != null) {
+            // The wrapper's tracking is fired for every ad it resolves to
+            List<TrackingEvent> outerTracking = inheritedTracking;
+            inheritedTracking = withInheritedTracking(trackingEvents);
+            resolveWrapper(wrapperUri, handler, wrapperDepth);
+            inheritedTracking = outerTracking;
+        } else if (mediaFileUrl != null) {
+            int position = adSequence > 0 ? adSequence : nextPosition;
+            nextPosition = position + 1;
+            handler.onAd(new Ad(adSystem, mediaFileUrl, vastConfigUrl, durationSeconds, position, adId, renditions,
+                withInheritedTracking(trackingEvents)));
+        }
+    }
+
+    private void addTrackingEvent(TrackingEvent.Type type, String url) {
+        if (type != null && url != null && !url.isEmpty()) {
+            trackingEvents.add(new TrackingEvent(type, url));
+        }
+    }
+
+    private List<TrackingEvent> withInheritedTracking(List<TrackingEvent> own) {
+        if (inheritedTracking.isEmpty()) {
+            return own;
+        }
+        List<TrackingEvent> all = new ArrayList<>(inheritedTracking.size() + own.size());
+        all.addAll(inheritedTracking);
+        all.addAll(own);
+        return all;
+    }
+
+    // The first media file is the default creative, all of them are renditions to choose from
+    private void readMediaFile(XmlPullParser parser) throws IOException, XmlPullParserException {
+        String type = parser.getAttributeValue(null, "type");
+        String codec = parser.getAttributeValue(null, "codec");
+        // VAST bitrates are in kbps
+        long bitrate = parseInt(parser.getAttributeValue(null, "bitrate"), AdRendition.UNKNOWN) * 1000L;
+        int width = parseInt(parser.getAttributeValue(null, "width"), AdRendition.UNKNOWN);
+        int height = parseInt(parser.getAttributeValue(null, "height"), AdRendition.UNKNOWN);
+        String url = readText(parser);
+        if (url == null || url.isEmpty()) {
+            return;
+        }
+
+        if (mediaFileUrl == null) {
+            mediaFileUrl = url;
+        }
+        renditions.add(new AdRendition(url, type, codec, bitrate, width, height));
+    }
+
+    private void resolveWrapper(String uri, Handler handler, int wrapperDepth) {
+        if (uri == null || uri.isEmpty() || wrapperDepth >= maxWrapperDepth) {
+            return;
+        }
+
+        try (InputStream in = wrapperResolver.open(uri)) {
+            parseVast(newParser(in), handler, wrapperDepth + 1);
+        } catch (IOException | XmlPullParserException e) {
+            // An unreachable or malformed wrapper only costs its own ads, not the rest of the break
+        }
+    }
+
+    private static void skipElement(XmlPullParser parser, int depth) throws IOException, XmlPullParserException {
+        int eventType = parser.next();
+        while (!(eventType == XmlPullParser.END_TAG && parser.getDepth() == depth) && eventType != XmlPullParser.END_DOCUMENT) {
+            eventType = parser.next();
+        }
+    }
+
+    private static String readText(XmlPullParser parser) throws IOException, XmlPullParserException {
+        String text = parser.nextText();
+        return text == null ? null : text.trim();
+    }
+
+    /**
+     * Extract "vast_config_url" from the JSON AdParameters of an Infillion ad without a JSON parser.
+     */
+    static String extractVastConfigUrl(String adParameters) {
+        if (adParameters == null) {
+            return null;
+        }
+
+        int keyIndex = adParameters.indexOf("\"vast_config_url\"");
+        if (keyIndex < 0) {
+            return null;
+        }
+        int start = adParameters.indexOf('"', adParameters.indexOf(':', keyIndex) + 1);
+        if (start < 0) {
+            return null;
+        }
+        int end = adParameters.indexOf('"', start + 1);
+        if (end < 0) {
+            return null;
+        }
+        return adParameters.substring(start + 1, end).replace("\\/", "/");
+    }
+
+    /**
+     * Parse a VAST duration, HH:MM:SS or HH:MM:SS.mmm, rounded to whole seconds.
+     */
+    static int parseDurationSeconds(String duration) {
+        long ms = parseClockMs(duration);
+        return ms < 0 ? 0 : (int) ((ms + 500) / 1000);
+    }
+
+    /**
+     * Parse a VMAP time offset: "start", "end", a HH:MM:SS.mmm clock value or a percentage of the
+     * content duration.
+     *
+     * @return the offset, or null for positional offsets ("#n") and anything else that is not valid
+     */
+    static TimeOffset parseTimeOffset(String timeOffset) {
+        if (timeOffset == null) {
+            return null;
+        }
+        timeOffset = timeOffset.trim();
+        if ("start".equals(timeOffset)) {
+            return TimeOffset.START;
+        }
+        if ("end".equals(timeOffset)) {
+            return TimeOffset.END;
+        }
+
+        if (timeOffset.endsWith("%")) {
+            try {
+                double percent = Double.parseDouble(timeOffset.substring(0, timeOffset.length() - 1));
+                return percent >= 0 && percent <= 100 ? TimeOffset.atPercent(percent) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        // A clock value has at least hours, minutes and seconds
+        if (timeOffset.indexOf(':') < 0) {
+            return null;
+        }
+        long ms = parseClockMs(timeOffset);
+        return ms < 0 ? null : TimeOffset.atMs(ms);
+    }
+
+    private static long parseClockMs(String clock) {
+        if (clock == null) {
+            return -1;
+        }
+
+        long totalMs = 0;
+        long part = 0;
+        long fraction = -1;
+        int fractionDigits = 0;
+        for (int i = 0; i < clock.length(); i++) {
+            char c = clock.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (fraction >= 0) {
+                    if (fractionDigits < 3) {
+                        fraction = fraction * 10 + (c - '0');
+                        fractionDigits++;
+                    }
+                } else {
+                    part = part * 10 + (c - '0');
+                }
+            } else if (c == ':') {
+                totalMs = (totalMs + part) * 60;
+                part = 0;
+            } else if (c == '.') {
+                fraction = 0;
+            } else {
+                return -1;
+            }
+        }
+
+        totalMs = (totalMs + part) * 1000;
+        if (fraction > 0) {
+            for (int i = fractionDigits; i < 3; i++) {
+                fraction *= 10;
+            }
+            totalMs += fraction;
+        }
+        return totalMs;
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
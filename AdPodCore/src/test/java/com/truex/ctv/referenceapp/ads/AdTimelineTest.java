@@ -0,0 +1,80 @@
+package com.truex.ctv.referenceapp.ads;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdTimelineTest {
+    private AdTimeline timeline;
+
+    @Before
+    public void setUp() {
+        timeline = new AdTimeline();
+        timeline.reset(Arrays.asList(ad(10), ad(10), ad(10)));
+    }
+
+    @Test
+    public void resetUsesPlaceholderDurations() {
+        assertEquals(3, timeline.getAdCount());
+        assertEquals(0, timeline.getStartPositionMs(0));
+        assertEquals(10000, timeline.getStartPositionMs(1));
+        assertEquals(30000, timeline.getEndPositionMs(2));
+    }
+
+    @Test
+    public void unknownDurationAfterKnownOneKeepsItsLength() {
+        assertTrue(timeline.update(new long[] {15000, AdTimeline.DURATION_UNKNOWN, AdTimeline.DURATION_UNKNOWN}));
+
+        assertEquals(15000, timeline.getDurationMs(0));
+        assertEquals(10000, timeline.getDurationMs(1));
+        assertEquals(10000, timeline.getDurationMs(2));
+        assertEquals(15000, timeline.getStartPositionMs(1));
+        assertEquals(25000, timeline.getStartPositionMs(2));
+        assertEquals(35000, timeline.getEndPositionMs(2));
+    }
+
+    @Test
+    public void unknownDurationsKeepLengthsOfEarlierUpdates() {
+        timeline.update(new long[] {12000, 8000, 10000});
+        timeline.update(new long[] {5000, AdTimeline.DURATION_UNKNOWN, 20000});
+
+        assertEquals(5000, timeline.getDurationMs(0));
+        assertEquals(8000, timeline.getDurationMs(1));
+        assertEquals(20000, timeline.getDurationMs(2));
+        assertEquals(33000, timeline.getEndPositionMs(2));
+    }
+
+    @Test
+    public void updateWithSameDurationsReportsNoChange() {
+        assertFalse(timeline.update(new long[] {10000, AdTimeline.DURATION_UNKNOWN, 10000}));
+    }
+
+    @Test
+    public void findsAdAtPosition() {
+        timeline.update(new long[] {15000, AdTimeline.DURATION_UNKNOWN, AdTimeline.DURATION_UNKNOWN});
+
+        assertEquals(0, timeline.getAdIndexAt(14999));
+        assertEquals(1, timeline.getAdIndexAt(15000));
+        assertEquals(2, timeline.getAdIndexAt(34999));
+        assertEquals(-1, timeline.getAdIndexAt(35000));
+        assertEquals(-1, timeline.getAdIndexAt(-1));
+    }
+
+    @Test
+    public void appendExtendsPod() {
+        timeline.append(ad(30));
+
+        assertEquals(4, timeline.getAdCount());
+        assertEquals(30000, timeline.getStartPositionMs(3));
+        assertEquals(60000, timeline.getEndPositionMs(3));
+    }
+
+    static Ad ad(int durationSeconds) {
+        return new Ad("GDFP", "https://media.example.com/creative.mp4", null, durationSeconds, 1, "ad");
+    }
+}
@@ -0,0 +1,306 @@
+package com.truex.ctv.referenceapp.ads;
+
+import com.truex.ctv.referenceapp.ads.http.HttpStack;
+import com.truex.ctv.referenceapp.ads.http.StandInServer;
+import com.truex.ctv.referenceapp.ads.vast.VastParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CachingAdProviderTest {
+    private static final String BREAK_ID = "preroll";
+    private static final long TTL_MS = 60_000;
+
+    private final Executor direct = Runnable::run;
+
+    private List<String> results;
+    private long nowMs;
+    private int loadCount;
+    private RuntimeException loaderBug;
+    private IOException loaderFailure;
+    private AdBreak decidedBreak;
+
+    private StandInServer adServer;
+    private ExecutorService loadExecutor;
+
+    @Before
+    public void setUp() {
+        results = new ArrayList<>();
+        nowMs = 0;
+        loadCount = 0;
+        decidedBreak = new AdBreak(BREAK_ID, 0, Arrays.asList(ad("first"), ad("second")));
+    }
+
+    @After
+    public void tearDown() {
+        if (adServer != null) {
+            adServer.close();
+        }
+        if (loadExecutor != null) {
+            loadExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void deliversLoadedBreakAndCachesIt() {
+        CachingAdProvider provider = newProvider();
+        provider.requestAdBreak(BREAK_ID, new RecordingCallback());
+        provider.requestAdBreak(BREAK_ID, new RecordingCallback());
+
+        assertEquals(1, loadCount);
+        assertEquals(Arrays.asList("ad first", "ad second", "loaded 2", "loaded 2"), results);
+    }
+
+    @Test
+    public void reloadsOnceTheTtlRunsOut() {
+        CachingAdProvider provider = newProvider();
+        provider.requestAdBreak(BREAK_ID, new RecordingCallback());
+        nowMs = TTL_MS;
+        provider.requestAdBreak(BREAK_ID, new RecordingCallback());
+
+        assertEquals(2, loadCount);
+    }
+
+    @Test
+    public void loaderBugFailsTheRequestAndIsNotCached() {
+        CachingAdProvider provider = newProvider();
+        loaderBug = new IllegalStateException("unexpected response");
+        provider.requestAdBreak(BREAK_ID, new RecordingCallback());
+
+        assertEquals(Arrays.asList("failed IllegalStateException"), results);
+
+        // The failed load is no longer pending, so the next request loads again
+        loaderBug = null;
+        results.clear();
+        provider.requestAdBreak(BREAK_ID, new RecordingCallback());
+        assertEquals(2, loadCount);
+        assertEquals(Arrays.asList("ad first", "ad second", "loaded 2"), results);
+    }
+
+    @Test
+    public void loadFailureFailsTheRequestAndIsNotCached() {
+        CachingAdProvider provider = newProvider();
+        loaderFailure = new IOException("ad server unreachable");
+        provider.requestAdBreak(BREAK_ID, new RecordingCallback());
+        loaderFailure = null;
+        provider.requestAdBreak(BREAK_ID, new RecordingCallback());
+
+        assertEquals(2, loadCount);
+        assertEquals(Arrays.asList("failed IOException", "ad first", "ad second", "loaded 2"), results);
+    }
+
+    @Test
+    public void missingBreakFails() {
+        CachingAdProvider provider = newProvider();
+        decidedBreak = null;
+        provider.requestAdBreak(BREAK_ID, new RecordingCallback());
+
+        assertEquals(Arrays.asList("failed IOException"), results);
+    }
+
+    @Test
+    public void cancelledRequestIsNotCalledBack() {
+        List<Runnable> callbacks = new ArrayList<>();
+        CachingAdProvider provider = new CachingAdProvider(new TestLoader(), direct, callbacks::add, () -> nowMs, TTL_MS);
+        provider.requestAdBreak(BREAK_ID, new RecordingCallback()).cancel();
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+
+        assertEquals(1, loadCount);
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    public void concurrentRequestsShareOneAdServerRequest() throws Exception {
+        CachingAdProvider provider = newAdServerProvider();
+        adServer.holdResponses();
+        CountDownLatch loaded = new CountDownLatch(2);
+        provider.requestAdBreak(BREAK_ID, new RecordingCallback(loaded));
+        adServer.awaitRequestCount(1);
+        provider.requestAdBreak(BREAK_ID, new RecordingCallback(loaded));
+        adServer.releaseResponses();
+
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("/decision?break=" + BREAK_ID), adServer.getRequests());
+        assertEquals(Arrays.asList("ad truex-1", "ad regular-2", "loaded 2", "ad truex-1", "ad regular-2", "loaded 2"),
+            sortedPerRequest(results));
+    }
+
+    @Test
+    public void adServerIsRequestedAgainOnceTheTtlRunsOut() throws Exception {
+        CachingAdProvider provider = newAdServerProvider();
+        awaitLoaded(provider);
+        nowMs = TTL_MS - 1;
+        awaitLoaded(provider);
+        assertEquals(1, adServer.getRequests().size());
+
+        nowMs = TTL_MS;
+        awaitLoaded(provider);
+        assertEquals(2, adServer.getRequests().size());
+        // The reload goes over the connection kept alive from the first one
+        assertEquals(1, adServer.getConnectionCount());
+    }
+
+    @Test
+    public void adServerErrorIsNotCached() throws Exception {
+        CachingAdProvider provider = newAdServerProvider();
+        adServer.respond("/decision", 503, "");
+        awaitLoaded(provider);
+        assertEquals(Collections.singletonList("failed IOException"), results);
+
+        adServer.respond("/decision", 200, openFixture("inline.xml"));
+        results.clear();
+        awaitLoaded(provider);
+        assertEquals(Arrays.asList("ad truex-1", "ad regular-2", "loaded 2"), results);
+        assertEquals(2, adServer.getRequests().size());
+    }
+
+    private CachingAdProvider newProvider() {
+        return new CachingAdProvider(new TestLoader(), direct, direct, () -> nowMs, TTL_MS);
+    }
+
+    // Loads run on a thread of their own, callbacks come in on the loading thread
+    private CachingAdProvider newAdServerProvider() throws IOException {
+        adServer = new StandInServer();
+        adServer.respond("/decision", 200, openFixture("inline.xml"));
+        adServer.start();
+        loadExecutor = Executors.newCachedThreadPool();
+        return new CachingAdProvider(new AdServerLoader(new HttpStack("CachingAdProviderTest"), adServer),
+            loadExecutor, direct, () -> nowMs, TTL_MS);
+    }
+
+    private void awaitLoaded(CachingAdProvider provider) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        provider.requestAdBreak(BREAK_ID, new RecordingCallback(done));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    // Both requests get every ad and then the break, but their callbacks may interleave
+    private static List<String> sortedPerRequest(List<String> results) {
+        List<String> sorted = new ArrayList<>();
+        List<String> remaining = new ArrayList<>(results);
+        while (!remaining.isEmpty()) {
+            for (String expected : Arrays.asList("ad truex-1", "ad regular-2", "loaded 2")) {
+                assertTrue(remaining.remove(expected));
+                sorted.add(expected);
+            }
+        }
+        return sorted;
+    }
+
+    private static InputStream openFixture(String name) {
+        return CachingAdProviderTest.class.getResourceAsStream("/vast/" + name);
+    }
+
+    private static Ad ad(String adId) {
+        return new Ad("GDFP", "https://media.example.com/" + adId + ".mp4", null, 15, 1, adId);
+    }
+
+    private class TestLoader implements AdBreakLoader {
+        @Override
+        public AdBreak loadAdBreak(String breakId) throws IOException {
+            loadCount++;
+            if (loaderBug != null) {
+                throw loaderBug;
+            }
+            if (loaderFailure != null) {
+                throw loaderFailure;
+            }
+            return decidedBreak;
+        }
+    }
+
+    // Requests the break from the stand-in ad server over the real HTTP stack, which decides it
+    // as a VAST document
+    private static class AdServerLoader implements AdBreakLoader {
+        private final HttpStack httpStack;
+        private final StandInServer adServer;
+
+        AdServerLoader(HttpStack httpStack, StandInServer adServer) {
+            this.httpStack = httpStack;
+            this.adServer = adServer;
+        }
+
+        @Override
+        public AdBreak loadAdBreak(String breakId) throws IOException {
+            return loadAdBreak(breakId, ad -> {
+            });
+        }
+
+        @Override
+        public AdBreak loadAdBreak(String breakId, AdSink sink) throws IOException {
+            List<Ad> ads = new ArrayList<>();
+            try (Response response = httpStack.newCall(adServer.url("/decision?break=" + breakId)).execute()) {
+                if (!response.isSuccessful()) {
+                    throw new IOException("HTTP " + response.code());
+                }
+                VastParser parser = new VastParser(XmlPullParserFactory.newInstance(), uri -> {
+                    throw new IOException("Unexpected wrapper " + uri);
+                });
+                parser.parseVast(response.body().byteStream(), ad -> {
+                    ads.add(ad);
+                    sink.onAdDecided(ad);
+                });
+            } catch (XmlPullParserException e) {
+                throw new IOException("Invalid VAST document", e);
+            }
+            return new AdBreak(breakId, TimeOffset.START, ads);
+        }
+    }
+
+    private class RecordingCallback implements AdProvider.Callback {
+        private final CountDownLatch done;
+
+        RecordingCallback() {
+            this(new CountDownLatch(1));
+        }
+
+        RecordingCallback(CountDownLatch done) {
+            this.done = done;
+        }
+
+        @Override
+        public void onAdDecided(String breakId, Ad ad) {
+            synchronized (results) {
+                results.add("ad " + ad.adId);
+            }
+        }
+
+        @Override
+        public void onAdBreakLoaded(AdBreak adBreak) {
+            synchronized (results) {
+                results.add("loaded " + adBreak.ads.size());
+            }
+            done.countDown();
+        }
+
+        @Override
+        public void onAdBreakFailed(String breakId, Exception error) {
+            synchronized (results) {
+                results.add("failed " + error.getClass().getSimpleName());
+            }
+            done.countDown();
+        }
+    }
+}
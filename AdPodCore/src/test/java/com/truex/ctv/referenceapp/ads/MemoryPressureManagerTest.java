@@ -0,0 +1,110 @@
+package com.truex.ctv.referenceapp.ads;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryPressureManagerTest {
+    private ManualScheduler clock;
+    private MemoryPressureManager manager;
+    private List<MemoryPressureManager.Level> levels;
+
+    @Before
+    public void setUp() {
+        clock = new ManualScheduler();
+        manager = new MemoryPressureManager(clock);
+        levels = new ArrayList<>();
+        manager.addResponder(level -> {
+            levels.add(level);
+            return null;
+        });
+        // Stand-ins for the ad manager's warm renderer and the content player's buffer
+        manager.addResponder(level -> level != MemoryPressureManager.Level.MODERATE ? "warm renderer" : null);
+        manager.addResponder(level -> level == MemoryPressureManager.Level.CRITICAL ? "content buffer" : null);
+    }
+
+    @Test
+    public void mapsEveryTrimLevel() {
+        assertNull(MemoryPressureManager.toLevel(0));
+        assertSame(MemoryPressureManager.Level.MODERATE, MemoryPressureManager.toLevel(MemoryPressureManager.TRIM_MEMORY_RUNNING_MODERATE));
+        assertSame(MemoryPressureManager.Level.LOW, MemoryPressureManager.toLevel(MemoryPressureManager.TRIM_MEMORY_RUNNING_LOW));
+        assertSame(MemoryPressureManager.Level.CRITICAL, MemoryPressureManager.toLevel(MemoryPressureManager.TRIM_MEMORY_RUNNING_CRITICAL));
+        assertSame(MemoryPressureManager.Level.MODERATE, MemoryPressureManager.toLevel(MemoryPressureManager.TRIM_MEMORY_UI_HIDDEN));
+        assertSame(MemoryPressureManager.Level.LOW, MemoryPressureManager.toLevel(MemoryPressureManager.TRIM_MEMORY_BACKGROUND));
+        assertSame(MemoryPressureManager.Level.CRITICAL, MemoryPressureManager.toLevel(MemoryPressureManager.TRIM_MEMORY_MODERATE));
+        assertSame(MemoryPressureManager.Level.CRITICAL, MemoryPressureManager.toLevel(MemoryPressureManager.TRIM_MEMORY_COMPLETE));
+    }
+
+    @Test
+    public void releasesMoreAtEachLevel() {
+        assertEquals(0, manager.onTrimMemory(MemoryPressureManager.TRIM_MEMORY_RUNNING_MODERATE).size());
+        assertEquals(Arrays.asList("warm renderer"), released(manager.onTrimMemory(MemoryPressureManager.TRIM_MEMORY_RUNNING_LOW)));
+        assertEquals(Arrays.asList("warm renderer", "content buffer"),
+            released(manager.onTrimMemory(MemoryPressureManager.TRIM_MEMORY_RUNNING_CRITICAL)));
+
+        assertEquals(Arrays.asList(MemoryPressureManager.Level.MODERATE, MemoryPressureManager.Level.LOW,
+            MemoryPressureManager.Level.CRITICAL), levels);
+    }
+
+    @Test
+    public void ignoresLevelsBelowPressure() {
+        assertTrue(manager.onTrimMemory(0).isEmpty());
+        assertTrue(levels.isEmpty());
+        assertFalse(manager.shouldDeferPreloading());
+    }
+
+    @Test
+    public void logsWhatWasReleasedAndWhen() {
+        clock.advanceBy(1000);
+        manager.onTrimMemory(MemoryPressureManager.TRIM_MEMORY_BACKGROUND);
+        clock.advanceBy(1000);
+        manager.onTrimMemory(MemoryPressureManager.TRIM_MEMORY_COMPLETE);
+
+        List<MemoryPressureManager.Release> log = manager.getReleaseLog();
+        assertEquals(3, log.size());
+        assertEquals(1000, log.get(0).timeMs);
+        assertEquals(MemoryPressureManager.TRIM_MEMORY_BACKGROUND, log.get(0).trimLevel);
+        assertEquals("content buffer", log.get(2).released);
+        assertEquals(2000, log.get(2).timeMs);
+    }
+
+    @Test
+    public void keepsOnlyTheLatestReleases() {
+        for (int i = 0; i < MemoryPressureManager.MAX_RELEASE_LOG_ENTRIES; i++) {
+            clock.advanceBy(1);
+            manager.onTrimMemory(MemoryPressureManager.TRIM_MEMORY_COMPLETE);
+        }
+
+        List<MemoryPressureManager.Release> log = manager.getReleaseLog();
+        assertEquals(MemoryPressureManager.MAX_RELEASE_LOG_ENTRIES, log.size());
+        assertEquals(MemoryPressureManager.MAX_RELEASE_LOG_ENTRIES / 2 + 1, log.get(0).timeMs);
+    }
+
+    @Test
+    public void defersPreloadingForAWhileAfterPressure() {
+        manager.onTrimMemory(MemoryPressureManager.TRIM_MEMORY_RUNNING_MODERATE);
+        assertTrue(manager.shouldDeferPreloading());
+
+        clock.advanceBy(MemoryPressureManager.PRESSURE_HOLD_MS - 1);
+        assertTrue(manager.shouldDeferPreloading());
+        clock.advanceBy(1);
+        assertFalse(manager.shouldDeferPreloading());
+    }
+
+    private static List<String> released(List<MemoryPressureManager.Release> releases) {
+        List<String> released = new ArrayList<>();
+        for (MemoryPressureManager.Release release : releases) {
+            released.add(release.released);
+        }
+        return released;
+    }
+}
@@ -0,0 +1,106 @@
+package com.truex.ctv.referenceapp.ads;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlaybackWatchdogTest {
+    private static final long AD_DURATION_MS = 15000;
+
+    private ManualScheduler scheduler;
+    private PlaybackWatchdog watchdog;
+    private List<String> interventions;
+
+    @Before
+    public void setUp() {
+        scheduler = new ManualScheduler();
+        interventions = new ArrayList<>();
+        watchdog = new PlaybackWatchdog(scheduler, scheduler,
+            (stall, intervention, stalledMs) -> interventions.add(stall + " " + intervention + " " + stalledMs));
+        watchdog.onAdBreakStarted();
+    }
+
+    @Test
+    public void overdueAdIsSkipped() {
+        watchdog.onAdStarted(regularAd(), AD_DURATION_MS);
+        long deadlineMs = scheduler.getTimeToNextTaskMs();
+        assertTrue(deadlineMs > AD_DURATION_MS);
+
+        scheduler.advanceBy(deadlineMs);
+        assertEquals(1, interventions.size());
+        assertEquals("AD_OVERDUE SKIP_AD " + deadlineMs, interventions.get(0));
+    }
+
+    @Test
+    public void pausedAdDeadlineHoldsTheTimeItHadLeft() {
+        watchdog.onAdStarted(regularAd(), AD_DURATION_MS);
+        long deadlineMs = scheduler.getTimeToNextTaskMs();
+        scheduler.advanceBy(5000);
+
+        watchdog.pause();
+        assertEquals(0, scheduler.getPendingTaskCount());
+        scheduler.advanceBy(10 * 60 * 1000);
+        assertTrue(interventions.isEmpty());
+
+        watchdog.resume();
+        assertEquals(deadlineMs - 5000, scheduler.getTimeToNextTaskMs());
+        scheduler.advanceBy(deadlineMs - 5001);
+        assertTrue(interventions.isEmpty());
+        scheduler.advanceBy(1);
+        // The paused time is not reported as stalled
+        assertEquals("AD_OVERDUE SKIP_AD " + deadlineMs, interventions.get(0));
+    }
+
+    @Test
+    public void watchStartedWhilePausedWaitsForResume() {
+        watchdog.pause();
+        watchdog.onBufferingStarted(false);
+        scheduler.advanceBy(PlaybackWatchdog.MAX_BUFFERING_TIMEOUT_MS * 10);
+        assertTrue(interventions.isEmpty());
+
+        watchdog.resume();
+        scheduler.advanceBy(PlaybackWatchdog.DEFAULT_BUFFERING_TIMEOUT_MS);
+        assertEquals("CONTENT_BUFFERING RETRY_CONTENT " + PlaybackWatchdog.DEFAULT_BUFFERING_TIMEOUT_MS, interventions.get(0));
+    }
+
+    @Test
+    public void bufferingIsWatchedOnceWhilePaused() {
+        watchdog.onBufferingStarted(false);
+        watchdog.pause();
+        // Still the same buffering, not a new watch
+        watchdog.onBufferingStarted(false);
+        watchdog.resume();
+
+        assertEquals(1, scheduler.getPendingTaskCount());
+    }
+
+    @Test
+    public void stopWhilePausedDropsTheDeadlines() {
+        watchdog.onAdStarted(regularAd(), AD_DURATION_MS);
+        watchdog.pause();
+        watchdog.stop();
+        watchdog.resume();
+
+        assertEquals(0, scheduler.getPendingTaskCount());
+    }
+
+    @Test
+    public void repeatedTroubleAbandonsTheBreak() {
+        for (int i = 0; i <= PlaybackWatchdog.MAX_AD_INTERVENTIONS_PER_BREAK; i++) {
+            watchdog.onAdStarted(regularAd(), AD_DURATION_MS);
+            scheduler.advanceBy(scheduler.getTimeToNextTaskMs());
+        }
+
+        assertEquals(PlaybackWatchdog.MAX_AD_INTERVENTIONS_PER_BREAK + 1, interventions.size());
+        assertTrue(interventions.get(interventions.size() - 1).contains("ABANDON_AD_BREAK"));
+    }
+
+    private static Ad regularAd() {
+        return new Ad("GDFP", "https://media.example.com/creative.mp4", null, (int) (AD_DURATION_MS / 1000), 1, "ad");
+    }
+}
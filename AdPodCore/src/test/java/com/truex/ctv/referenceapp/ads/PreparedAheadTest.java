@@ -0,0 +1,78 @@
+package com.truex.ctv.referenceapp.ads;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PreparedAheadTest {
+    private static final long TTL_MS = 120_000;
+
+    private final Ad first = ad("first");
+    private final Ad second = ad("second");
+    private final List<String> released = new ArrayList<>();
+    private long nowMs;
+    private final PreparedAhead<String> preparedAhead = new PreparedAhead<>(() -> nowMs, TTL_MS, released::add);
+
+    @Test
+    public void handsOverWhatWasPreparedForTheAd() {
+        preparedAhead.put(first, "renderer first");
+
+        assertTrue(preparedAhead.isPrepared(first));
+        assertFalse(preparedAhead.isPrepared(second));
+        assertEquals("renderer first", preparedAhead.take(first));
+
+        // Handed over, so it is the caller's to release
+        assertFalse(preparedAhead.isPrepared(first));
+        assertFalse(preparedAhead.release());
+        assertTrue(released.isEmpty());
+    }
+
+    @Test
+    public void preparingTheNextAdReleasesThePreviousOne() {
+        preparedAhead.put(first, "renderer first");
+        preparedAhead.put(second, "renderer second");
+
+        assertEquals(Arrays.asList("renderer first"), released);
+        assertEquals("renderer second", preparedAhead.take(second));
+    }
+
+    @Test
+    public void takingAnotherAdReleasesWhatWasPrepared() {
+        preparedAhead.put(second, "renderer second");
+
+        assertNull(preparedAhead.take(first));
+        assertEquals(Arrays.asList("renderer second"), released);
+        assertNull(preparedAhead.take(second));
+    }
+
+    @Test
+    public void expiredPreparationIsReleasedRatherThanShown() {
+        preparedAhead.put(first, "renderer first");
+        nowMs = TTL_MS - 1;
+        assertTrue(preparedAhead.isPrepared(first));
+
+        nowMs = TTL_MS;
+        assertFalse(preparedAhead.isPrepared(first));
+        assertNull(preparedAhead.take(first));
+        assertEquals(Arrays.asList("renderer first"), released);
+    }
+
+    @Test
+    public void releaseReportsWhetherAnythingWasHeld() {
+        assertFalse(preparedAhead.release());
+        preparedAhead.put(first, "renderer first");
+        assertTrue(preparedAhead.release());
+        assertEquals(Arrays.asList("renderer first"), released);
+    }
+
+    private static Ad ad(String adId) {
+        return new Ad("trueX", "https://media.example.com/" + adId + ".mp4", null, 30, 1, adId);
+    }
+}
@@ -0,0 +1,59 @@
+package com.truex.ctv.referenceapp.ads;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SlotDecisionsTest {
+    private final SlotDecisions slots = new SlotDecisions();
+
+    @Test
+    public void firstSlotStartsTheBreakAndLaterOnesAreAppended() {
+        assertFalse(slots.isDecidingSlots());
+        assertEquals(SlotDecisions.Action.START, slots.onSlotDecided());
+        assertEquals(SlotDecisions.Action.APPEND, slots.onSlotDecided());
+        assertTrue(slots.isDecidingSlots());
+        assertTrue(slots.isAccepting());
+        assertEquals(2, slots.getDecidedSlotCount());
+    }
+
+    @Test
+    public void podEndsThenLateSlotThenLoaded() {
+        assertEquals(SlotDecisions.Action.START, slots.onSlotDecided());
+
+        // The pod ends on credit while the rest of the break is still being decided
+        slots.close();
+
+        // A late slot must not start the break again
+        assertEquals(SlotDecisions.Action.DROP, slots.onSlotDecided());
+
+        // The loaded break still counts as decided slot by slot, so it is not played as a whole,
+        // and its remaining slots are not accepted either
+        assertTrue(slots.isDecidingSlots());
+        assertFalse(slots.isAccepting());
+        assertEquals(2, slots.getDecidedSlotCount());
+
+        slots.reset();
+        assertFalse(slots.isDecidingSlots());
+    }
+
+    @Test
+    public void slotsAfterTheDeadlineAreDropped() {
+        slots.onSlotDecided();
+        slots.onSlotDecided();
+        slots.close();
+        assertEquals(SlotDecisions.Action.DROP, slots.onSlotDecided());
+        assertEquals(3, slots.getDecidedSlotCount());
+    }
+
+    @Test
+    public void nextBreakStartsOnceTheRequestHasFinished() {
+        slots.onSlotDecided();
+        slots.close();
+        slots.reset();
+        assertEquals(SlotDecisions.Action.START, slots.onSlotDecided());
+        assertTrue(slots.isAccepting());
+    }
+}
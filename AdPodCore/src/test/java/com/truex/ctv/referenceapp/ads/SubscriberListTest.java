@@ -0,0 +1,184 @@
+package com.truex.ctv.referenceapp.ads;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SubscriberListTest {
+    private SubscriberList<String> subscribers;
+
+    @Before
+    public void setUp() {
+        subscribers = new SubscriberList<>();
+    }
+
+    @Test
+    public void releaseScopedRemovesEveryScopedSubscriber() {
+        subscribers.add("permanent");
+        subscribers.addScoped("scoped 1");
+        subscribers.addScoped("scoped 2");
+        subscribers.addScoped("scoped 3");
+
+        subscribers.releaseScoped();
+
+        assertEquals(1, subscribers.getSubscriberCount());
+        assertEquals(Arrays.asList("permanent"), dispatch());
+    }
+
+    @Test
+    public void releaseScopedKeepsPermanentSubscribersInOrder() {
+        subscribers.addScoped("scoped 1");
+        subscribers.add("permanent 1");
+        subscribers.addScoped("scoped 2");
+        subscribers.addScoped("scoped 3");
+        subscribers.add("permanent 2");
+        subscribers.addScoped("scoped 4");
+
+        subscribers.releaseScoped();
+
+        assertEquals(Arrays.asList("permanent 1", "permanent 2"), dispatch());
+    }
+
+    @Test
+    public void releaseScopedDuringDispatchSkipsTheReleasedOnes() {
+        subscribers.add("permanent");
+        subscribers.addScoped("scoped 1");
+        subscribers.addScoped("scoped 2");
+
+        List<String> received = new ArrayList<>();
+        int count = subscribers.beginDispatch();
+        for (int i = 0; i < count; i++) {
+            String subscriber = subscribers.get(i);
+            if (subscriber != null) {
+                received.add(subscriber);
+                subscribers.releaseScoped();
+            }
+        }
+        subscribers.endDispatch();
+
+        assertEquals(Arrays.asList("permanent"), received);
+        assertEquals(Arrays.asList("permanent"), dispatch());
+    }
+
+    @Test
+    public void subscriberAddedDuringDispatchGetsTheNextEvent() {
+        subscribers.add("first");
+
+        int count = subscribers.beginDispatch();
+        subscribers.addScoped("added");
+        assertEquals(1, count);
+        subscribers.endDispatch();
+
+        assertEquals(Arrays.asList("first", "added"), dispatch());
+    }
+
+    @Test
+    public void removeDropsOnlyThatSubscriber() {
+        subscribers.add("first");
+        subscribers.add("second");
+        subscribers.add("third");
+
+        subscribers.remove("second");
+
+        assertEquals(Arrays.asList("first", "third"), dispatch());
+    }
+
+    @Test
+    public void countStaysConstantOverManyBreaks() {
+        subscribers.add("permanent");
+        for (int i = 0; i < 10_000; i++) {
+            subscribers.addScoped("break " + i + " a");
+            subscribers.addScoped("break " + i + " b");
+            subscribers.releaseScoped();
+        }
+
+        assertEquals(1, subscribers.getSubscriberCount());
+        assertEquals(1, subscribers.beginDispatch());
+        subscribers.endDispatch();
+    }
+
+    // Shaped like the ad player's dispatcher over a long session: a few permanent subscribers,
+    // several subscribed for each break, some breaks ended from within a dispatch, e.g. on
+    // true[X] credit, and the next break subscribed while the last one's event is dispatched
+    @Test
+    public void scopedSubscribersOfThousandsOfBreaksDoNotPileUp() {
+        subscribers.add("content");
+        subscribers.add("watchdog");
+        subscribers.add("event trace");
+        int breakCount = 5_000;
+        int scopedPerBreak = 4;
+
+        int maxSlots = 0;
+        String[] breakSubscribers = subscribeBreak(0, scopedPerBreak);
+        for (int i = 0; i < breakCount; i++) {
+            if (i % 100 == 0) {
+                // A permanent subscriber leaves and comes back, e.g. the HUD being toggled
+                subscribers.remove("event trace");
+                subscribers.add("event trace");
+            }
+
+            for (int event = 0; event < 20; event++) {
+                List<String> received = dispatch();
+                assertEquals(3 + scopedPerBreak, received.size());
+                assertTrue(received.containsAll(Arrays.asList(breakSubscribers)));
+            }
+
+            // The break ends from one of its own subscribers, half of the time with the next
+            // break subscribed from the same event
+            boolean nextFromDispatch = i % 2 == 0;
+            String[] nextSubscribers = null;
+            int count = subscribers.beginDispatch();
+            maxSlots = Math.max(maxSlots, count);
+            for (int index = 0; index < count; index++) {
+                if (breakSubscribers[0].equals(subscribers.get(index))) {
+                    subscribers.releaseScoped();
+                    if (nextFromDispatch) {
+                        nextSubscribers = subscribeBreak(i + 1, scopedPerBreak);
+                    }
+                }
+            }
+            subscribers.endDispatch();
+
+            if (nextFromDispatch) {
+                assertEquals(3 + scopedPerBreak, subscribers.getSubscriberCount());
+                breakSubscribers = nextSubscribers;
+            } else {
+                assertEquals(3, subscribers.getSubscriberCount());
+                breakSubscribers = subscribeBreak(i + 1, scopedPerBreak);
+            }
+        }
+        subscribers.releaseScoped();
+
+        assertEquals(Arrays.asList("content", "watchdog", "event trace"), dispatch());
+        // The storage is compacted after every break rather than growing with the session
+        assertEquals(3 + scopedPerBreak, maxSlots);
+    }
+
+    private String[] subscribeBreak(int breakIndex, int count) {
+        String[] breakSubscribers = new String[count];
+        for (int i = 0; i < count; i++) {
+            breakSubscribers[i] = "break " + breakIndex + " subscriber " + i;
+            subscribers.addScoped(breakSubscribers[i]);
+        }
+        return breakSubscribers;
+    }
+
+    private List<String> dispatch() {
+        List<String> received = new ArrayList<>();
+        int count = subscribers.beginDispatch();
+        for (int i = 0; i < count; i++) {
+            String subscriber = subscribers.get(i);
+            if (subscriber != null) {
+                received.add(subscriber);
+            }
+        }
+        subscribers.endDispatch();
+        return received;
+    }
+}
@@ -0,0 +1,46 @@
+package com.truex.ctv.referenceapp.ads;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TimeOffsetTest {
+    @Test
+    public void clockOffsetsDoNotNeedTheContentDuration() {
+        TimeOffset offset = TimeOffset.atMs(600_000);
+        assertEquals(600_000, offset.resolveMs(TimeOffset.DURATION_UNKNOWN));
+        assertEquals(600_000, offset.resolveMs(3_600_000));
+        assertFalse(offset.isStart());
+        assertFalse(offset.isEnd());
+    }
+
+    @Test
+    public void percentagesResolveAgainstTheContentDuration() {
+        TimeOffset offset = TimeOffset.atPercent(25);
+        assertEquals(TimeOffset.UNRESOLVED, offset.resolveMs(TimeOffset.DURATION_UNKNOWN));
+        assertEquals(900_000, offset.resolveMs(3_600_000));
+        assertEquals(1, TimeOffset.atPercent(33.3).resolveMs(3));
+    }
+
+    @Test
+    public void boundsMapToStartAndEnd() {
+        assertSame(TimeOffset.START, TimeOffset.atMs(0));
+        assertSame(TimeOffset.START, TimeOffset.atPercent(0));
+        assertSame(TimeOffset.END, TimeOffset.atPercent(100));
+        assertTrue(TimeOffset.START.isStart());
+        assertTrue(TimeOffset.END.isEnd());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativePositions() {
+        TimeOffset.atMs(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPercentagesAboveHundred() {
+        TimeOffset.atPercent(100.5);
+    }
+}
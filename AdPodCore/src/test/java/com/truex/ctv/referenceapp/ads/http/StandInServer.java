@@ -0,0 +1,178 @@
+package com.truex.ctv.referenceapp.ads.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local plain HTTP/1.1 server standing in for the ad server and the tracking endpoints, so
+ * tests go through the real {@link HttpStack} and its connection pool.
+ *
+ * The port is reserved when the server is created and it only listens once started, so a test
+ * can send to it while it is offline and bring it online later on the same URLs.
+ */
+public class StandInServer implements Closeable {
+    private static final long AWAIT_TIMEOUT_MS = 5000;
+
+    private static class Response {
+        final int status;
+        final byte[] body;
+
+        Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private final int port;
+    private final Map<String, Response> responses = new ConcurrentHashMap<>();
+    // Guarded by this
+    private final List<String> requests = new ArrayList<>();
+    private final Set<Integer> clientPorts = new HashSet<>();
+    private volatile CountDownLatch heldResponses;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public StandInServer() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+    }
+
+    /**
+     * @return the URL of the path, with an optional query, on this server
+     */
+    public String url(String path) {
+        return "http://127.0.0.1:" + port + path;
+    }
+
+    /**
+     * Answer requests to the path, whatever their query, with the status and body.
+     * Other paths are answered with 404.
+     */
+    public void respond(String path, int status, String body) {
+        responses.put(path, new Response(status, body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public void respond(String path, int status, InputStream body) throws IOException {
+        try (InputStream in = body) {
+            responses.put(path, new Response(status, in.readAllBytes()));
+        }
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+        // Each request on a thread of its own, so a held response does not hold up the others
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Stop listening and drop the open connections, the port stays reserved for a restart.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        releaseResponses();
+        stop();
+    }
+
+    /**
+     * Keep requests waiting for their response until {@link #releaseResponses()}.
+     */
+    public void holdResponses() {
+        heldResponses = new CountDownLatch(1);
+    }
+
+    public void releaseResponses() {
+        CountDownLatch held = heldResponses;
+        heldResponses = null;
+        if (held != null) {
+            held.countDown();
+        }
+    }
+
+    /**
+     * @return the path and query of every request received, in order
+     */
+    public synchronized List<String> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    /**
+     * @return the number of client connections the requests came in on
+     */
+    public synchronized int getConnectionCount() {
+        return clientPorts.size();
+    }
+
+    public synchronized void awaitRequestCount(int count) throws InterruptedException {
+        long deadlineMs = System.currentTimeMillis() + AWAIT_TIMEOUT_MS;
+        while (requests.size() < count) {
+            long remainingMs = deadlineMs - System.currentTimeMillis();
+            if (remainingMs <= 0) {
+                throw new AssertionError("Received " + requests.size() + " of " + count + " requests");
+            }
+            wait(remainingMs);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        synchronized (this) {
+            String query = exchange.getRequestURI().getRawQuery();
+            requests.add(exchange.getRequestURI().getRawPath() + (query != null ? "?" + query : ""));
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            notifyAll();
+        }
+
+        CountDownLatch held = heldResponses;
+        if (held != null) {
+            try {
+                held.await(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Response response = responses.get(exchange.getRequestURI().getRawPath());
+        if (response == null) {
+            response = new Response(404, new byte[0]);
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            in.readAllBytes();
+        }
+        // An empty body goes out chunked, with -1 for no body at all the server resets the kept
+        // alive connection on the next request
+        exchange.sendResponseHeaders(response.status, response.body.length > 0 ? response.body.length : 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response.body);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.truex.ctv.referenceapp.ads.tracking;
+
+import com.truex.ctv.referenceapp.ads.ManualScheduler;
+import com.truex.ctv.referenceapp.ads.http.HttpStack;
+import com.truex.ctv.referenceapp.ads.http.StandInServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.HttpUrl;
+
+import static org.junit.Assert.assertEquals;
+
+public class BeaconPipelineTest {
+    private static final String IMPRESSION_URL = "https://events.example.com/impression?ad=1";
+    private static final String START_URL = "https://events.example.com/start?ad=1";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ManualScheduler scheduler;
+    private File logFile;
+    private List<String> sentUrls;
+    private boolean offline;
+    private int status;
+    private StandInServer eventServer;
+
+    @Before
+    public void setUp() throws IOException {
+        scheduler = new ManualScheduler();
+        logFile = new File(folder.getRoot(), "beacons.log");
+        sentUrls = new ArrayList<>();
+        offline = false;
+        status = 200;
+        eventServer = new StandInServer();
+        eventServer.respond("/impression", 200, "");
+    }
+
+    @After
+    public void tearDown() {
+        eventServer.close();
+    }
+
+    @Test
+    public void sendsBeaconsInABatchAfterTheDelay() {
+        BeaconPipeline pipeline = startPipeline();
+        pipeline.enqueue(IMPRESSION_URL);
+        pipeline.enqueue(START_URL);
+        scheduler.advanceBy(0);
+        assertEquals(2, pipeline.getPendingCount());
+
+        scheduler.advanceBy(BeaconPipeline.BATCH_DELAY_MS);
+        assertEquals(Arrays.asList(IMPRESSION_URL, START_URL), sentUrls);
+        assertEquals(2, pipeline.getSentCount());
+        assertEquals(0, pipeline.getPendingCount());
+    }
+
+    @Test
+    public void replaysBeaconsQueuedWhileOfflineOnTheNextRun() {
+        offline = true;
+        BeaconPipeline pipeline = startPipeline();
+        pipeline.enqueue(IMPRESSION_URL);
+        scheduler.advanceBy(BeaconPipeline.BATCH_DELAY_MS + BeaconPipeline.INITIAL_BACKOFF_MS);
+        assertEquals(2, pipeline.getFailedAttemptCount());
+        assertEquals(1, pipeline.getPendingCount());
+
+        // The process dies, and the next run is online
+        offline = false;
+        scheduler = new ManualScheduler();
+        BeaconPipeline next = startPipeline();
+        assertEquals(Arrays.asList(IMPRESSION_URL), sentUrls);
+        assertEquals(0, next.getPendingCount());
+    }
+
+    @Test
+    public void dropsBeaconsTheServerRejects() {
+        status = 404;
+        BeaconPipeline pipeline = startPipeline();
+        pipeline.enqueue(IMPRESSION_URL);
+        scheduler.advanceBy(BeaconPipeline.BATCH_DELAY_MS);
+
+        assertEquals(1, pipeline.getDroppedCount());
+        assertEquals(0, pipeline.getPendingCount());
+    }
+
+    @Test
+    public void malformedPersistedBeaconDoesNotBlockTheQueue() throws IOException {
+        // Persisted by an earlier run that did not check URLs
+        BeaconLog log = new BeaconLog(logFile);
+        log.append("https://events.example.com/poison pill\tnot a url");
+        log.append(IMPRESSION_URL);
+        log.close();
+
+        BeaconPipeline pipeline = new BeaconPipeline(logFile, url -> {
+            HttpUrl parsed = HttpUrl.get(url);
+            if (!parsed.pathSegments().get(0).equals("impression")) {
+                throw new IllegalArgumentException("Unexpected URL " + url);
+            }
+            sentUrls.add(url);
+            return 200;
+        }, scheduler);
+        pipeline.start();
+        scheduler.advanceBy(0);
+
+        assertEquals(Arrays.asList(IMPRESSION_URL), sentUrls);
+        assertEquals(1, pipeline.getDroppedCount());
+        assertEquals(0, pipeline.getPendingCount());
+        assertEquals(0, scheduler.getPendingTaskCount());
+    }
+
+    @Test
+    public void malformedUrlsAreNotQueued() {
+        BeaconPipeline pipeline = startPipeline();
+        pipeline.enqueue("not a url");
+        pipeline.enqueue("ftp://events.example.com/impression");
+        pipeline.enqueue(null);
+        pipeline.enqueue(IMPRESSION_URL);
+        scheduler.advanceBy(BeaconPipeline.BATCH_DELAY_MS);
+
+        assertEquals(3, pipeline.getDroppedCount());
+        assertEquals(Arrays.asList(IMPRESSION_URL), sentUrls);
+    }
+
+    @Test
+    public void batchIsSentOverOneReusedConnection() throws IOException {
+        eventServer.start();
+        BeaconPipeline pipeline = startHttpPipeline();
+        for (int i = 1; i <= 5; i++) {
+            pipeline.enqueue(eventServer.url("/impression?ad=" + i));
+        }
+        scheduler.advanceBy(BeaconPipeline.BATCH_DELAY_MS);
+
+        assertEquals(Arrays.asList("/impression?ad=1", "/impression?ad=2", "/impression?ad=3",
+            "/impression?ad=4", "/impression?ad=5"), eventServer.getRequests());
+        assertEquals(1, eventServer.getConnectionCount());
+        assertEquals(5, pipeline.getSentCount());
+        assertEquals(0, pipeline.getPendingCount());
+    }
+
+    @Test
+    public void rejectedBeaconsAreDroppedAndServerErrorsRetried() throws IOException {
+        eventServer.respond("/start", 404, "Not tracked");
+        eventServer.respond("/complete", 503, "");
+        eventServer.start();
+        BeaconPipeline pipeline = startHttpPipeline();
+        pipeline.enqueue(eventServer.url("/start?ad=1"));
+        pipeline.enqueue(eventServer.url("/complete?ad=1"));
+        scheduler.advanceBy(BeaconPipeline.BATCH_DELAY_MS);
+
+        assertEquals(1, pipeline.getDroppedCount());
+        assertEquals(1, pipeline.getFailedAttemptCount());
+        assertEquals(1, pipeline.getPendingCount());
+
+        eventServer.respond("/complete", 200, "");
+        scheduler.advanceBy(BeaconPipeline.INITIAL_BACKOFF_MS);
+
+        assertEquals(Arrays.asList("/start?ad=1", "/complete?ad=1", "/complete?ad=1"), eventServer.getRequests());
+        assertEquals(1, pipeline.getSentCount());
+        assertEquals(0, pipeline.getPendingCount());
+    }
+
+    @Test
+    public void beaconsQueuedWhileOfflineAreSentOnceTheServerIsReachable() throws IOException {
+        BeaconPipeline pipeline = startHttpPipeline();
+        pipeline.enqueue(eventServer.url("/impression?ad=1"));
+        pipeline.enqueue(eventServer.url("/impression?ad=2"));
+        scheduler.advanceBy(BeaconPipeline.BATCH_DELAY_MS);
+
+        // Nothing listens yet, the connection is refused
+        assertEquals(1, pipeline.getFailedAttemptCount());
+        assertEquals(2, pipeline.getPendingCount());
+
+        eventServer.start();
+        scheduler.advanceBy(BeaconPipeline.INITIAL_BACKOFF_MS);
+
+        assertEquals(Arrays.asList("/impression?ad=1", "/impression?ad=2"), eventServer.getRequests());
+        assertEquals(2, pipeline.getSentCount());
+        assertEquals(0, pipeline.getPendingCount());
+    }
+
+    // Sends through the HttpStack the app uses, to the local stand-in for the tracking endpoints
+    private BeaconPipeline startHttpPipeline() {
+        BeaconPipeline pipeline = new BeaconPipeline(logFile, new HttpStack("BeaconPipelineTest")::send, scheduler);
+        pipeline.start();
+        scheduler.advanceBy(0);
+        return pipeline;
+    }
+
+    private BeaconPipeline startPipeline() {
+        BeaconPipeline pipeline = new BeaconPipeline(logFile, url -> {
+            if (offline) {
+                throw new IOException("offline");
+            }
+            sentUrls.add(url);
+            return status;
+        }, scheduler);
+        pipeline.start();
+        scheduler.advanceBy(0);
+        return pipeline;
+    }
+}
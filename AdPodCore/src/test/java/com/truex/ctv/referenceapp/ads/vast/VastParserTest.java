@@ -0,0 +1,197 @@
+package com.truex.ctv.referenceapp.ads.vast;
+
+import com.truex.ctv.referenceapp.ads.Ad;
+import com.truex.ctv.referenceapp.ads.AdRendition;
+import com.truex.ctv.referenceapp.ads.TimeOffset;
+import com.truex.ctv.referenceapp.ads.TrackingEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class VastParserTest {
+    private static final String AD_SERVER = "https://ads.example.com/";
+
+    private List<String> events;
+    private List<Ad> ads;
+    private List<String> resolvedUris;
+
+    @Before
+    public void setUp() {
+        events = new ArrayList<>();
+        ads = new ArrayList<>();
+        resolvedUris = new ArrayList<>();
+    }
+
+    @Test
+    public void parsesInlineAds() throws Exception {
+        parseVast(newParser(VastParser.DEFAULT_MAX_WRAPPER_DEPTH), "inline.xml");
+
+        assertEquals(2, ads.size());
+        Ad truex = ads.get(0);
+        assertTrue(truex.isInfillionAd());
+        assertEquals("truex-1", truex.adId);
+        assertEquals(1, truex.position);
+        assertEquals(30, truex.duration);
+        assertEquals("https://get.example.com/vast/config?slot=1", truex.vastConfigUrl);
+        assertEquals("https://media.example.com/placeholder-30s.mp4", truex.adUrl);
+        assertEquals(1, truex.trackingEvents.size());
+        assertSame(TrackingEvent.Type.IMPRESSION, truex.trackingEvents.get(0).type);
+
+        Ad regular = ads.get(1);
+        assertTrue(regular.isRegularAd());
+        assertEquals(2, regular.position);
+        assertEquals(15, regular.duration);
+        // The first media file is the default creative
+        assertEquals("https://media.example.com/regular-2-360.mp4", regular.adUrl);
+        assertEquals(2, regular.renditions.size());
+        AdRendition hd = regular.renditions.get(1);
+        assertEquals("avc1.640028", hd.codec);
+        assertEquals(4_000_000L, hd.bitrate);
+        assertEquals(1920, hd.width);
+        assertEquals(1080, hd.height);
+        // Events that are not tracked, like mute, are left out
+        assertEquals(2, regular.trackingEvents.size());
+        assertSame(TrackingEvent.Type.START, regular.trackingEvents.get(0).type);
+        assertSame(TrackingEvent.Type.MIDPOINT, regular.trackingEvents.get(1).type);
+    }
+
+    @Test
+    public void wrapperAdsInheritItsTracking() throws Exception {
+        parseVast(newParser(VastParser.DEFAULT_MAX_WRAPPER_DEPTH), "wrapper.xml");
+
+        assertEquals(2, ads.size());
+        for (Ad ad : ads) {
+            TrackingEvent first = ad.trackingEvents.get(0);
+            assertSame(TrackingEvent.Type.IMPRESSION, first.type);
+            assertEquals("https://events.example.com/impression?wrapper=1", first.url);
+        }
+        assertEquals(3, ads.get(1).trackingEvents.size());
+    }
+
+    @Test
+    public void stopsResolvingWrappersAtMaxDepth() throws Exception {
+        parseVast(newParser(3), "self_wrapper.xml");
+
+        assertTrue(ads.isEmpty());
+        assertEquals(3, resolvedUris.size());
+    }
+
+    @Test
+    public void parsesVmapBreaks() throws Exception {
+        parseVmap(newParser(VastParser.DEFAULT_MAX_WRAPPER_DEPTH), "vmap.xml");
+
+        List<String> expected = new ArrayList<>();
+        expected.add("break preroll at 0ms");
+        expected.add("ad truex-1 #1");
+        expected.add("ad regular-2 #2");
+        expected.add("end");
+        // The malformed wrapper is dropped, the inline ad after it is still played
+        expected.add("break midroll-clock at 600500ms");
+        expected.add("ad inline-midroll #1");
+        expected.add("end");
+        expected.add("break midroll-percent at 25.0%");
+        expected.add("ad truex-1 #1");
+        expected.add("ad regular-2 #2");
+        expected.add("end");
+        // The positional break is skipped, an unreachable ad tag leaves the break empty
+        expected.add("break postroll at end");
+        expected.add("end");
+        assertEquals(expected, events);
+    }
+
+    @Test
+    public void parsesTimeOffsets() {
+        assertSame(TimeOffset.START, VastParser.parseTimeOffset("start"));
+        assertSame(TimeOffset.END, VastParser.parseTimeOffset(" end "));
+        assertSame(TimeOffset.START, VastParser.parseTimeOffset("00:00:00"));
+        assertEquals(90_250, VastParser.parseTimeOffset("00:01:30.25").resolveMs(TimeOffset.DURATION_UNKNOWN));
+        assertEquals(30_000, VastParser.parseTimeOffset("50%").resolveMs(60_000));
+        assertSame(TimeOffset.END, VastParser.parseTimeOffset("100%"));
+
+        assertNull(VastParser.parseTimeOffset(null));
+        assertNull(VastParser.parseTimeOffset("#1"));
+        assertNull(VastParser.parseTimeOffset("150%"));
+        assertNull(VastParser.parseTimeOffset("abc%"));
+        assertNull(VastParser.parseTimeOffset("90"));
+        assertNull(VastParser.parseTimeOffset("00:01:xx"));
+    }
+
+    @Test
+    public void parsesDurations() {
+        assertEquals(30, VastParser.parseDurationSeconds("00:00:30"));
+        assertEquals(15, VastParser.parseDurationSeconds("00:00:14.600"));
+        assertEquals(3600, VastParser.parseDurationSeconds("01:00:00"));
+        assertEquals(0, VastParser.parseDurationSeconds(null));
+        assertEquals(0, VastParser.parseDurationSeconds("30s"));
+    }
+
+    @Test
+    public void extractsVastConfigUrl() {
+        assertEquals("https://get.example.com/config",
+            VastParser.extractVastConfigUrl("{\"vast_config_url\" : \"https:\\/\\/get.example.com\\/config\"}"));
+        assertNull(VastParser.extractVastConfigUrl("{\"other\": \"value\"}"));
+        assertNull(VastParser.extractVastConfigUrl("{\"vast_config_url\": "));
+        assertNull(VastParser.extractVastConfigUrl(null));
+    }
+
+    private VastParser newParser(int maxWrapperDepth) throws XmlPullParserException {
+        return new VastParser(XmlPullParserFactory.newInstance(), uri -> {
+            resolvedUris.add(uri);
+            if (!uri.startsWith(AD_SERVER)) {
+                throw new FileNotFoundException(uri);
+            }
+            return openFixture(uri.substring(AD_SERVER.length()));
+        }, maxWrapperDepth);
+    }
+
+    private void parseVast(VastParser parser, String fixture) throws IOException, XmlPullParserException {
+        try (InputStream in = openFixture(fixture)) {
+            parser.parseVast(in, new RecordingHandler());
+        }
+    }
+
+    private void parseVmap(VastParser parser, String fixture) throws IOException, XmlPullParserException {
+        try (InputStream in = openFixture(fixture)) {
+            parser.parseVmap(in, new RecordingHandler());
+        }
+    }
+
+    private static InputStream openFixture(String name) throws FileNotFoundException {
+        InputStream in = VastParserTest.class.getResourceAsStream("/vast/" + name);
+        if (in == null) {
+            throw new FileNotFoundException(name);
+        }
+        return in;
+    }
+
+    private class RecordingHandler implements VastParser.Handler {
+        @Override
+        public void onAdBreakStart(String breakId, TimeOffset timeOffset) {
+            events.add("break " + breakId + " at " + timeOffset);
+        }
+
+        @Override
+        public void onAd(Ad ad) {
+            ads.add(ad);
+            events.add("ad " + ad.adId + " #" + ad.position);
+        }
+
+        @Override
+        public void onAdBreakEnd() {
+            events.add("end");
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.truex.ctv.referenceapp.ads;
+
+import java.util.PriorityQueue;
+
+/**
+ * Scheduler and clock whose time only moves when {@link #advanceBy(long)} is called, so that
+ * time based behavior such as the {@link PlaybackWatchdog} can be driven deterministically.
+ * Only for tests and the soak, it is not part of the library.
+ */
+public class ManualScheduler implements Scheduler, Clock {
+    private static class Task implements Comparable<Task>, Cancellable {
+        final Runnable runnable;
+        final long dueMs;
+        final long sequence;
+        boolean cancelled;
+
+        Task(Runnable runnable, long dueMs, long sequence) {
+            this.runnable = runnable;
+            this.dueMs = dueMs;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            // Tasks due at the same time run in the order they were scheduled
+            int byDueTime = Long.compare(dueMs, other.dueMs);
+            return byDueTime != 0 ? byDueTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+    private long nowMs;
+    private long nextSequence;
+
+    @Override
+    public long nowMs() {
+        return nowMs;
+    }
+
+    @Override
+    public Cancellable schedule(Runnable task, long delayMs) {
+        Task scheduled = new Task(task, nowMs + Math.max(delayMs, 0), nextSequence++);
+        tasks.add(scheduled);
+        return scheduled;
+    }
+
+    /**
+     * Move time forward, running every task that comes due on the way at its due time.
+     * Tasks scheduled by those tasks run too if they come due within the same advance.
+     */
+    public void advanceBy(long durationMs) {
+        long targetMs = nowMs + durationMs;
+        Task next;
+        while ((next = tasks.peek()) != null && next.dueMs <= targetMs) {
+            tasks.poll();
+            if (next.cancelled) {
+                continue;
+            }
+            nowMs = next.dueMs;
+            next.runnable.run();
+        }
+        nowMs = targetMs;
+    }
+
+    /**
+     * @return the number of tasks waiting to run, not counting cancelled ones
+     */
+    public int getPendingTaskCount() {
+        int count = 0;
+        for (Task task : tasks) {
+            if (!task.cancelled) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the time until the next pending task is due, or -1 if there is none
+     */
+    public long getTimeToNextTaskMs() {
+        Task next;
+        while ((next = tasks.peek()) != null && next.cancelled) {
+            tasks.poll();
+        }
+        return next == null ? -1 : next.dueMs - nowMs;
+    }
+}
@@ -8,82 +8,245 @@ import android.content.IntentFilter;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.KeyEvent;
+import android.view.SurfaceView;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.Window;
 import android.view.WindowManager;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.OptIn;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.media3.common.Format;
 import androidx.media3.common.MediaItem;
 import androidx.media3.common.util.UnstableApi;
-import androidx.media3.common.util.Util;
 import androidx.media3.datasource.DataSource;
-import androidx.media3.datasource.DefaultDataSourceFactory;
+import androidx.media3.exoplayer.DecoderReuseEvaluation;
 import androidx.media3.exoplayer.ExoPlayer;
+import androidx.media3.exoplayer.PlayerMessage;
+import androidx.media3.exoplayer.analytics.AnalyticsListener;
 import androidx.media3.exoplayer.source.MediaSource;
 import androidx.media3.exoplayer.source.ProgressiveMediaSource;
 import androidx.media3.ui.PlayerView;
 import androidx.media3.common.Player;
+import androidx.media3.common.Timeline;
+import androidx.media3.common.C;
 
+import com.truex.ctv.referenceapp.ads.Ad;
+import com.truex.ctv.referenceapp.ads.AdBreak;
 import com.truex.ctv.referenceapp.ads.AdManager;
+import com.truex.ctv.referenceapp.ads.AdProvider;
+import com.truex.ctv.referenceapp.ads.CachingAdProvider;
+import com.truex.ctv.referenceapp.ads.ExecutorScheduler;
+import com.truex.ctv.referenceapp.ads.HandlerScheduler;
+import com.truex.ctv.referenceapp.ads.MemoryPressureManager;
+import com.truex.ctv.referenceapp.ads.PlaybackWatchdog;
 import com.truex.ctv.referenceapp.ads.SampleAdProvider;
+import com.truex.ctv.referenceapp.ads.Scheduler;
+import com.truex.ctv.referenceapp.ads.TimeOffset;
+import com.truex.ctv.referenceapp.ads.VmapAdBreakLoader;
+import com.truex.ctv.referenceapp.ads.tracking.BeaconPipeline;
+import com.truex.ctv.referenceapp.metrics.EventTrace;
+import com.truex.ctv.referenceapp.metrics.PerformanceHud;
+import com.truex.ctv.referenceapp.metrics.PlaybackMetrics;
+import com.truex.ctv.referenceapp.player.BufferProfile;
+import com.truex.ctv.referenceapp.player.DeferredDataSourceFactory;
+import com.truex.ctv.referenceapp.player.DisplayMode;
+import com.truex.ctv.referenceapp.player.MediaCache;
+import com.truex.ctv.referenceapp.player.PlaybackSnapshot;
 import com.truex.ctv.referenceapp.player.PlaybackStateListener;
+import com.truex.ctv.referenceapp.player.PlayerEventDispatcher;
 import com.truex.ctv.referenceapp.player.PlayerEventListener;
+import com.truex.ctv.referenceapp.player.SharedHttpStack;
 
 @OptIn(markerClass = UnstableApi.class)
-public class MainActivity extends AppCompatActivity implements PlaybackStateListener, AdManager.AdBreakListener {
+public class MainActivity extends AppCompatActivity implements PlaybackStateListener, AdManager.AdBreakListener,
+    PerformanceHud.Source {
     private static final String CLASSTAG = MainActivity.class.getSimpleName();
     private static final String CONTENT_STREAM_URL = "http://media.truex.com/file_assets/2019-01-30/4ece0ae6-4e93-43a1-a873-936ccd3c7ede.mp4";
+    // Hosts the first ad break talks to: the VAST configs, the interactive ad assets and the creatives
+    private static final List<String> AD_HOST_URLS = Arrays.asList(
+        "https://get.truex.com/",
+        "https://qa-get.truex.com/",
+        "https://media.truex.com/",
+        "https://qa-media.truex.com/");
+
+    private static final String METRICS_FILE_NAME = "playback_metrics.txt";
+    private static final String EVENT_TRACE_FILE_NAME = "event_trace.bin";
+    private static final String BEACON_LOG_FILE_NAME = "beacons.log";
+
+    // Metrics dumps are written one after the other, off the main thread
+    private static final ThreadPoolExecutor metricsExecutor = newMetricsExecutor();
+
+    // Start the preroll as soon as its first slot is decided, rather than once the whole pod is
+    private static final String EXTRA_INCREMENTAL_PODS = "incremental_pods";
+    // Enter interactive slots from the player discontinuity instead of a player message at their
+    // boundary, and set up their overlay only then, to compare the boundary to overlay latency of both
+    private static final String EXTRA_REACTIVE_AD_BOUNDARIES = "reactive_ad_boundaries";
+
+    // How often the pod position is checked for ad impressions and quartiles
+    private static final long AD_PROGRESS_INTERVAL_MS = 250;
 
     private static final String INTENT_HDMI = "android.intent.action.HDMI_PLUGGED";
     private static final String INTENT_NOISY_AUDIO = "android.intent.action.ACTION_AUDIO_BECOMING_NOISY";
 
     // This player view is used to display a fake stream that mimics actual video content
     private PlayerView playerView;
-    private ExoPlayer player;
+
+    // The ad pod is shown in its own view on top, so the content view keeps its surface and
+    // the already decoded first frame while a break is playing
+    private PlayerView adPlayerView;
+
+    // Content and ad pods play on separate players, so the content player keeps its buffer
+    // and position while an ad break is playing
+    private ExoPlayer contentPlayer;
+    private ExoPlayer adPlayer;
+
+    // The single listener registration of each player
+    private PlayerEventDispatcher contentEvents;
+    private PlayerEventDispatcher adEvents;
 
     // The data-source factory is used to build media-sources
-    private DataSource.Factory dataSourceFactory;
+    private final DeferredDataSourceFactory dataSourceFactory = new DeferredDataSourceFactory();
     
-    // Preloaded content source for faster startup
+    // Content source that is prepared and buffering behind the preroll
     private MediaSource preloadedContentSource;
 
     // Ad pod management
     private AdManager adManager;
 
+    // Gets playback going again when a player or the ad renderer is stuck
+    private PlaybackWatchdog watchdog;
+
+    // Gives memory back to the system before it has to kill the app mid-pod
+    private MemoryPressureManager memoryPressureManager;
+
+    // Ad decisions, shared across activity instances
+    private static CachingAdProvider adProvider;
+    private boolean incrementalPods;
+    private final List<Scheduler.Cancellable> adBreakRequests = new ArrayList<>();
+    private final Set<String> decidedBreakIds = new HashSet<>();
+    // Breaks placed at a share of the content, scheduled once the content duration is known
+    private final List<AdBreak> breaksAwaitingContentDuration = new ArrayList<>();
+    // Player messages triggering the interactive slots of the pod
+    private final List<PlayerMessage> adBoundaryMessages = new ArrayList<>();
+
+    // Ad tracking, shared across activity instances
+    private static BeaconPipeline beaconPipeline;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Where playback was when the players were released in onStop, null while they are alive
+    private PlaybackSnapshot playbackSnapshot;
+
+    // Playback and ad transition latencies
+    private PlaybackMetrics metrics;
+
+    // Live playback numbers, toggled from the remote
+    private PerformanceHud performanceHud;
+
+    private StartupPipeline startup;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        metrics = PlaybackMetrics.getInstance();
+        metrics.recordSinceProcessStart(PlaybackMetrics.Span.STARTUP_PROCESS_TO_ON_CREATE);
+        startup = new StartupPipeline(mainHandler);
+
+        // Disk, package manager, receiver registration and connection setup don't need the main
+        // thread. The players get the data source factory straight away, their loads wait for
+        // it to be built.
+        startup.runInBackground(this::setupDataSourceFactory, this::setupIntents, this::prewarmConnections);
+
         requestWindowFeature(Window.FEATURE_NO_TITLE);
         getWindow().setFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN, WindowManager.LayoutParams.FLAG_FULLSCREEN);
         setContentView(R.layout.activity_main);
 
+        performanceHud = new PerformanceHud(findViewById(R.id.performance_hud), this);
+        incrementalPods = getIntent().getBooleanExtra(EXTRA_INCREMENTAL_PODS, false);
+        watchdog = new PlaybackWatchdog(new HandlerScheduler(), SystemClock::elapsedRealtime, this::onWatchdogIntervention);
+        memoryPressureManager = new MemoryPressureManager(SystemClock::elapsedRealtime);
+        memoryPressureManager.addResponder(this::releasePlayerMemory);
+        memoryPressureManager.addResponder(this::releaseIdleConnections);
         setupExoPlayer();
-        setupDataSourceFactory();
-        setupIntents(); // now we can be sensitive to HDMI cable changes
+        setupBeaconPipeline();
         setupAdBreakManager();
-        preloadContentStream();
-        displayContentStream();
+        preloadContentStream(0);
+
+        // The preroll is requested right away and plays as soon as it is decided, the content stays
+        // paused and buffers behind it meanwhile. Mid-rolls are decided once the first content
+        // frame is on screen.
+        setupAdProvider();
+        requestAdBreak(SampleAdProvider.PREROLL_BREAK_ID);
+        contentEvents.subscribe(firstContentFrame);
+        startup.runAfterFirstFrame(() -> requestAdBreak(SampleAdProvider.MIDROLL_BREAK_ID));
+        startup.onMainThreadSetupDone();
+    }
+
+    private final Player.Listener firstContentFrame = new Player.Listener() {
+        @Override
+        public void onRenderedFirstFrame() {
+            startup.onFirstFrame();
+        }
+    };
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+
+        if (playbackSnapshot != null) {
+            restorePlayback(playbackSnapshot);
+            playbackSnapshot = null;
+        }
+        performanceHud.resume();
     }
 
     @Override
     protected void onResume() {
         super.onResume();
 
+        // Ads and buffering only count against their deadlines while the activity is in front
+        watchdog.resume();
+
         // Forward to ad pod manager for any active ads
         if (adManager != null) {
             adManager.onResume();
         }
         
-        // Resume video playback (but not during interactive ads)
-        if (player != null && (adManager == null || !adManager.isPlayingInteractiveAd())) {
+        // Resume video playback (but not during interactive ads, and not the content before the preroll)
+        ExoPlayer player = getActivePlayer();
+        if (player != null && (adManager == null || !adManager.isPlayingInteractiveAd())
+                && (player != contentPlayer || !isHoldingContent())) {
             player.setPlayWhenReady(true);
         }
     }
 
+    // The content must not start before the preroll is known to be empty or has played, nor while
+    // a decided break waits for its creatives to be probed before it takes over the screen
+    private boolean isHoldingContent() {
+        return !decidedBreakIds.contains(SampleAdProvider.PREROLL_BREAK_ID)
+            || (adManager != null && adManager.isAdBreakStarting());
+    }
+
     @Override
     protected void onPause() {
         super.onPause();
@@ -92,8 +255,10 @@ public class MainActivity extends AppCompatActivity implements PlaybackStateList
         if (adManager != null) {
             adManager.onPause();
         }
+        watchdog.pause();
         
         // Pause video playback (but not during interactive ads)
+        ExoPlayer player = getActivePlayer();
         if (player != null && (adManager == null || !adManager.isPlayingInteractiveAd())) {
             player.setPlayWhenReady(false);
         }
@@ -103,6 +268,17 @@ public class MainActivity extends AppCompatActivity implements PlaybackStateList
     protected void onStop() {
         super.onStop();
 
+        // Remember where playback is, the players are rebuilt from this in onStart
+        playbackSnapshot = savePlayback();
+        Log.d(CLASSTAG, "Saved playback state: " + playbackSnapshot);
+
+        // Results that arrive after this point have no player to go to, and breaks that were
+        // not requested yet are requested when playback is restored
+        startup.cancel();
+        cancelAdBreakRequests();
+
+        // Don't leave tracking waiting for the batch delay, the process may not live that long
+        beaconPipeline.flushNow();
 
         // Forward to ad pod manager for any active ads
         if (adManager != null) {
@@ -110,19 +286,129 @@ public class MainActivity extends AppCompatActivity implements PlaybackStateList
         }
         
         // Release the video player
+        watchdog.stop();
+        performanceHud.pause();
         closeVideoPlayer();
+
+        dumpMetrics();
     }
     
     private void closeVideoPlayer() {
-        if (player != null) {
-            playerView.setPlayer(null);
-            player.release();
-            player = null;
+        mainHandler.removeCallbacks(adProgressTick);
+        adBoundaryMessages.clear();
+        playerView.setPlayer(null);
+        adPlayerView.setPlayer(null);
+        if (contentEvents != null) {
+            contentEvents.release();
+            contentEvents = null;
+        }
+        if (adEvents != null) {
+            adEvents.release();
+            adEvents = null;
+        }
+        if (contentPlayer != null) {
+            contentPlayer.release();
+            contentPlayer = null;
         }
+        if (adPlayer != null) {
+            adPlayer.release();
+            adPlayer = null;
+        }
+    }
+
+    private PlaybackSnapshot savePlayback() {
+        long contentPositionMs = contentPlayer != null ? contentPlayer.getCurrentPosition() : 0;
+        List<Ad> adBreakAds = adManager.getAdBreakAds();
+        if (adBreakAds == null) {
+            return new PlaybackSnapshot(contentPositionMs, null, 0, 0, adManager.isAdBreakStarting());
+        }
+
+        long podPositionMs = adPlayer != null
+            ? adManager.getPodPositionMs(adPlayer.getCurrentMediaItemIndex(), adPlayer.getCurrentPosition()) : 0;
+        return new PlaybackSnapshot(contentPositionMs, adBreakAds, adManager.getCurrentAdIndex(), podPositionMs, false);
+    }
+
+    private void restorePlayback(PlaybackSnapshot snapshot) {
+        Log.d(CLASSTAG, "Restoring playback: " + snapshot);
+        metrics.beginResume(snapshot.isInAdBreak());
+
+        // Rebuild the players and buffer the content at the saved position straight away,
+        // onResume starts playback of whichever player is active
+        setupExoPlayer();
+        preloadContentStream(snapshot.contentPositionMs);
+
+        // Player messages went away with the old content player
+        for (long cuePointMs : adManager.getCuePointsMs()) {
+            scheduleCuePoint(cuePointMs);
+        }
+
+        if (snapshot.isInAdBreak()) {
+            adManager.resumeAdBreak(snapshot.adBreakAds, snapshot.adIndex, snapshot.podPositionMs);
+        } else if (snapshot.adBreakStarting) {
+            adManager.startAdBreak();
+        }
+
+        // Breaks whose decisions were cancelled in onStop
+        requestAdBreaks();
+    }
+
+    @Override
+    public ExoPlayer getActivePlayer() {
+        boolean inAdBreak = adManager != null && adManager.isAdBreakInProgress();
+        return inAdBreak ? adPlayer : contentPlayer;
+    }
+
+    @Override
+    public DisplayMode getDisplayMode() {
+        return adManager != null ? adManager.getDisplayMode() : DisplayMode.CONTENT_STREAM;
+    }
+
+    @Override
+    public int getCurrentAdIndex() {
+        return adManager != null ? adManager.getCurrentAdIndex() : 0;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        if (memoryPressureManager == null) {
+            return;
+        }
+        Log.d(CLASSTAG, "Trim memory level " + level);
+        for (MemoryPressureManager.Release release : memoryPressureManager.onTrimMemory(level)) {
+            Log.i(CLASSTAG, "Released " + release.released);
+            metrics.increment(PlaybackMetrics.Counter.MEMORY_PRESSURE_RELEASE);
+        }
+    }
+
+    private String releasePlayerMemory(MemoryPressureManager.Level level) {
+        if (level != MemoryPressureManager.Level.CRITICAL || contentPlayer == null) {
+            return null;
+        }
+
+        // The content buffered behind an ad break is not on screen. Stopping the player drops
+        // the buffer but keeps the position, so content reloads from there after the break.
+        boolean inAdBreak = adManager != null && adManager.isAdBreakInProgress();
+        if (inAdBreak && contentPlayer.getPlaybackState() != Player.STATE_IDLE) {
+            long bufferedMs = contentPlayer.getTotalBufferedDuration();
+            contentPlayer.stop();
+            return "content buffer of " + bufferedMs + "ms behind the ad break";
+        }
+        return null;
+    }
+
+    private String releaseIdleConnections(MemoryPressureManager.Level level) {
+        if (level == MemoryPressureManager.Level.MODERATE) {
+            return null;
+        }
+
+        // Pooled connections only save the handshakes of the next request, they are opened again on demand
+        int count = SharedHttpStack.evictIdleConnections();
+        return count > 0 ? count + " idle HTTP connections" : null;
     }
 
     public void onPlayerDidStart() {
-        adManager.startAdBreak();
     }
 
     public void onPlayerDidResume() {
@@ -132,6 +418,10 @@ public class MainActivity extends AppCompatActivity implements PlaybackStateList
     }
 
     public void onPlayerDidComplete() {
+        // Post-rolls have no cue point, they start from the content's ended event
+        if (adManager != null) {
+            adManager.onContentEnded();
+        }
     }
 
     @Override
@@ -142,48 +432,381 @@ public class MainActivity extends AppCompatActivity implements PlaybackStateList
             return true;
         }
 
+        if (keyCode == KeyEvent.KEYCODE_PROG_RED || keyCode == KeyEvent.KEYCODE_D) {
+            // Dump the collected playback metrics
+            dumpMetrics();
+            return true;
+        }
+
+        if (EventTrace.ENABLED && (keyCode == KeyEvent.KEYCODE_PROG_GREEN || keyCode == KeyEvent.KEYCODE_T)) {
+            // Dump the recent ad and playback events
+            EventTrace.getInstance().dumpToLogcat();
+            return true;
+        }
+
+        if (keyCode == KeyEvent.KEYCODE_INFO || keyCode == KeyEvent.KEYCODE_I) {
+            // Show or hide the live playback numbers
+            performanceHud.toggle();
+            return true;
+        }
+
         return super.onKeyUp(keyCode, event);
     }
 
-    private void preloadContentStream() {
+    private void preloadContentStream(long positionMs) {
+        if (contentPlayer == null) return;
+
         // Create and prepare content source in background
         Uri uri = Uri.parse(CONTENT_STREAM_URL);
+        MediaItem mediaItem = new MediaItem.Builder()
+            .setUri(uri)
+            .setCustomCacheKey(MediaCache.cacheKeyFor(CONTENT_STREAM_URL))
+            .build();
         preloadedContentSource = new ProgressiveMediaSource.Factory(dataSourceFactory)
-            .createMediaSource(MediaItem.fromUri(uri));
+            .createMediaSource(mediaItem);
+
+        // Prepare without playing: the player buffers the start of the content and renders
+        // its first frame, so the handoff after the pod only has to start playback
+        contentPlayer.setPlayWhenReady(false);
+        contentPlayer.setMediaSource(preloadedContentSource, positionMs);
+        contentPlayer.prepare();
     }
-    
-    private void displayContentStream() {
-        if (player == null || preloadedContentSource == null) return;
 
-        // Restore player view visibility
+    private void resumeContentStream() {
+        if (contentPlayer == null) return;
+
+        // Unload the pod, the content player still holds its buffer and position
+        if (adPlayer != null) {
+            adEvents.releaseAdBreakSubscriptions();
+            adPlayer.stop();
+            adPlayer.clearMediaItems();
+        }
+
+        if (contentPlayer.getPlaybackState() == Player.STATE_IDLE) {
+            // The buffer was given up under memory pressure, reload from the same position
+            contentPlayer.prepare();
+        }
+
+        Log.d(CLASSTAG, "Returning to content with " + contentPlayer.getTotalBufferedDuration() + "ms buffered");
+        adPlayerView.setVisibility(View.GONE);
         playerView.setVisibility(View.VISIBLE);
+        playerView.hideController();
+        contentPlayer.setPlayWhenReady(true);
+    }
 
-        // Use preloaded content source for faster startup
-        player.setPlayWhenReady(true);
-        player.setMediaSource(preloadedContentSource);
-        player.prepare();
+    private void scheduleCuePoint(long cuePointMs) {
+        if (contentPlayer == null || cuePointMs == AdManager.CUE_POINT_CONTENT_END) return;
+
+        // Start the mid-roll from a player message at its content position
+        contentPlayer.createMessage((messageType, payload) -> adManager.onCuePointReached((Long) payload))
+            .setPosition(cuePointMs)
+            .setPayload(cuePointMs)
+            .setLooper(getMainLooper())
+            .setDeleteAfterDelivery(true)
+            .send();
+
+        // And get its interactive renderer loading a little before that
+        contentPlayer.createMessage((messageType, payload) -> adManager.onCuePointApproaching((Long) payload))
+            .setPosition(Math.max(0, cuePointMs - AdManager.OVERLAY_PREPARE_LEAD_MS))
+            .setPayload(cuePointMs)
+            .setLooper(getMainLooper())
+            .setDeleteAfterDelivery(true)
+            .send();
     }
 
     private void setupExoPlayer() {
-        player = new ExoPlayer.Builder(getApplicationContext()).build();
+        // Content and ads buffer differently: ads are short and should start fast
+        BufferProfile contentProfile = BufferProfile.forContent(this, getIntent());
+        BufferProfile adProfile = BufferProfile.forAds(this, getIntent());
+        Log.d(CLASSTAG, "Buffer profiles: content " + contentProfile + ", ads " + adProfile);
+        metrics.setBufferProfiles(contentProfile, adProfile);
+
+        contentPlayer = new ExoPlayer.Builder(getApplicationContext())
+            .setLoadControl(contentProfile.createLoadControl())
+            .build();
+        adPlayer = new ExoPlayer.Builder(getApplicationContext())
+            .setLoadControl(adProfile.createLoadControl())
+            .build();
 
         playerView = findViewById(R.id.player_view);
-        playerView.setPlayer(player);
+        playerView.setPlayer(contentPlayer);
+
+        adPlayerView = findViewById(R.id.ad_player_view);
+        adPlayerView.setPlayer(adPlayer);
+        adPlayerView.setVisibility(View.GONE);
+
+        // Keep the ad video above the content video, both are surface views
+        if (adPlayerView.getVideoSurfaceView() instanceof SurfaceView) {
+            ((SurfaceView) adPlayerView.getVideoSurfaceView()).setZOrderMediaOverlay(true);
+        }
 
         // Listen for player events so that we can load the true[X] ad manager when the video stream starts
-        player.addListener(new PlayerEventListener(this));
+        contentEvents = new PlayerEventDispatcher(contentPlayer);
+        contentEvents.subscribe(new PlayerEventListener(this));
+        contentEvents.subscribe(contentDurationKnown);
+        adEvents = new PlayerEventDispatcher(adPlayer);
+        if (EventTrace.ENABLED) {
+            contentEvents.subscribe(EventTrace.getInstance().createPlayerListener(false));
+            adEvents.subscribe(EventTrace.getInstance().createPlayerListener(true));
+        }
+
+        contentPlayer.addAnalyticsListener(metrics.createContentAnalyticsListener());
+        adPlayer.addAnalyticsListener(metrics.createAdAnalyticsListener());
+        contentPlayer.addAnalyticsListener(createWatchdogListener(contentPlayer, false));
+        adPlayer.addAnalyticsListener(createWatchdogListener(adPlayer, true));
+        contentPlayer.addAnalyticsListener(performanceHud.createAnalyticsListener(false));
+        adPlayer.addAnalyticsListener(performanceHud.createAnalyticsListener(true));
+    }
+
+    // Reports buffering and network throughput of a player to the watchdog
+    private AnalyticsListener createWatchdogListener(ExoPlayer player, boolean isAdPlayer) {
+        return new AnalyticsListener() {
+            @Override
+            public void onPlaybackStateChanged(@NonNull EventTime eventTime, int state) {
+                updateBufferingWatch();
+            }
+
+            @Override
+            public void onPlayWhenReadyChanged(@NonNull EventTime eventTime, boolean playWhenReady, int reason) {
+                updateBufferingWatch();
+            }
+
+            @Override
+            public void onBandwidthEstimate(@NonNull EventTime eventTime, int totalLoadTimeMs, long totalBytesLoaded, long bitrateEstimate) {
+                watchdog.onBandwidthEstimate(bitrateEstimate);
+            }
+
+            @Override
+            public void onVideoInputFormatChanged(@NonNull EventTime eventTime, @NonNull Format format, DecoderReuseEvaluation decoderReuseEvaluation) {
+                watchdog.onMediaBitrate(format.bitrate);
+            }
+
+            private void updateBufferingWatch() {
+                // Only the player that is on screen can leave the viewer waiting
+                if (player != getActivePlayer()) {
+                    return;
+                }
+                if (player.getPlaybackState() == Player.STATE_BUFFERING && player.getPlayWhenReady()) {
+                    watchdog.onBufferingStarted(isAdPlayer);
+                } else {
+                    watchdog.onBufferingEnded();
+                }
+            }
+        };
+    }
+
+    private void onWatchdogIntervention(PlaybackWatchdog.Stall stall, PlaybackWatchdog.Intervention intervention, long stalledMs) {
+        Log.w(CLASSTAG, "Watchdog: " + stall + " for " + stalledMs + "ms, " + intervention);
+        metrics.recordIntervention(intervention, stalledMs);
+
+        switch (intervention) {
+            case SKIP_AD:
+                adManager.skipCurrentAd();
+                break;
+            case ABANDON_AD_BREAK:
+                adManager.abandonAdBreak();
+                break;
+            case RETRY_CONTENT:
+                if (contentPlayer != null) {
+                    // Restart loading from where playback is stuck
+                    contentPlayer.seekTo(contentPlayer.getCurrentPosition());
+                }
+                break;
+        }
     }
 
     private void setupDataSourceFactory() {
-        String applicationName = getApplicationInfo().loadLabel(getPackageManager()).toString();
-        String userAgent = Util.getUserAgent(getApplicationContext(), applicationName);
-        dataSourceFactory = new DefaultDataSourceFactory(this, userAgent, null);
+        // Content and ad creatives share one on-disk cache, and one connection pool behind it
+        DataSource.Factory upstreamFactory = SharedHttpStack.buildDataSourceFactory(this);
+        dataSourceFactory.set(MediaCache.getInstance(this).buildDataSourceFactory(upstreamFactory));
+    }
+
+    private void prewarmConnections() {
+        // Have DNS, TCP and TLS done for the content and the preroll by the time they load
+        List<String> urls = new ArrayList<>(AD_HOST_URLS);
+        urls.add(CONTENT_STREAM_URL);
+        int count = SharedHttpStack.get(this).prewarm(urls);
+        Log.d(CLASSTAG, "Pre-warming connections to " + count + " hosts");
     }
 
     private void setupAdBreakManager() {
         ViewGroup adViewGroup = (ViewGroup) findViewById(R.id.activity_main);
-        adManager = new AdManager(this, this, adViewGroup);
-        adManager.setCurrentAdBreak(SampleAdProvider.createPrerollAdBreak());
+        adManager = new AdManager(this, metrics.wrap(this), adViewGroup, dataSourceFactory, watchdog, memoryPressureManager,
+            beaconPipeline);
+        adManager.setBoundaryTriggersEnabled(!getIntent().getBooleanExtra(EXTRA_REACTIVE_AD_BOUNDARIES, false));
+        memoryPressureManager.addResponder(adManager);
+    }
+
+    private void setupBeaconPipeline() {
+        if (beaconPipeline != null) return;
+
+        // Beacons are persisted and sent on their own thread, beacons left over from the last
+        // run are sent right away
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> new Thread(runnable, "Beacons"));
+        // The HTTP stack is looked up when the first beacon is sent, so it is not built on the main thread
+        Context appContext = getApplicationContext();
+        beaconPipeline = new BeaconPipeline(new File(getFilesDir(), BEACON_LOG_FILE_NAME),
+            url -> SharedHttpStack.get(appContext).send(url),
+            new ExecutorScheduler(executor));
+        beaconPipeline.start();
+    }
+
+    private void setupAdProvider() {
+        if (adProvider != null) return;
+
+        // Ad decisions are made off the main thread and delivered back on it. The provider
+        // outlives the activity, so re-entering the player reuses recent decisions.
+        ThreadPoolExecutor loadExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            runnable -> new Thread(runnable, "AdProvider"));
+        loadExecutor.allowCoreThreadTimeOut(true);
+        adProvider = new CachingAdProvider(new VmapAdBreakLoader(this, R.raw.sample_vmap), loadExecutor, mainHandler::post);
+    }
+
+    private void requestAdBreaks() {
+        setupAdProvider();
+        requestAdBreak(SampleAdProvider.PREROLL_BREAK_ID);
+        requestAdBreak(SampleAdProvider.MIDROLL_BREAK_ID);
+    }
+
+    private void requestAdBreak(String breakId) {
+        // A break that was already decided must not start over when the players are rebuilt
+        if (decidedBreakIds.contains(breakId)) {
+            return;
+        }
+
+        if (SampleAdProvider.PREROLL_BREAK_ID.equals(breakId)) {
+            metrics.begin(incrementalPods
+                ? PlaybackMetrics.Span.PREROLL_REQUEST_TO_FIRST_AD_FRAME_INCREMENTAL
+                : PlaybackMetrics.Span.PREROLL_REQUEST_TO_FIRST_AD_FRAME_ALL_OR_NOTHING);
+        }
+        adBreakRequests.add(adProvider.requestAdBreak(breakId, adBreakCallback));
+    }
+
+    private void cancelAdBreakRequests() {
+        for (Scheduler.Cancellable request : adBreakRequests) {
+            request.cancel();
+        }
+        adBreakRequests.clear();
+    }
+
+    private final AdProvider.Callback adBreakCallback = new AdProvider.Callback() {
+        @Override
+        public void onAdDecided(String breakId, Ad ad) {
+            // Only the preroll plays as soon as it is decided, mid-rolls are decided long before their cue point
+            if (incrementalPods && SampleAdProvider.PREROLL_BREAK_ID.equals(breakId)) {
+                decidedBreakIds.add(breakId);
+                adManager.onSlotDecided(ad);
+            }
+        }
+
+        @Override
+        public void onAdBreakLoaded(AdBreak adBreak) {
+            Log.d(CLASSTAG, "Ad break " + adBreak.breakId + " loaded with " + adBreak.ads.size() + " ads");
+            // A break that was streamed slot by slot is finished, not played again, also when its
+            // pod has already ended, e.g. on true[X] credit
+            if (incrementalPods && adManager.isDecidingSlots() && SampleAdProvider.PREROLL_BREAK_ID.equals(adBreak.breakId)) {
+                adManager.finishSlots(adBreak.ads);
+                return;
+            }
+            onAdBreakDecided(adBreak);
+        }
+
+        @Override
+        public void onAdBreakFailed(String breakId, Exception error) {
+            if (incrementalPods && adManager.isDecidingSlots() && SampleAdProvider.PREROLL_BREAK_ID.equals(breakId)) {
+                // Keep playing the slots that were decided
+                Log.w(CLASSTAG, "Failed to decide the rest of ad break " + breakId + ": " + error);
+                adManager.finishSlots(Collections.emptyList());
+                return;
+            }
+            Log.w(CLASSTAG, "Failed to load ad break " + breakId + ", using the sample ads: " + error);
+            try {
+                onAdBreakDecided(new SampleAdProvider().loadAdBreak(breakId));
+            } catch (IOException e) {
+                Log.w(CLASSTAG, "No sample ads for break " + breakId);
+                if (SampleAdProvider.PREROLL_BREAK_ID.equals(breakId)) {
+                    // The content was held for the preroll, play it without one
+                    onAdBreakDecided(new AdBreak(breakId, TimeOffset.START, Collections.emptyList()));
+                }
+            }
+        }
+    };
+
+    private void onAdBreakDecided(AdBreak adBreak) {
+        decidedBreakIds.add(adBreak.breakId);
+        TimeOffset timeOffset = adBreak.timeOffset;
+        if (timeOffset.isStart()) {
+            if (adBreak.ads.isEmpty()) {
+                // Nothing to play before the content
+                resumeContentStream();
+                return;
+            }
+            adManager.setCurrentAdBreak(adBreak.ads);
+            adManager.startAdBreak();
+        } else if (timeOffset.isEnd()) {
+            if (!adBreak.ads.isEmpty()) {
+                adManager.scheduleAdBreak(AdManager.CUE_POINT_CONTENT_END, adBreak.ads);
+            }
+        } else if (!adBreak.ads.isEmpty()) {
+            scheduleMidroll(adBreak);
+        }
+    }
+
+    private void scheduleMidroll(AdBreak adBreak) {
+        long contentDurationMs = contentPlayer != null ? contentPlayer.getDuration() : C.TIME_UNSET;
+        long cuePointMs = adBreak.timeOffset.resolveMs(
+            contentDurationMs == C.TIME_UNSET ? TimeOffset.DURATION_UNKNOWN : contentDurationMs);
+        if (cuePointMs == TimeOffset.UNRESOLVED) {
+            breaksAwaitingContentDuration.add(adBreak);
+            return;
+        }
+        adManager.scheduleAdBreak(cuePointMs, adBreak.ads);
+        scheduleCuePoint(cuePointMs);
+    }
+
+    private final Player.Listener contentDurationKnown = new Player.Listener() {
+        @Override
+        public void onTimelineChanged(@NonNull Timeline timeline, int reason) {
+            if (breaksAwaitingContentDuration.isEmpty() || contentPlayer == null
+                || contentPlayer.getDuration() == C.TIME_UNSET) {
+                return;
+            }
+            List<AdBreak> adBreaks = new ArrayList<>(breaksAwaitingContentDuration);
+            breaksAwaitingContentDuration.clear();
+            for (AdBreak adBreak : adBreaks) {
+                scheduleMidroll(adBreak);
+            }
+        }
+    };
+
+    private void dumpMetrics() {
+        Log.i(CLASSTAG, "Beacons sent " + beaconPipeline.getSentCount() + ", dropped " + beaconPipeline.getDroppedCount()
+            + ", failed attempts " + beaconPipeline.getFailedAttemptCount() + ", pending " + beaconPipeline.getPendingCount());
+        for (MemoryPressureManager.Release release : memoryPressureManager.getReleaseLog()) {
+            Log.i(CLASSTAG, "Memory released " + release);
+        }
+
+        // The trace is recorded on the main thread, so it is copied here and written from the copy.
+        // The metrics are synchronized, and the media cache may still have to be opened from disk.
+        EventTrace trace = EventTrace.ENABLED ? EventTrace.getInstance().snapshot() : null;
+        Context appContext = getApplicationContext();
+        File filesDir = getFilesDir();
+        PlaybackMetrics playbackMetrics = metrics;
+        metricsExecutor.execute(() -> {
+            playbackMetrics.dumpToLogcat();
+            Log.i(CLASSTAG, MediaCache.getInstance(appContext).toString());
+            playbackMetrics.dumpToFile(new File(filesDir, METRICS_FILE_NAME));
+            if (trace != null) {
+                trace.dumpToFile(new File(filesDir, EVENT_TRACE_FILE_NAME));
+            }
+        });
+    }
+
+    private static ThreadPoolExecutor newMetricsExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            runnable -> new Thread(runnable, "Metrics"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     @SuppressLint("UnspecifiedRegisterReceiverFlag")
@@ -233,60 +856,136 @@ public class MainActivity extends AppCompatActivity implements PlaybackStateList
 
     @Override
     public void playMediaSource(MediaSource mediaSource) {
-        if (player == null) return;
+        if (adPlayer == null) return;
+
+        // Hold the content where it is, it continues from there after the break
+        if (contentPlayer != null) {
+            contentPlayer.setPlayWhenReady(false);
+        }
 
         // Play the media source
-        player.setPlayWhenReady(true);
-        player.setMediaSource(mediaSource);
-        player.prepare();
-        playerView.setVisibility(View.VISIBLE);
-        playerView.hideController();
+        adPlayer.setPlayWhenReady(true);
+        adPlayer.setMediaSource(mediaSource);
+        adPlayer.prepare();
+        adPlayerView.setVisibility(View.VISIBLE);
+        adPlayerView.hideController();
+
+        // Whatever the previous break left subscribed goes away with it
+        adEvents.releaseAdBreakSubscriptions();
+        adEvents.subscribeForAdBreak(adBreakEvents);
+        Log.d(CLASSTAG, "Ad player subscribers: " + adEvents.getSubscriberCount());
+    }
 
-        player.addListener(new Player.Listener() {
-            @Override
-            public void onPlaybackStateChanged(int playbackState) {
-                if (playbackState != Player.STATE_ENDED) {
-                    return;
-                }
+    // Pod progress reported by the ad player, subscribed for each break
+    private final Player.Listener adBreakEvents = new Player.Listener() {
+        @Override
+        public void onIsPlayingChanged(boolean isPlaying) {
+            mainHandler.removeCallbacks(adProgressTick);
+            if (isPlaying) {
+                mainHandler.post(adProgressTick);
+            }
+        }
 
-                player.removeListener(this);
+        @Override
+        public void onPlaybackStateChanged(int playbackState) {
+            if (playbackState == Player.STATE_ENDED) {
                 adManager.onPlaybackEnded();
             }
+        }
 
-            @Override
-            public void onPositionDiscontinuity(@NonNull Player.PositionInfo oldPosition, @NonNull Player.PositionInfo newPosition, int reason) {
-                if (reason == Player.DISCONTINUITY_REASON_AUTO_TRANSITION) {
-                    adManager.onMediaItemCompleted();
-                }
+        @Override
+        public void onTimelineChanged(@NonNull Timeline timeline, int reason) {
+            if (adPlayer != null) {
+                adManager.onTimelineChanged(timeline, adPlayer.getCurrentMediaItemIndex());
             }
-        });
-    }
+        }
+
+        @Override
+        public void onPositionDiscontinuity(@NonNull Player.PositionInfo oldPosition, @NonNull Player.PositionInfo newPosition, int reason) {
+            if (reason == Player.DISCONTINUITY_REASON_AUTO_TRANSITION) {
+                adManager.onMediaItemCompleted(newPosition.mediaItemIndex, newPosition.positionMs);
+            }
+        }
+    };
+
+    private final Runnable adProgressTick = new Runnable() {
+        @Override
+        public void run() {
+            if (adPlayer == null || !adPlayer.isPlaying()) {
+                return;
+            }
+            adManager.onPlaybackPosition(adPlayer.getCurrentMediaItemIndex(), adPlayer.getCurrentPosition());
+            mainHandler.postDelayed(this, AD_PROGRESS_INTERVAL_MS);
+        }
+    };
     
     @Override
-    public void controlPlayer(AdManager.PlayerAction action, long seekPositionMs) {
-        if (player == null) return;
+    public void appendMediaSource(MediaSource mediaSource) {
+        if (adPlayer == null) return;
+
+        adPlayer.addMediaSource(mediaSource);
+    }
+
+    @Override
+    public void controlPlayer(AdManager.PlayerAction action, int mediaItemIndex, long seekPositionMs) {
+        if (adPlayer == null) return;
 
+        if (EventTrace.ENABLED) {
+            EventTrace.getInstance().record(EventTrace.PLAYER_ACTION, mediaItemIndex << 8 | action.ordinal(), seekPositionMs);
+        }
         switch (action) {
             case PLAY:
-                playerView.hideController();
-                player.setPlayWhenReady(true);
-                playerView.setVisibility(View.VISIBLE);
+                adPlayerView.hideController();
+                adPlayer.setPlayWhenReady(true);
+                adPlayerView.setVisibility(View.VISIBLE);
+                break;
+            case SEEK:
+                adPlayer.seekTo(mediaItemIndex, seekPositionMs);
+                adPlayer.setPlayWhenReady(true);
+                adPlayerView.setVisibility(View.VISIBLE);
                 break;
             case SEEK_AND_PAUSE:
-                playerView.setVisibility(View.INVISIBLE);
-                player.seekTo(seekPositionMs);
-                player.setPlayWhenReady(false);
+                // Paused first, so no more frames of the placeholder are shown before the seek
+                // lands. The pod stays on screen until the overlay is up, see onInteractiveAdShown.
+                adPlayer.setPlayWhenReady(false);
+                adPlayer.seekTo(mediaItemIndex, seekPositionMs);
                 break;
         }
     }
 
+    @Override
+    public void scheduleAdBoundary(int adIndex, int mediaItemIndex, long positionMs) {
+        if (adPlayer == null) return;
+
+        adBoundaryMessages.add(adPlayer.createMessage((messageType, payload) -> adManager.onAdBoundaryReached((Integer) payload))
+            .setPosition(mediaItemIndex, positionMs)
+            .setPayload(adIndex)
+            .setLooper(getMainLooper())
+            .setDeleteAfterDelivery(true)
+            .send());
+    }
+
+    @Override
+    public void cancelAdBoundaries() {
+        for (PlayerMessage message : adBoundaryMessages) {
+            message.cancel();
+        }
+        adBoundaryMessages.clear();
+    }
+
+    @Override
+    public void onInteractiveAdShown() {
+        // The ad surface is a media overlay, it would cover the interactive overlay
+        adPlayerView.setVisibility(View.INVISIBLE);
+    }
+
     @Override
     public void onAdBreakComplete() {
-        displayContentStream();
+        resumeContentStream();
     }
     
     @Override
     public void onSkipToContent() {
-        displayContentStream();
+        resumeContentStream();
     }
 }
\ No newline at end of file
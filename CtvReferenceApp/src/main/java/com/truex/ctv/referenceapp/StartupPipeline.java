@@ -0,0 +1,113 @@
+package com.truex.ctv.referenceapp;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.truex.ctv.referenceapp.metrics.PlaybackMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the cold start in stages, so that the main thread only does what the first content frame
+ * needs:
+ *  1. setup that does not touch views or players runs in parallel on background threads
+ *  2. the players and views are set up on the main thread meanwhile
+ *  3. setup that is only needed later, such as deciding ads, runs on the main thread once the
+ *     first content frame is rendered, or after {@link #DEFERRED_SETUP_DEADLINE_MS} at the latest
+ *
+ * The time each stage takes is recorded in {@link PlaybackMetrics}. Apart from the background
+ * tasks themselves, everything runs on the main thread.
+ */
+public class StartupPipeline {
+    private static final String CLASSTAG = StartupPipeline.class.getSimpleName();
+
+    private static final int BACKGROUND_THREADS = 2;
+    // Deferred setup does not wait for a slow content stream any longer than this after start
+    private static final long DEFERRED_SETUP_DEADLINE_MS = 1500;
+
+    private final Handler mainHandler;
+    private final PlaybackMetrics metrics = PlaybackMetrics.getInstance();
+    private final long startMs = SystemClock.elapsedRealtime();
+
+    private final List<Runnable> deferredTasks = new ArrayList<>();
+    private boolean deferredStarted;
+
+    private final Runnable deferredDeadline = () -> {
+        Log.d(CLASSTAG, "No content frame within " + DEFERRED_SETUP_DEADLINE_MS + "ms, running deferred setup");
+        runDeferredTasks();
+    };
+
+    public StartupPipeline(Handler mainHandler) {
+        this.mainHandler = mainHandler;
+    }
+
+    /**
+     * Run independent setup tasks in parallel, off the main thread.
+     */
+    public void runInBackground(Runnable... tasks) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(BACKGROUND_THREADS, BACKGROUND_THREADS, 5, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> new Thread(runnable, "Startup"));
+        executor.allowCoreThreadTimeOut(true);
+
+        AtomicInteger remaining = new AtomicInteger(tasks.length);
+        for (Runnable task : tasks) {
+            executor.execute(() -> {
+                task.run();
+                if (remaining.decrementAndGet() == 0) {
+                    metrics.record(PlaybackMetrics.Span.STARTUP_BACKGROUND_SETUP, SystemClock.elapsedRealtime() - startMs);
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Run the task once the first content frame is on screen.
+     */
+    public void runAfterFirstFrame(Runnable task) {
+        deferredTasks.add(task);
+    }
+
+    /**
+     * The main thread part of the start is done, call at the end of onCreate.
+     */
+    public void onMainThreadSetupDone() {
+        metrics.record(PlaybackMetrics.Span.STARTUP_MAIN_THREAD, SystemClock.elapsedRealtime() - startMs);
+        mainHandler.postDelayed(deferredDeadline, DEFERRED_SETUP_DEADLINE_MS);
+    }
+
+    public void onFirstFrame() {
+        // Posted rather than run in the frame callback, so the frame is not held up
+        mainHandler.post(this::runDeferredTasks);
+    }
+
+    /**
+     * Drop the deferred setup that has not run yet, e.g. when the app is stopped first.
+     */
+    public void cancel() {
+        deferredStarted = true;
+        mainHandler.removeCallbacks(deferredDeadline);
+        deferredTasks.clear();
+    }
+
+    private void runDeferredTasks() {
+        if (deferredStarted) {
+            return;
+        }
+        deferredStarted = true;
+        mainHandler.removeCallbacks(deferredDeadline);
+
+        long deferredStartMs = SystemClock.elapsedRealtime();
+        for (Runnable task : deferredTasks) {
+            task.run();
+        }
+        deferredTasks.clear();
+        metrics.record(PlaybackMetrics.Span.STARTUP_DEFERRED_SETUP, SystemClock.elapsedRealtime() - deferredStartMs);
+    }
+}
@@ -1,49 +1,147 @@
 package com.truex.ctv.referenceapp.ads;
 
 import android.content.Context;
+import android.hardware.display.DisplayManager;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Display;
 import android.view.ViewGroup;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 import androidx.annotation.OptIn;
+import androidx.media3.common.C;
 import androidx.media3.common.MediaItem;
+import androidx.media3.common.Timeline;
 import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.DataSource;
 import androidx.media3.exoplayer.source.ConcatenatingMediaSource2;
+import androidx.media3.exoplayer.source.DefaultMediaSourceFactory;
 import androidx.media3.exoplayer.source.MediaSource;
+import androidx.media3.exoplayer.upstream.DefaultBandwidthMeter;
 
-public class AdManager {
+import com.truex.adrenderer.TruexAdEvent;
+import com.truex.ctv.referenceapp.ads.tracking.AdProgressTracker;
+import com.truex.ctv.referenceapp.ads.tracking.BeaconPipeline;
+import com.truex.ctv.referenceapp.metrics.EventTrace;
+import com.truex.ctv.referenceapp.metrics.PlaybackMetrics;
+import com.truex.ctv.referenceapp.player.DisplayMode;
+import com.truex.ctv.referenceapp.player.MediaCache;
+
+/**
+ * Connects the platform independent {@link AdPod} to ExoPlayer and the true[X] ad renderer.
+ */
+public class AdManager implements AdPod.Listener, MemoryPressureManager.Responder {
     private static final String CLASSTAG = AdManager.class.getSimpleName();
 
-    private List<Ad> ads;
-    private MediaSource mediaSource;
-    private int currentAdIndexInSegment;
+    // Cue point of a break that plays once the content has ended
+    public static final long CUE_POINT_CONTENT_END = Long.MAX_VALUE;
+
+    // How long a break waits for its creatives to be probed before it starts with what is known
+    private static final long CREATIVE_PROBE_TIMEOUT_MS = 2000;
+
+    // Slots of a streaming break that are decided later than this after it started are dropped
+    private static final long SLOT_DECISION_DEADLINE_MS = 10000;
+
+    /**
+     * The renderer of an interactive slot is initialized this long before its boundary, or before
+     * the cue point of a break that opens with it, so the engagement is loading while the previous
+     * ad or the content finishes and only has to be shown at the boundary.
+     */
+    public static final long OVERLAY_PREPARE_LEAD_MS = 5000;
+
+    // A renderer prepared ahead is dropped if its slot is not reached within this time, e.g. when
+    // the viewer paused, as the config it loaded may have gone stale
+    private static final long PREPARED_OVERLAY_TTL_MS = 60000;
+
+    private AdPod adPod;
+    // The ads of the current break as decided, before unplayable creatives are left out
+    private List<Ad> currentAds;
+    // The break is waiting for its creatives to be probed
+    private boolean adBreakStarting;
+
+    // A streaming break plays every ad as its own playlist item, so slots can be appended while
+    // it plays, instead of one concatenated source for the whole pod
+    private boolean streamingAdBreak;
+    private final SlotDecisions slotDecisions = new SlotDecisions();
+    private Scheduler.Cancellable slotDeadline;
+    private final Scheduler scheduler = new HandlerScheduler();
+    // Whether interactive slots are entered from player messages at their exact boundary, with
+    // their overlay prepared ahead, rather than from the discontinuity once the player has moved
+    // on to the placeholder
+    private boolean boundaryTriggersEnabled = true;
+    // The ad the pod last entered from its boundary message, before the player reported the transition
+    private int adIndexEnteredAtBoundary = -1;
+    // The overlay of the next interactive slot, set up ahead of its boundary
+    private final PreparedAhead<PreparedOverlay> preparedOverlay =
+        new PreparedAhead<>(Clock.SYSTEM, PREPARED_OVERLAY_TTL_MS, overlay -> overlay.manager.destroy());
+    // Mid-roll breaks waiting for their cue point, keyed by content position
+    private NavigableMap<Long, List<Ad>> scheduledAdBreaks;
     private AdBreakListener listener;
     private Context context;
     private InfillionAdManager infillionAdManager;
     private ViewGroup adViewGroup;
-    private android.os.Handler failsafeHandler;
-    private Runnable failsafeRunnable;
-    
+    private DataSource.Factory dataSourceFactory;
+    private TruexAdRendererPool rendererPool;
+    private CreativeProber creativeProber;
+    private RenditionSelector renditionSelector;
+    // The creative URL selected for each ad, from its renditions
+    private final Map<Ad, String> creativeUrls = new IdentityHashMap<>();
+    private PlaybackWatchdog watchdog;
+    private MemoryPressureManager memoryPressureManager;
+    private BeaconPipeline beaconPipeline;
+    private final AdProgressTracker progressTracker = new AdProgressTracker(this::onTrackingEvent);
+
+    // Reused when reading the real ad durations from the player timeline
+    private final Timeline.Window window = new Timeline.Window();
+    private final Timeline.Period period = new Timeline.Period();
+    private long[] adDurationsMs = new long[0];
+
     public interface AdBreakListener {
         void playMediaSource(MediaSource mediaSource);
-        void controlPlayer(PlayerAction action, long seekPositionMs);
+        // Add an ad to the end of the playing pod
+        void appendMediaSource(MediaSource mediaSource);
+        // The position is within the given media item of the pod
+        void controlPlayer(PlayerAction action, int mediaItemIndex, long seekPositionMs);
+        // Call onAdBoundaryReached(adIndex) when the pod reaches the position in the given media item
+        void scheduleAdBoundary(int adIndex, int mediaItemIndex, long positionMs);
+        void cancelAdBoundaries();
+        // The interactive overlay is rendering, the paused pod can be hidden behind it
+        void onInteractiveAdShown();
         void onAdBreakComplete();
         void onSkipToContent();
     }
-    
+
     public enum PlayerAction {
         PLAY,
+        SEEK,
         SEEK_AND_PAUSE
     }
-    
-    public AdManager(Context context, AdBreakListener listener, ViewGroup adViewGroup) {
+
+    public AdManager(Context context, AdBreakListener listener, ViewGroup adViewGroup, DataSource.Factory dataSourceFactory,
+                     PlaybackWatchdog watchdog, MemoryPressureManager memoryPressureManager, BeaconPipeline beaconPipeline) {
         this.context = context;
+        this.beaconPipeline = beaconPipeline;
+        this.watchdog = watchdog;
+        this.memoryPressureManager = memoryPressureManager;
         this.listener = listener;
         this.adViewGroup = adViewGroup;
-        this.ads = new ArrayList<>();
-        this.currentAdIndexInSegment = 0;
-        this.failsafeHandler = new android.os.Handler();
+        this.dataSourceFactory = dataSourceFactory;
+        this.scheduledAdBreaks = new TreeMap<>();
+        this.rendererPool = new TruexAdRendererPool(context);
+        this.creativeProber = new CreativeProber(dataSourceFactory);
+        this.renditionSelector = createRenditionSelector(context);
+        this.adPod = new AdPod(podPlayer, interactiveAdRenderer, this);
+    }
+
+    public void setBoundaryTriggersEnabled(boolean enabled) {
+        boundaryTriggersEnabled = enabled;
     }
 
     // Lifecycle methods to forward to InfillionAdManager
@@ -64,98 +162,642 @@ public class AdManager {
             infillionAdManager.onStop();
         }
         // Clean up when stopping to prevent memory leaks
-        cleanupInfillionAdManager();
+        creativeProber.cancelWaiters();
+        // The activity cancels the ad break requests, no more slots will be decided
+        stopAcceptingSlots();
+        slotDecisions.reset();
+        watchdog.stop();
+        adPod.stop();
+        preparedOverlay.release();
+        rendererPool.release();
+        creativeUrls.clear();
+    }
+
+    @Override
+    public String onMemoryPressure(MemoryPressureManager.Level level) {
+        // Probe results are cheap to rebuild, only those of the scheduled and playing breaks are kept
+        List<String> released = new ArrayList<>();
+        int probeResults = creativeProber.retainResults(creativeUrls.values());
+        if (probeResults > 0) {
+            released.add(probeResults + " creative probe results");
+        }
+
+        // The renderer showing the current ad is not touched, only what was prepared ahead. The
+        // prepared overlay is handed over when its slot is entered, so it is never the ad on screen.
+        // Both hold a WebView, which is worth giving back when memory runs low.
+        if (level != MemoryPressureManager.Level.MODERATE) {
+            if (preparedOverlay.release()) {
+                released.add("prepared overlay");
+            }
+            if (rendererPool.hasWarmRenderer()) {
+                rendererPool.release();
+                released.add("warm renderer");
+            }
+        }
+        return released.isEmpty() ? null : String.join(", ", released);
     }
 
     // ad pod set up and management
     public void setCurrentAdBreak(List<Ad> ads) {
-        // Clean up any existing InfillionAdManager before setting new ad pod
-        cleanupInfillionAdManager();
-        
-        this.ads = ads;
-        this.currentAdIndexInSegment = 0;
-        this.mediaSource = createMediaSource(ads);
+        this.currentAds = ads;
+        creativeProber.probe(selectCreatives(ads));
+
+        // A break that opens with an interactive ad has its renderer initialized while the creatives
+        // are probed, and a renderer is ready for the next interactive ad while content is still playing
+        int warmUpFromIndex = 0;
+        if (!ads.isEmpty() && !adPod.isAdBreakInProgress()) {
+            prepareOverlayAhead(ads.get(0));
+            warmUpFromIndex = preparedOverlay.isPrepared(ads.get(0)) ? 1 : 0;
+        }
+        if (!memoryPressureManager.shouldDeferPreloading()) {
+            warmUpRendererIfNeeded(ads, warmUpFromIndex);
+        }
+    }
+
+    /**
+     * Schedule an ad break to start when content playback reaches the given position, or when the
+     * content ends for {@link #CUE_POINT_CONTENT_END}. The player is expected to call
+     * {@link #onCuePointReached(long)} at each of {@link #getCuePointsMs()}, and
+     * {@link #onContentEnded()} at the end.
+     */
+    public void scheduleAdBreak(long contentPositionMs, List<Ad> ads) {
+        scheduledAdBreaks.put(contentPositionMs, ads);
+
+        // Probe the creatives long before the cue point, so the break can start right away
+        creativeProber.probe(selectCreatives(ads));
+    }
+
+    public List<Long> getCuePointsMs() {
+        return new ArrayList<>(scheduledAdBreaks.keySet());
+    }
+
+    /**
+     * You should call this from outside when content playback is {@link #OVERLAY_PREPARE_LEAD_MS}
+     * away from a cue point. A break that opens with an interactive ad gets its renderer
+     * initialized while the content plays.
+     */
+    public void onCuePointApproaching(long contentPositionMs) {
+        List<Ad> ads = scheduledAdBreaks.get(contentPositionMs);
+        if (ads == null || ads.isEmpty() || adPod.isAdBreakInProgress()) {
+            return;
+        }
+        prepareOverlayAhead(ads.get(0));
+    }
+
+    public void onContentEnded() {
+        onCuePointReached(CUE_POINT_CONTENT_END);
     }
-    
+
+    // You should call this from outside when content playback reaches a cue point
+    public void onCuePointReached(long contentPositionMs) {
+        List<Ad> cuedAds = scheduledAdBreaks.remove(contentPositionMs);
+        if (cuedAds == null || adPod.isAdBreakInProgress()) {
+            return;
+        }
+
+        Log.d(CLASSTAG, contentPositionMs == CUE_POINT_CONTENT_END ? "Content ended, starting post-roll"
+            : "Cue point reached at " + contentPositionMs + "ms, starting mid-roll");
+        setCurrentAdBreak(cuedAds);
+        startAdBreak();
+    }
+
     public void startAdBreak() {
-        // Clean up any existing InfillionAdManager before starting new ad pod
-        cleanupInfillionAdManager();
+        if (currentAds == null) {
+            // No break has been decided yet
+            return;
+        }
+
+        // Build the pod from the real creative durations, waiting a bounded time for probes
+        // that are still running. The placeholder durations are used for any that don't finish.
+        List<Ad> ads = currentAds;
+        long preparationStartMs = SystemClock.elapsedRealtime();
+        adBreakStarting = true;
+        creativeProber.cancelWaiters();
+        creativeProber.whenProbed(selectCreatives(ads), CREATIVE_PROBE_TIMEOUT_MS, results -> {
+            adBreakStarting = false;
+            PlaybackMetrics.getInstance().record(PlaybackMetrics.Span.POD_PREPARATION,
+                SystemClock.elapsedRealtime() - preparationStartMs);
+            startPreparedAdBreak(ads);
+        });
+    }
+
+    /**
+     * Hand over a slot of a break that is being decided slot by slot. The first slot starts the
+     * break right away, without waiting for the creatives to be probed, and later slots are
+     * appended to the pod while it plays. Slots decided after the pod finished, or more than
+     * {@link #SLOT_DECISION_DEADLINE_MS} after it started, are dropped.
+     */
+    public void onSlotDecided(Ad ad) {
+        switch (slotDecisions.onSlotDecided()) {
+            case START:
+                startStreamingAdBreak(ad);
+                break;
+            case APPEND:
+                appendSlot(ad);
+                break;
+            case DROP:
+                dropSlot(ad);
+                break;
+        }
+    }
+
+    /**
+     * The whole break has been decided, or failed to be. Slots that were not handed over one by
+     * one are appended if the pod is still taking slots, and no further slots are taken.
+     */
+    public void finishSlots(List<Ad> ads) {
+        for (int i = slotDecisions.getDecidedSlotCount(); i < ads.size(); i++) {
+            appendSlot(ads.get(i));
+        }
+        stopAcceptingSlots();
+        slotDecisions.reset();
+    }
+
+    /**
+     * @return true if slots of a break have been handed over and the whole break has not been
+     * decided yet, even if its pod has already ended. The break must then be finished with
+     * {@link #finishSlots}, rather than played.
+     */
+    public boolean isDecidingSlots() {
+        return slotDecisions.isDecidingSlots();
+    }
 
-        currentAdIndexInSegment = 0;
+    private void startStreamingAdBreak(Ad firstAd) {
+        Log.d(CLASSTAG, "Starting streaming ad break with its first slot");
+        List<Ad> ads = new ArrayList<>(1);
+        ads.add(firstAd);
+        currentAds = ads;
+        creativeProber.probe(selectCreatives(ads));
 
-        listener.playMediaSource(mediaSource);
-        launchInfillionOverlayIfNecessary();
+        streamingAdBreak = true;
+        adIndexEnteredAtBoundary = -1;
+        slotDeadline = scheduler.schedule(this::onSlotDeadline, SLOT_DECISION_DEADLINE_MS);
+
+        adPod.setAds(ads);
+        listener.playMediaSource(createAdMediaSource(firstAd, adPod.getAdTimeline().getDurationMs(0)));
+        watchdog.onAdBreakStarted();
+        adPod.start();
+        scheduleAdBoundaries();
+    }
+
+    private void appendSlot(Ad ad) {
+        if (!slotDecisions.isAccepting() || !adPod.isAdBreakInProgress()) {
+            dropSlot(ad);
+            return;
+        }
+
+        creativeProber.probe(selectCreatives(Collections.singletonList(ad)));
+        adPod.appendAd(ad);
+        int adIndex = adPod.getAds().size() - 1;
+        listener.appendMediaSource(createAdMediaSource(ad, adPod.getAdTimeline().getDurationMs(adIndex)));
+        scheduleAdBoundaries();
+    }
+
+    private void dropSlot(Ad ad) {
+        Log.w(CLASSTAG, "Dropping ad " + ad.adId + ", decided after the pod was closed");
+        PlaybackMetrics.getInstance().increment(PlaybackMetrics.Counter.LATE_AD_SLOT_DROPPED);
+    }
+
+    private void onSlotDeadline() {
+        slotDeadline = null;
+        if (slotDecisions.isAccepting()) {
+            Log.d(CLASSTAG, "Slot decision deadline passed, closing the pod at " + adPod.getAds().size() + " ads");
+            slotDecisions.close();
+        }
+    }
+
+    // The break keeps counting as being decided until its request finishes, see finishSlots
+    private void stopAcceptingSlots() {
+        if (slotDeadline != null) {
+            slotDeadline.cancel();
+            slotDeadline = null;
+        }
+        slotDecisions.close();
+    }
+
+    /**
+     * Resume a break that was interrupted, e.g. by the app being stopped, at the given ad and
+     * pod position. The ads are the ones the pod was playing, see {@link #getAdBreakAds()}.
+     */
+    public void resumeAdBreak(List<Ad> ads, int adIndex, long podPositionMs) {
+        Log.d(CLASSTAG, "Resuming ad break at ad " + adIndex + ", pod position " + podPositionMs + "ms");
+        // Resumed as one concatenated pod, whether or not its slots were streamed
+        streamingAdBreak = false;
+        adPod.setAds(ads);
+        playAdBreak(adIndex, podPositionMs);
+    }
+
+    /**
+     * @return the ads of the break in progress, or null if there is none
+     */
+    public List<Ad> getAdBreakAds() {
+        return adPod.isAdBreakInProgress() ? adPod.getAds() : null;
+    }
+
+    public int getCurrentAdIndex() {
+        return adPod.getCurrentAdIndex();
+    }
+
+    public boolean isAdBreakStarting() {
+        return adBreakStarting;
+    }
+
+    /**
+     * Give up on the ad that is playing, e.g. because it is stuck.
+     */
+    public void skipCurrentAd() {
+        adPod.skipCurrentAd();
+    }
+
+    /**
+     * Give up on the rest of the break and return to content.
+     */
+    public void abandonAdBreak() {
+        adPod.abandonAdBreak();
     }
 
     public boolean isPlayingInteractiveAd() {
-        Ad currentAd = getCurrentAd();
-        return currentAd != null && currentAd.isInfillionAd();
+        return adPod.isPlayingInteractiveAd();
+    }
+
+    public boolean isAdBreakInProgress() {
+        return adPod.isAdBreakInProgress();
+    }
+
+    public DisplayMode getDisplayMode() {
+        if (adPod.isInteractiveAdShowing()) {
+            return DisplayMode.INTERACTIVE_AD;
+        }
+        return adPod.isAdBreakInProgress() ? DisplayMode.LINEAR_ADS : DisplayMode.CONTENT_STREAM;
+    }
+
+    /**
+     * @return the index of the ad in the current pod at the given player position, or -1
+     */
+    public int getAdIndexAtPosition(long positionMs) {
+        return adPod.getAdTimeline().getAdIndexAt(positionMs);
+    }
+
+    /**
+     * @return the position on the pod timeline of a position reported by the ad player
+     */
+    public long getPodPositionMs(int mediaItemIndex, long positionMs) {
+        if (!streamingAdBreak) {
+            return positionMs;
+        }
+        AdTimeline adTimeline = adPod.getAdTimeline();
+        return mediaItemIndex < adTimeline.getAdCount() ? adTimeline.getStartPositionMs(mediaItemIndex) + positionMs : positionMs;
+    }
+
+    // You should call this from outside when the player's timeline changes, so that
+    // ad boundaries follow the real durations of the creatives once they are known
+    @OptIn(markerClass = UnstableApi.class)
+    public void onTimelineChanged(Timeline timeline, int windowIndex) {
+        if (!adPod.isAdBreakInProgress() || windowIndex < 0 || windowIndex >= timeline.getWindowCount()) {
+            return;
+        }
+
+        int adCount = adPod.getAds().size();
+        if (streamingAdBreak) {
+            updateAdDurationsFromWindows(timeline, adCount);
+            return;
+        }
+
+        timeline.getWindow(windowIndex, window);
+        if (window.lastPeriodIndex - window.firstPeriodIndex + 1 != adCount) {
+            // Not the pod window
+            return;
+        }
+
+        if (adDurationsMs.length < adCount) {
+            adDurationsMs = new long[adCount];
+        }
+        for (int i = 0; i < adCount; i++) {
+            long durationMs = timeline.getPeriod(window.firstPeriodIndex + i, period).getDurationMs();
+            adDurationsMs[i] = durationMs == C.TIME_UNSET ? AdTimeline.DURATION_UNKNOWN : durationMs;
+        }
+
+        if (adPod.updateAdDurations(adDurationsMs)) {
+            Log.d(CLASSTAG, "Ad boundaries updated from timeline, pod ends at "
+                + adPod.getAdTimeline().getEndPositionMs(adCount - 1) + "ms");
+            scheduleAdBoundaries();
+        }
+    }
+
+    // In a streaming break every ad is its own window
+    @OptIn(markerClass = UnstableApi.class)
+    private void updateAdDurationsFromWindows(Timeline timeline, int adCount) {
+        if (adDurationsMs.length < adCount) {
+            adDurationsMs = new long[adCount];
+        }
+        for (int i = 0; i < adCount; i++) {
+            long durationMs = i < timeline.getWindowCount() ? timeline.getWindow(i, window).getDurationMs() : C.TIME_UNSET;
+            adDurationsMs[i] = durationMs == C.TIME_UNSET ? AdTimeline.DURATION_UNKNOWN : durationMs;
+        }
+        if (adPod.updateAdDurations(adDurationsMs)) {
+            scheduleAdBoundaries();
+        }
     }
 
     // You should call this from outside when a concatenated
     // segment finishes playing
     public void onPlaybackEnded() {
-        listener.onAdBreakComplete();
+        progressTracker.onAdCompleted();
+        adPod.onPlaybackEnded();
     }
 
     // You should call this from outside when the player
     // transitions to a new ad in a concatenated segment
-    public void onMediaItemCompleted() {
-        Ad currentAd = getCurrentAd();
-        if (currentAd == null) {
+    public void onMediaItemCompleted(int mediaItemIndex, long positionMs) {
+        // The pod already entered the ad if the message at its boundary was delivered first
+        if (adPod.getCurrentAdIndex() == adIndexEnteredAtBoundary) {
+            int adIndex = getAdIndexAtPosition(getPodPositionMs(mediaItemIndex, positionMs));
+            if (adIndex >= 0 && adIndex <= adIndexEnteredAtBoundary) {
+                return;
+            }
+        }
+
+        if (isInteractiveAdNext()) {
+            PlaybackMetrics.getInstance().begin(PlaybackMetrics.Span.SLOT_BOUNDARY_TO_OVERLAY_REACTIVE);
+        }
+        progressTracker.onAdCompleted();
+        adPod.onAdTransition();
+    }
+
+    // You should call this from outside when the pod reaches a boundary scheduled by the listener
+    public void onAdBoundaryReached(int adIndex) {
+        // The player may have reported the transition first, or the boundary was passed by a skip
+        if (!adPod.isAdBreakInProgress() || adPod.getCurrentAdIndex() != adIndex - 1 || adPod.isInteractiveAdShowing()) {
             return;
         }
 
-        moveToNextAd();
+        // The previous ad has played to its very end. Entering the slot holds the player on the
+        // placeholder and starts the overlay, before the player reports the transition.
+        PlaybackMetrics.getInstance().begin(PlaybackMetrics.Span.SLOT_BOUNDARY_TO_OVERLAY_SCHEDULED);
+        adIndexEnteredAtBoundary = adIndex;
+        progressTracker.onAdCompleted();
+        adPod.onAdTransition();
+    }
+
+    private boolean isInteractiveAdNext() {
+        int nextAdIndex = adPod.getCurrentAdIndex() + 1;
+        List<Ad> ads = adPod.getAds();
+        return nextAdIndex < ads.size() && ads.get(nextAdIndex).isInfillionAd();
+    }
+
+    // Have the listener trigger each interactive slot ahead of the current ad exactly at its
+    // boundary: the start of the ad's own media item in a streaming break, or the end of the
+    // previous ad within the concatenated pod
+    private void scheduleAdBoundaries() {
+        listener.cancelAdBoundaries();
+        if (!boundaryTriggersEnabled || !adPod.isAdBreakInProgress()) {
+            return;
+        }
+
+        List<Ad> ads = adPod.getAds();
+        AdTimeline adTimeline = adPod.getAdTimeline();
+        for (int i = adPod.getCurrentAdIndex() + 1; i < ads.size(); i++) {
+            if (!ads.get(i).isInfillionAd()) {
+                continue;
+            }
+            int mediaItemIndex = streamingAdBreak ? i : 0;
+            listener.scheduleAdBoundary(i, mediaItemIndex, adTimeline.getStartPositionMs(i) - getMediaItemStartMs(mediaItemIndex));
+        }
+    }
+
+    // Initialize the renderer of the next interactive slot a while before its boundary, so the
+    // engagement is loading while the current ad plays out. A slot that follows another
+    // interactive ad is set up when it is entered, the renderer before it is in use until then.
+    private void prepareNextOverlay(long podPositionMs) {
+        int nextAdIndex = adPod.getCurrentAdIndex() + 1;
+        List<Ad> ads = adPod.getAds();
+        if (nextAdIndex >= ads.size() || adPod.isPlayingInteractiveAd()) {
+            return;
+        }
+
+        if (adPod.getAdTimeline().getStartPositionMs(nextAdIndex) - podPositionMs <= OVERLAY_PREPARE_LEAD_MS) {
+            prepareOverlayAhead(ads.get(nextAdIndex));
+        }
+    }
+
+    private void prepareOverlayAhead(Ad ad) {
+        if (!boundaryTriggersEnabled || !ad.isInfillionAd() || preparedOverlay.isPrepared(ad)
+            || memoryPressureManager.shouldDeferPreloading()) {
+            return;
+        }
+
+        // Release the previous renderer first, so there is never more than one prepared WebView
+        preparedOverlay.release();
+        Log.d(CLASSTAG, "Preparing the overlay of ad " + ad.adId + " ahead of its slot");
+        preparedOverlay.put(ad, prepareOverlay(ad));
+    }
+
+    // You should call this from outside periodically while the pod is playing, so that the
+    // impression and quartiles of the playing ad are tracked
+    public void onPlaybackPosition(int mediaItemIndex, long positionMs) {
+        long podPositionMs = getPodPositionMs(mediaItemIndex, positionMs);
+        int adIndex = adPod.getCurrentAdIndex();
+        if (!adPod.isAdBreakInProgress() || getAdIndexAtPosition(podPositionMs) != adIndex) {
+            return;
+        }
+
+        AdTimeline adTimeline = adPod.getAdTimeline();
+        progressTracker.onProgress(podPositionMs - adTimeline.getStartPositionMs(adIndex), adTimeline.getDurationMs(adIndex));
+        prepareNextOverlay(podPositionMs);
+    }
+
+    private void onTrackingEvent(Ad ad, TrackingEvent.Type type) {
+        for (TrackingEvent trackingEvent : ad.trackingEvents) {
+            if (trackingEvent.type == type) {
+                beaconPipeline.enqueue(trackingEvent.url);
+            }
+        }
+    }
+
+    private void startPreparedAdBreak(List<Ad> ads) {
+        List<Ad> playableAds = new ArrayList<>(ads.size());
+        for (Ad ad : ads) {
+            CreativeProber.CreativeInfo info = creativeProber.getCreativeInfo(getCreativeUrl(ad));
+            if (info != null && !info.playable) {
+                Log.w(CLASSTAG, "Leaving out unplayable creative of ad " + ad.adId + ": " + info);
+                PlaybackMetrics.getInstance().increment(PlaybackMetrics.Counter.UNPLAYABLE_CREATIVE);
+                continue;
+            }
+            playableAds.add(ad);
+        }
+
+        adPod.setAds(playableAds);
+        if (playableAds.isEmpty()) {
+            // Nothing to play, the pod reports the break as complete
+            adPod.start();
+            return;
+        }
+
+        Log.d(CLASSTAG, "Starting ad break, " + MediaCache.getInstance(context));
+        streamingAdBreak = false;
+        playAdBreak(0, 0);
+    }
+
+    private void playAdBreak(int adIndex, long podPositionMs) {
+        List<Ad> ads = adPod.getAds();
+        long[] probedDurationsMs = new long[ads.size()];
+        for (int i = 0; i < ads.size(); i++) {
+            CreativeProber.CreativeInfo info = creativeProber.getCreativeInfo(getCreativeUrl(ads.get(i)));
+            probedDurationsMs[i] = info != null && info.durationMs > 0 ? info.durationMs : AdTimeline.DURATION_UNKNOWN;
+        }
+        adPod.updateAdDurations(probedDurationsMs);
+
+        listener.playMediaSource(createMediaSource(ads));
+        if (podPositionMs > 0) {
+            podPlayer.seekTo(podPositionMs);
+        }
+        adIndexEnteredAtBoundary = -1;
+        watchdog.onAdBreakStarted();
+        adPod.startAt(adIndex);
+        scheduleAdBoundaries();
+    }
+
+    @Override
+    public void onAdStarted(int adIndex, Ad ad) {
+        if (EventTrace.ENABLED) {
+            EventTrace.getInstance().record(EventTrace.AD_STARTED, adIndex);
+        }
+        progressTracker.onAdStarted(ad);
+        watchdog.onAdStarted(ad, adPod.getAdTimeline().getDurationMs(adIndex));
+
+        if (ad.isInfillionAd()) {
+            PlaybackMetrics.getInstance().begin(PlaybackMetrics.Span.SLOT_BOUNDARY_TO_SEEK_AND_PAUSE);
+        }
+        if (memoryPressureManager.shouldDeferPreloading()) {
+            return;
+        }
+
+        if (!ad.isInfillionAd()) {
+            // Get a renderer ready for the next interactive slot while this ad plays
+            warmUpRendererIfNeeded(adPod.getAds(), adIndex + 1);
+        }
+    }
+
+    @Override
+    public void onAdBreakComplete() {
+        if (EventTrace.ENABLED) {
+            EventTrace.getInstance().record(EventTrace.AD_BREAK_ENDED, 0);
+        }
+        progressTracker.onAdStopped();
+        stopAcceptingSlots();
+        listener.cancelAdBoundaries();
+        adIndexEnteredAtBoundary = -1;
+        preparedOverlay.release();
+        watchdog.onAdBreakEnded();
+        forgetCreatives(adPod.getAds());
+        listener.onAdBreakComplete();
     }
-    
-    private Ad getCurrentAd() {
-        if (currentAdIndexInSegment < ads.size()) {
-            return ads.get(currentAdIndexInSegment);
+
+    @Override
+    public void onSkipToContent() {
+        if (EventTrace.ENABLED) {
+            EventTrace.getInstance().record(EventTrace.AD_BREAK_ENDED, 1);
         }
-        return null;
+        progressTracker.onAdStopped();
+        stopAcceptingSlots();
+        listener.cancelAdBoundaries();
+        adIndexEnteredAtBoundary = -1;
+        preparedOverlay.release();
+        watchdog.onAdBreakEnded();
+        forgetCreatives(adPod.getAds());
+        listener.onSkipToContent();
     }
 
-    // Note that this method does not drive the ads - it  only:
-    //  1. advances the internal state to reflect the progress made by the player
-    //  2. shows the Infillion overlay if an Infillion ad is playing
-    private void moveToNextAd() {
-        // Move to next ad in concatenated segment
-        currentAdIndexInSegment++;
-        if (currentAdIndexInSegment >= ads.size()) {
-            listener.onAdBreakComplete();
+    private final PodPlayer podPlayer = new PodPlayer() {
+        @Override
+        public void play() {
+            listener.controlPlayer(PlayerAction.PLAY, 0, 0);
+        }
+
+        @Override
+        public void seekAndPause(long positionMs) {
+            controlPlayer(PlayerAction.SEEK_AND_PAUSE, positionMs);
         }
-        else {
-            // show the renderer if the new ad is Infillion
-            launchInfillionOverlayIfNecessary();
+
+        @Override
+        public void seekTo(long positionMs) {
+            controlPlayer(PlayerAction.SEEK, positionMs);
         }
+    };
+
+    private void controlPlayer(PlayerAction action, long podPositionMs) {
+        int mediaItemIndex = getMediaItemIndex(podPositionMs);
+        listener.controlPlayer(action, mediaItemIndex, podPositionMs - getMediaItemStartMs(mediaItemIndex));
+    }
+
+    // Pod positions are positions in the one concatenated item, or in the ad's own item of a streaming break
+    private int getMediaItemIndex(long podPositionMs) {
+        if (!streamingAdBreak) {
+            return 0;
+        }
+
+        AdTimeline adTimeline = adPod.getAdTimeline();
+        int adIndex = adTimeline.getAdIndexAt(podPositionMs);
+        return adIndex >= 0 ? adIndex : adTimeline.getAdCount() - 1;
+    }
+
+    private long getMediaItemStartMs(int mediaItemIndex) {
+        return streamingAdBreak ? adPod.getAdTimeline().getStartPositionMs(mediaItemIndex) : 0;
     }
-    
-    private void showInfillionRenderer(Ad adItem) {
+
+    private final InteractiveAdRenderer interactiveAdRenderer = new InteractiveAdRenderer() {
+        @Override
+        public void startAd(Ad ad, CompletionCallback callback) {
+            showInfillionRenderer(ad, callback);
+        }
+
+        @Override
+        public void stopAd() {
+            watchdog.onInteractiveAdEnded();
+            cleanupInfillionAdManager();
+        }
+    };
+
+    private void showInfillionRenderer(Ad adItem, InteractiveAdRenderer.CompletionCallback callback) {
         if (adViewGroup == null) {
-            onInfillionAdComplete(false);
+            callback.onAdComplete(false);
             return;
         }
-        
+
         // Clean up any existing InfillionAdManager before creating a new one
         cleanupInfillionAdManager();
-        
-        InfillionAdManager.CompletionCallback callback = new InfillionAdManager.CompletionCallback() {
-            @Override
-            public void onAdComplete(boolean receivedCredit) {
-                onInfillionAdComplete(receivedCredit);
-            }
-        };
 
-        infillionAdManager = new InfillionAdManager(context, callback);
-        infillionAdManager.startAd(adViewGroup, adItem.vastConfigUrl, adItem.adType);
-        
-        // Start failsafe timer for IDVx ads (2x duration)
-        if (adItem.isInfillionAd()) {
-            startFailsafeTimer(adItem);
+        long launchStartMs = SystemClock.elapsedRealtime();
+        PreparedOverlay overlay = preparedOverlay.take(adItem);
+        boolean prepared = overlay != null;
+        if (!prepared) {
+            overlay = prepareOverlay(adItem);
         }
+        infillionAdManager = overlay.manager;
+        overlay.start(adViewGroup, callback);
+        long launchMs = SystemClock.elapsedRealtime() - launchStartMs;
+        PlaybackMetrics.getInstance().record(PlaybackMetrics.Span.OVERLAY_LAUNCH, launchMs);
+        Log.d(CLASSTAG, "Overlay launched in " + launchMs + "ms"
+            + (prepared ? ", prepared ahead of the slot"
+                : rendererPool.wasLastAcquireWarm() ? " with a warm renderer"
+                : " (renderer construction " + rendererPool.getLastConstructionMs() + "ms)"));
     }
-    
+
+    private PreparedOverlay prepareOverlay(Ad ad) {
+        PreparedOverlay overlay = new PreparedOverlay(ad);
+        overlay.manager = new InfillionAdManager(rendererPool.acquire(), overlay);
+        // The renderer has shown it is alive once the ad starts, from then on it gets the full ad duration.
+        // Removed again when the manager is destroyed, also if the overlay is dropped unused.
+        overlay.manager.addEventListener(TruexAdEvent.AD_STARTED, (event, data) -> {
+            watchdog.onInteractiveAdRendering();
+            if (adPod.isInteractiveAdShowing()) {
+                listener.onInteractiveAdShown();
+            }
+        });
+        overlay.manager.prepareAd(ad.vastConfigUrl, ad.adType);
+        return overlay;
+    }
+
     private void cleanupInfillionAdManager() {
         if (infillionAdManager != null) {
             infillionAdManager.destroy();
@@ -163,78 +805,128 @@ public class AdManager {
         }
     }
 
+    /**
+     * An interactive ad whose renderer is initialized ahead of its slot. It is shown, and its
+     * completion passed on, once the pod enters the slot.
+     */
+    private static class PreparedOverlay implements InfillionAdManager.CompletionCallback {
+        final Ad ad;
+        InfillionAdManager manager;
+        private InteractiveAdRenderer.CompletionCallback callback;
+        // The ad finished before its slot was entered, e.g. with no ads available
+        private boolean completed;
+        private boolean receivedCredit;
+
+        PreparedOverlay(Ad ad) {
+            this.ad = ad;
+        }
+
+        void start(ViewGroup viewGroup, InteractiveAdRenderer.CompletionCallback callback) {
+            this.callback = callback;
+            if (completed) {
+                callback.onAdComplete(receivedCredit);
+            } else {
+                manager.startAd(viewGroup);
+            }
+        }
+
+        @Override
+        public void onAdComplete(boolean receivedCredit) {
+            if (callback != null) {
+                callback.onAdComplete(receivedCredit);
+                return;
+            }
+            completed = true;
+            this.receivedCredit = receivedCredit;
+        }
+    }
+
     @OptIn(markerClass = UnstableApi.class)
+    private MediaSource createAdMediaSource(Ad ad, long durationMs) {
+        String creativeUrl = getCreativeUrl(ad);
+        MediaItem mediaItem = new MediaItem.Builder()
+            .setUri(creativeUrl)
+            .setCustomCacheKey(MediaCache.cacheKeyFor(creativeUrl))
+            .build();
+        // Wrapped in a concatenation of one, so the placeholder duration is known before it loads
+        return new ConcatenatingMediaSource2.Builder()
+            .setMediaSourceFactory(new DefaultMediaSourceFactory(dataSourceFactory))
+            .add(mediaItem, durationMs)
+            .build();
+    }
+
     private MediaSource createMediaSource(List<Ad> ads) {
+        // Creatives are read through the shared disk cache, so repeated placeholders
+        // and creatives from earlier breaks start from local disk
         ConcatenatingMediaSource2.Builder builder = new ConcatenatingMediaSource2.Builder()
-            .useDefaultMediaSourceFactory(context);
-        
-        for (Ad ad : ads) {
-            MediaItem mediaItem = MediaItem.fromUri(ad.adUrl);
-            // Add with placeholder duration to handle loading times
-            builder.add(mediaItem, ad.duration * 1000L);
-        }
-        
-        return builder.build();
-    }
+            .setMediaSourceFactory(new DefaultMediaSourceFactory(dataSourceFactory));
 
-    private void launchInfillionOverlayIfNecessary() {
-        Ad currentAd = getCurrentAd();
-        if (currentAd == null || !currentAd.isInfillionAd()) {
-            return;
+        AdTimeline adTimeline = adPod.getAdTimeline();
+        for (int i = 0; i < ads.size(); i++) {
+            String creativeUrl = getCreativeUrl(ads.get(i));
+            MediaItem mediaItem = new MediaItem.Builder()
+                .setUri(creativeUrl)
+                .setCustomCacheKey(MediaCache.cacheKeyFor(creativeUrl))
+                .build();
+            // Add with the probed duration, or the placeholder duration if the creative
+            // could not be probed, so the timeline is right before the items load
+            builder.add(mediaItem, adTimeline.getDurationMs(i));
         }
 
-        // Seek to just before the end of the IDVx placeholder video and pause
-        long endPosition = calculateEndPositionOfCurrentAd();
-        listener.controlPlayer(PlayerAction.SEEK_AND_PAUSE, endPosition - 100);
-        showInfillionRenderer(currentAd);
+        return builder.build();
     }
 
-    private void onInfillionAdComplete(boolean receivedCredit) {
-        // Cancel failsafe timer if running
-        cancelFailsafeTimer();
-
-        // Clean up the completed InfillionAdManager
-        cleanupInfillionAdManager();
+    private static RenditionSelector createRenditionSelector(Context context) {
+        // Renditions larger than the display would only be scaled down again
+        DisplayManager displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+        Display.Mode displayMode = displayManager.getDisplay(Display.DEFAULT_DISPLAY).getMode();
+        return new RenditionSelector(new MediaCodecDecoderSupport(),
+            displayMode.getPhysicalWidth(), displayMode.getPhysicalHeight());
+    }
 
-        if (receivedCredit) {
-            // true[X] credit earned - skip remaining ads and return to content
-            listener.onSkipToContent();
+    /**
+     * Select the rendition of each ad that has not been selected yet, based on the current
+     * bandwidth estimate of the players.
+     *
+     * @return the creative URLs of the ads
+     */
+    @OptIn(markerClass = UnstableApi.class)
+    private List<String> selectCreatives(List<Ad> ads) {
+        long bandwidthEstimate = DefaultBandwidthMeter.getSingletonInstance(context).getBitrateEstimate();
+        List<String> urls = new ArrayList<>(ads.size());
+        for (Ad ad : ads) {
+            String url = creativeUrls.get(ad);
+            if (url == null) {
+                AdRendition rendition = renditionSelector.select(ad.renditions, bandwidthEstimate);
+                url = rendition != null ? rendition.url : ad.adUrl;
+                creativeUrls.put(ad, url);
+                if (rendition != null) {
+                    Log.d(CLASSTAG, "Selected " + rendition + " for ad " + ad.adId + " at " + bandwidthEstimate / 1000 + "kbps");
+                }
+            }
+            urls.add(url);
         }
-        else {
-            // Resume playback - the player will trigger moveToNextAd()
-            // and this will finalize the transition to the next ad.
-            listener.controlPlayer(PlayerAction.PLAY, 0);
+        return urls;
+    }
+
+    // The pod is over, its ads are not played again. The selections of scheduled breaks are kept.
+    private void forgetCreatives(List<Ad> ads) {
+        for (Ad ad : ads) {
+            creativeUrls.remove(ad);
         }
     }
-    
-    private long calculateEndPositionOfCurrentAd() {
-        // Calculate position where current ad ends in concatenated timeline
-        long positionMs = 0;
-        for (int i = 0; i <= currentAdIndexInSegment; i++) {
-            if (i < ads.size()) {
-                positionMs += ads.get(i).duration * 1000L;
+
+    private String getCreativeUrl(Ad ad) {
+        String url = creativeUrls.get(ad);
+        return url != null ? url : ad.adUrl;
+    }
+
+    private void warmUpRendererIfNeeded(List<Ad> ads, int fromIndex) {
+        for (int i = fromIndex; i < ads.size(); i++) {
+            if (ads.get(i).isInfillionAd()) {
+                rendererPool.warmUp();
+                return;
             }
         }
-        
-        return positionMs;
-    }
-    
-    private void startFailsafeTimer(Ad idvxAd) {
-        // Create failsafe timer for 2x the ad duration
-        long failsafeTimeoutMs = idvxAd.duration * 2000L;
-        
-        failsafeRunnable = () -> {
-            // Force completion without credit
-            onInfillionAdComplete(false);
-        };
-        
-        failsafeHandler.postDelayed(failsafeRunnable, failsafeTimeoutMs);
-    }
-    
-    private void cancelFailsafeTimer() {
-        if (failsafeHandler != null && failsafeRunnable != null) {
-            failsafeHandler.removeCallbacks(failsafeRunnable);
-            failsafeRunnable = null;
-        }
-    }
-}
\ No newline at end of file
+    }
+}
@@ -0,0 +1,326 @@
+package com.truex.ctv.referenceapp.ads;
+
+import android.media.MediaCodecList;
+import android.media.MediaDataSource;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.OptIn;
+import androidx.media3.common.C;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+
+import com.truex.ctv.referenceapp.metrics.PlaybackMetrics;
+import com.truex.ctv.referenceapp.player.MediaCache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the container duration, video codec and resolution of ad creatives in parallel, ahead of
+ * the break, so the pod can be built with its real timeline and creatives that the device cannot
+ * decode can be left out before playback starts.
+ *
+ * Creatives are read through the data source factory of the pod, so the bytes read while probing
+ * land in the shared disk cache and the player does not download them again.
+ *
+ * Results are cached by creative URL, for the most recently used creatives. All methods and
+ * callbacks run on the main thread.
+ */
+@OptIn(markerClass = UnstableApi.class)
+public class CreativeProber {
+    private static final String CLASSTAG = CreativeProber.class.getSimpleName();
+
+    private static final int MAX_PARALLEL_PROBES = 4;
+    // A few pods worth of creatives, older ones are probed again if they come back
+    private static final int MAX_RESULTS = 64;
+
+    /**
+     * What is known about a creative after probing it.
+     */
+    public static class CreativeInfo {
+        public final long durationMs;
+        public final String videoMimeType;
+        public final int width;
+        public final int height;
+        // False when the device has no decoder for the video track, or there is no video track
+        public final boolean playable;
+
+        CreativeInfo(long durationMs, String videoMimeType, int width, int height, boolean playable) {
+            this.durationMs = durationMs;
+            this.videoMimeType = videoMimeType;
+            this.width = width;
+            this.height = height;
+            this.playable = playable;
+        }
+
+        @Override
+        public String toString() {
+            return videoMimeType + " " + width + "x" + height + ", " + durationMs + "ms" + (playable ? "" : ", unplayable");
+        }
+    }
+
+    public interface Callback {
+        /**
+         * @param results the creatives that could be probed in time, keyed by URL. Creatives that
+         *                failed to load or timed out are missing.
+         */
+        void onCreativesProbed(Map<String, CreativeInfo> results);
+    }
+
+    private static class Waiter {
+        final Set<String> remainingUrls;
+        final Callback callback;
+        Runnable timeout;
+
+        Waiter(Set<String> remainingUrls, Callback callback) {
+            this.remainingUrls = remainingUrls;
+            this.callback = callback;
+        }
+    }
+
+    private final DataSource.Factory dataSourceFactory;
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // In access order, so the least recently used result is dropped once there are too many
+    private final Map<String, CreativeInfo> results = new LinkedHashMap<String, CreativeInfo>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CreativeInfo> eldest) {
+            return size() > MAX_RESULTS;
+        }
+    };
+    private final Set<String> inFlight = new HashSet<>();
+    private final List<Waiter> waiters = new ArrayList<>();
+
+    public CreativeProber(DataSource.Factory dataSourceFactory) {
+        this.dataSourceFactory = dataSourceFactory;
+        // A bounded pool, a pod with many creatives queues its probes rather than opening
+        // a connection for every one of them at once
+        executor = new ThreadPoolExecutor(MAX_PARALLEL_PROBES, MAX_PARALLEL_PROBES, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, CLASSTAG);
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Start probing the creatives that are not probed or being probed yet.
+     */
+    public void probe(Collection<String> urls) {
+        for (String url : urls) {
+            if (url == null || results.containsKey(url) || !inFlight.add(url)) {
+                continue;
+            }
+
+            executor.execute(() -> {
+                CreativeInfo info = probeCreative(url);
+                mainHandler.post(() -> onProbeFinished(url, info));
+            });
+        }
+    }
+
+    /**
+     * Probe the creatives and call back once all of them are done, or when the timeout runs
+     * out, whichever comes first. Calls back immediately if all creatives were probed before.
+     */
+    public void whenProbed(Collection<String> urls, long timeoutMs, Callback callback) {
+        probe(urls);
+
+        Set<String> remainingUrls = new HashSet<>();
+        for (String url : urls) {
+            if (url != null && inFlight.contains(url)) {
+                remainingUrls.add(url);
+            }
+        }
+        if (remainingUrls.isEmpty()) {
+            callback.onCreativesProbed(results);
+            return;
+        }
+
+        Waiter waiter = new Waiter(remainingUrls, callback);
+        waiter.timeout = () -> {
+            Log.w(CLASSTAG, "Timed out waiting for " + waiter.remainingUrls.size() + " creative probes");
+            waiters.remove(waiter);
+            callback.onCreativesProbed(results);
+        };
+        waiters.add(waiter);
+        mainHandler.postDelayed(waiter.timeout, timeoutMs);
+    }
+
+    public CreativeInfo getCreativeInfo(String url) {
+        return results.get(url);
+    }
+
+    /**
+     * Drop the results of creatives that are not in use anymore, they are probed again if needed.
+     *
+     * @return the number of results dropped
+     */
+    public int retainResults(Collection<String> urls) {
+        int size = results.size();
+        results.keySet().retainAll(new HashSet<>(urls));
+        return size - results.size();
+    }
+
+    /**
+     * Stop waiting for probes. Running probes still finish and keep their results.
+     */
+    public void cancelWaiters() {
+        for (Waiter waiter : waiters) {
+            mainHandler.removeCallbacks(waiter.timeout);
+        }
+        waiters.clear();
+    }
+
+    private void onProbeFinished(String url, CreativeInfo info) {
+        inFlight.remove(url);
+        if (info != null) {
+            results.put(url, info);
+        }
+
+        Iterator<Waiter> iterator = waiters.iterator();
+        while (iterator.hasNext()) {
+            Waiter waiter = iterator.next();
+            waiter.remainingUrls.remove(url);
+            if (waiter.remainingUrls.isEmpty()) {
+                iterator.remove();
+                mainHandler.removeCallbacks(waiter.timeout);
+                waiter.callback.onCreativesProbed(results);
+            }
+        }
+    }
+
+    // Runs on the probe executor
+    private CreativeInfo probeCreative(String url) {
+        long startMs = SystemClock.elapsedRealtime();
+        MediaExtractor extractor = new MediaExtractor();
+        DataSourceMediaDataSource source = new DataSourceMediaDataSource(dataSourceFactory.createDataSource(), url);
+        try {
+            extractor.setDataSource(source);
+
+            long durationUs = 0;
+            MediaFormat videoFormat = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat format = extractor.getTrackFormat(i);
+                if (format.containsKey(MediaFormat.KEY_DURATION)) {
+                    durationUs = Math.max(durationUs, format.getLong(MediaFormat.KEY_DURATION));
+                }
+                String mimeType = format.getString(MediaFormat.KEY_MIME);
+                if (videoFormat == null && mimeType != null && mimeType.startsWith("video/")) {
+                    videoFormat = format;
+                }
+            }
+
+            CreativeInfo info;
+            if (videoFormat == null) {
+                info = new CreativeInfo(durationUs / 1000, null, 0, 0, false);
+            } else {
+                boolean playable = new MediaCodecList(MediaCodecList.REGULAR_CODECS).findDecoderForFormat(videoFormat) != null;
+                info = new CreativeInfo(durationUs / 1000, videoFormat.getString(MediaFormat.KEY_MIME),
+                    videoFormat.getInteger(MediaFormat.KEY_WIDTH), videoFormat.getInteger(MediaFormat.KEY_HEIGHT), playable);
+            }
+
+            long probeMs = SystemClock.elapsedRealtime() - startMs;
+            PlaybackMetrics.getInstance().record(PlaybackMetrics.Span.CREATIVE_PROBE, probeMs);
+            Log.d(CLASSTAG, "Probed " + url + " in " + probeMs + "ms: " + info);
+            return info;
+        } catch (IOException | RuntimeException e) {
+            // Leave it to the player, a creative that could not be probed may still play
+            Log.w(CLASSTAG, "Failed to probe " + url + ": " + e);
+            return null;
+        } finally {
+            extractor.release();
+            try {
+                source.close();
+            } catch (IOException e) {
+                // Nothing left to read
+            }
+        }
+    }
+
+    /**
+     * Lets MediaExtractor read a creative through a media3 data source. The extractor reads at
+     * arbitrary positions, e.g. for an MP4 index at the end of the file, so the data source is
+     * reopened whenever it asks for another position than the next one.
+     */
+    private static class DataSourceMediaDataSource extends MediaDataSource {
+        private final DataSource dataSource;
+        private final Uri uri;
+        // The key the player caches the creative under
+        private final String cacheKey;
+        private boolean opened;
+        private long readPosition;
+        private long totalSize = C.LENGTH_UNSET;
+
+        DataSourceMediaDataSource(DataSource dataSource, String url) {
+            this.dataSource = dataSource;
+            this.uri = Uri.parse(url);
+            this.cacheKey = MediaCache.cacheKeyFor(url);
+        }
+
+        @Override
+        public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+            if (size == 0) {
+                return 0;
+            }
+            if (totalSize != C.LENGTH_UNSET && position >= totalSize) {
+                return -1;
+            }
+            if (!opened || position != readPosition) {
+                open(position);
+            }
+
+            int read = dataSource.read(buffer, offset, size);
+            if (read == C.RESULT_END_OF_INPUT) {
+                return -1;
+            }
+            readPosition += read;
+            return read;
+        }
+
+        @Override
+        public long getSize() throws IOException {
+            if (!opened) {
+                open(0);
+            }
+            // C.LENGTH_UNSET is -1, which MediaExtractor takes as an unknown size
+            return totalSize;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (opened) {
+                opened = false;
+                dataSource.close();
+            }
+        }
+
+        private void open(long position) throws IOException {
+            close();
+            long length = dataSource.open(new DataSpec.Builder().setUri(uri).setKey(cacheKey).setPosition(position).build());
+            opened = true;
+            readPosition = position;
+            if (length != C.LENGTH_UNSET) {
+                totalSize = position + length;
+            }
+        }
+    }
+}
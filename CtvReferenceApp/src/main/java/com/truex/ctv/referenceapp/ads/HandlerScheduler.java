@@ -0,0 +1,17 @@
+package com.truex.ctv.referenceapp.ads;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Runs delayed tasks, such as the watchdog's deadlines, on the main looper.
+ */
+public class HandlerScheduler implements Scheduler {
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    @Override
+    public Cancellable schedule(Runnable task, long delayMs) {
+        handler.postDelayed(task, delayMs);
+        return () -> handler.removeCallbacks(task);
+    }
+}
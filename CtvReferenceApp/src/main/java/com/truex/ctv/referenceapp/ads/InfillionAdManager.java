@@ -1,6 +1,5 @@
 package com.truex.ctv.referenceapp.ads;
 
-import android.content.Context;
 import android.os.Handler;
 import android.util.Log;
 import android.view.ViewGroup;
@@ -9,7 +8,11 @@ import com.truex.adrenderer.IEventEmitter;
 import com.truex.adrenderer.TruexAdEvent;
 import com.truex.adrenderer.TruexAdOptions;
 import com.truex.adrenderer.TruexAdRenderer;
+import com.truex.ctv.referenceapp.metrics.EventTrace;
+import com.truex.ctv.referenceapp.metrics.PlaybackMetrics;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -26,6 +29,11 @@ public class InfillionAdManager {
     private static final String CLASSTAG = InfillionAdManager.class.getSimpleName();
 
     private IEventEmitter.IEventHandler adEventHandler = this::adEventHandler;
+    private IEventEmitter.IEventHandler cancelStreamHandler = this::onCancelStream;
+
+    // Listeners added by the owner, removed again in destroy()
+    private final List<TruexAdEvent> addedEvents = new ArrayList<>();
+    private final List<IEventEmitter.IEventHandler> addedHandlers = new ArrayList<>();
 
     public interface CompletionCallback {
         void onAdComplete(boolean receivedCredit);
@@ -36,6 +44,10 @@ public class InfillionAdManager {
     private TruexAdRenderer truexAdRenderer;
 
     private ViewGroup viewGroup;
+    private AdType adType;
+    // The renderer was initialized with an ad, and whether it has been shown
+    private boolean prepared;
+    private boolean started;
 
     // Default to showing the ad immediately while it is being fetched.
     // The HTML5 TAR shows a black screen with a spinner in this case, which is appropriate
@@ -43,31 +55,41 @@ public class InfillionAdManager {
     private static final boolean showAdImmediately = true;
     private static final boolean showAdAfterLoad = !showAdImmediately;
 
-    public InfillionAdManager(Context context, CompletionCallback completionCallback) {
+    /**
+     * @param truexAdRenderer - a renderer that has not shown an ad yet, e.g. from TruexAdRendererPool
+     */
+    public InfillionAdManager(TruexAdRenderer truexAdRenderer, CompletionCallback completionCallback) {
         this.completionCallback = completionCallback;
 
         didReceiveCredit = false;
 
         // Set-up the true[X] ad renderer
-        truexAdRenderer = new TruexAdRenderer(context);
+        this.truexAdRenderer = truexAdRenderer;
 
         // Set-up the event listeners
         truexAdRenderer.addEventListener(null, adEventHandler); // listen to all events.
         if (supportUserCancelStream) {
             // We use an explicit listener to allow the tar to know user cancel stream is supported.
-            truexAdRenderer.addEventListener(TruexAdEvent.USER_CANCEL_STREAM, this::onCancelStream);
+            truexAdRenderer.addEventListener(TruexAdEvent.USER_CANCEL_STREAM, cancelStreamHandler);
         }
     }
 
     /**
-     * Start displaying the Infillion engagement (true[X] or IDVx)
-     * @param viewGroup - the view group in which you would like to display the engagement
+     * Listen to an event of the renderer, until this manager is destroyed
+     */
+    public void addEventListener(TruexAdEvent event, IEventEmitter.IEventHandler handler) {
+        truexAdRenderer.addEventListener(event, handler);
+        addedEvents.add(event);
+        addedHandlers.add(handler);
+    }
+
+    /**
+     * Initialize the renderer with the ad, so it starts loading the engagement before it is shown
      * @param vastConfigUrl - the VAST config URL for the ad
      * @param adType - the type of ad (TRUEX or IDVX)
      */
-    public void startAd(ViewGroup viewGroup, String vastConfigUrl, AdType adType) {
-        Log.d(CLASSTAG, "startAd called - ViewGroup: " + viewGroup + ", URL: " + vastConfigUrl + ", Type: " + adType);
-        this.viewGroup = viewGroup;
+    public void prepareAd(String vastConfigUrl, AdType adType) {
+        this.adType = adType;
 
         TruexAdOptions options = new TruexAdOptions();
         // Only true[X] ads support user cancel stream, IDVx ads should not
@@ -75,10 +97,22 @@ public class InfillionAdManager {
         //options.userAdvertisingId = "1234"; // for testing.
         options.fallbackAdvertisingId = UUID.randomUUID().toString();
 
-        Log.d(CLASSTAG, "Calling truexAdRenderer.init()");
         truexAdRenderer.init(vastConfigUrl, options);
+        prepared = true;
+    }
+
+    /**
+     * Start displaying the engagement that was prepared with {@link #prepareAd}
+     * @param viewGroup - the view group in which you would like to display the engagement
+     */
+    public void startAd(ViewGroup viewGroup) {
+        if (EventTrace.ENABLED) {
+            EventTrace.getInstance().record(EventTrace.INTERACTIVE_AD_START, adType.ordinal());
+        }
+        this.viewGroup = viewGroup;
+        started = true;
+
         if (showAdImmediately) {
-            Log.d(CLASSTAG, "Calling truexAdRenderer.start() with ViewGroup: " + viewGroup);
             truexAdRenderer.start(viewGroup);
         } else {
             Log.d(CLASSTAG, "showAdImmediately is false, not starting renderer yet");
@@ -115,13 +149,28 @@ public class InfillionAdManager {
         Log.d(CLASSTAG, "Destroying InfillionAdManager");
         if (truexAdRenderer != null) {
             truexAdRenderer.removeEventListener(null, adEventHandler);
+            truexAdRenderer.removeEventListener(TruexAdEvent.USER_CANCEL_STREAM, cancelStreamHandler);
+            for (int i = 0; i < addedHandlers.size(); i++) {
+                truexAdRenderer.removeEventListener(addedEvents.get(i), addedHandlers.get(i));
+            }
+            addedEvents.clear();
+            addedHandlers.clear();
+
+            // An engagement prepared ahead of its slot is loading in the renderer, even though
+            // it was never shown
+            if (prepared && !started) {
+                truexAdRenderer.stop();
+            }
             truexAdRenderer = null;
         }
         completionCallback = null;
     }
 
     private void adEventHandler(TruexAdEvent event, Map<String, ?> data) {
-        Log.i(CLASSTAG, "ad event: " + event);
+        if (EventTrace.ENABLED) {
+            EventTrace.getInstance().record(EventTrace.TAR_EVENT, event.ordinal());
+        }
+        PlaybackMetrics.getInstance().onTruexAdEvent(event);
         switch (event) {
             case AD_STARTED:
                 // The ad has started.
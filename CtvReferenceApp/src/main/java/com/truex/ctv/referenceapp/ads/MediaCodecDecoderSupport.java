@@ -0,0 +1,59 @@
+package com.truex.ctv.referenceapp.ads;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Checks ad renditions against the video decoders of the device: codec, resolution and bitrate.
+ * Results are cached, since querying the codec list is slow.
+ */
+public class MediaCodecDecoderSupport implements RenditionSelector.DecoderSupport {
+    private final Map<String, Boolean> supportCache = new HashMap<>();
+    private MediaCodecInfo[] codecInfos;
+
+    @Override
+    public synchronized boolean isSupported(AdRendition rendition) {
+        String codecMimeType = rendition.getVideoCodecMimeType();
+        String key = codecMimeType + " " + rendition.width + "x" + rendition.height + " " + rendition.bitrate;
+        Boolean supported = supportCache.get(key);
+        if (supported == null) {
+            supported = hasDecoder(codecMimeType, rendition.width, rendition.height, rendition.bitrate);
+            supportCache.put(key, supported);
+        }
+        return supported;
+    }
+
+    private boolean hasDecoder(String codecMimeType, int width, int height, long bitrate) {
+        if (codecInfos == null) {
+            codecInfos = new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos();
+        }
+
+        for (MediaCodecInfo codecInfo : codecInfos) {
+            if (codecInfo.isEncoder()) {
+                continue;
+            }
+            for (String type : codecInfo.getSupportedTypes()) {
+                if (!type.equalsIgnoreCase(codecMimeType)) {
+                    continue;
+                }
+
+                MediaCodecInfo.VideoCapabilities videoCapabilities =
+                    codecInfo.getCapabilitiesForType(type).getVideoCapabilities();
+                if (videoCapabilities == null) {
+                    continue;
+                }
+                // Unknown sizes and bitrates are given the benefit of the doubt
+                boolean sizeSupported = width <= 0 || height <= 0 || videoCapabilities.isSizeSupported(width, height);
+                boolean bitrateSupported = bitrate <= 0 || bitrate > Integer.MAX_VALUE
+                    || videoCapabilities.getBitrateRange().contains((int) bitrate);
+                if (sizeSupported && bitrateSupported) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -1,9 +1,23 @@
 package com.truex.ctv.referenceapp.ads;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-public class SampleAdProvider {
+public class SampleAdProvider implements AdBreakLoader {
+    // Break ids of the sample ad schedule, matching res/raw/sample_vmap.xml
+    public static final String PREROLL_BREAK_ID = "preroll";
+    public static final String MIDROLL_BREAK_ID = "midroll-1";
+
+    @Override
+    public AdBreak loadAdBreak(String breakId) throws IOException {
+        if (PREROLL_BREAK_ID.equals(breakId)) {
+            return new AdBreak(breakId, 0, createPrerollAdBreak());
+        } else if (MIDROLL_BREAK_ID.equals(breakId)) {
+            return new AdBreak(breakId, MIDROLL_POSITION_MS, createMidrollAdBreak());
+        }
+        throw new IOException("No sample ad break with id " + breakId);
+    }
 
     // Sample preroll ad pod with mixed ad types
     public static List<Ad> createPrerollAdBreak() {
@@ -51,4 +65,43 @@ public class SampleAdProvider {
 
         return ads;
     }
+
+    // Sample mid-roll ad pod, played when content reaches MIDROLL_POSITION_MS
+    public static final long MIDROLL_POSITION_MS = 60 * 1000L;
+
+    public static List<Ad> createMidrollAdBreak() {
+        List<Ad> ads = new ArrayList<>();
+
+        // Position 1: Regular ad
+        ads.add(new Ad(
+            "GDFP",
+            "http://media.truex.com/file_assets/2019-01-30/742eb926-6ec0-48b4-b1e6-093cee334dd1.mp4",
+            null,
+            30,
+            1,
+            "pets-midroll"
+        ));
+
+        // Position 2: IDVx ad
+        ads.add(new Ad(
+            "IDVx",
+            "https://qa-media.truex.com/m/video/truexloadingplaceholder-30s.mp4",
+            "https://qa-get.truex.com/eb9f752aeab71d71dd129da48ed98206e53a96dd/vast/config?ip=108.213.126.254",
+            30,
+            2,
+            "idvx-midroll"
+        ));
+
+        // Position 3: Regular ad
+        ads.add(new Ad(
+            "GDFP",
+            "http://media.truex.com/file_assets/2019-01-30/7fe9da33-6b9e-446d-816d-e1aec51a3173.mp4",
+            null,
+            30,
+            3,
+            "airline-midroll"
+        ));
+
+        return ads;
+    }
 }
\ No newline at end of file
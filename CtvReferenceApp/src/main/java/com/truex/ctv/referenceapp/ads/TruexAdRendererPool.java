@@ -0,0 +1,112 @@
+package com.truex.ctv.referenceapp.ads;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.truex.adrenderer.TruexAdRenderer;
+import com.truex.ctv.referenceapp.metrics.PlaybackMetrics;
+
+/**
+ * Keeps a single TruexAdRenderer constructed ahead of time, so the WebView-backed engine does not
+ * have to be built on the main thread at the moment an interactive slot is reached.
+ *
+ * The warm instance is created from a main looper idle handler, i.e. in the gaps between frames
+ * while content or linear ads are playing. A renderer cannot be re-initialized once it has shown an
+ * ad, so a used instance is dropped and the pool is re-warmed for the next interactive slot.
+ * All methods must be called on the main thread.
+ */
+public class TruexAdRendererPool {
+    private static final String CLASSTAG = TruexAdRendererPool.class.getSimpleName();
+
+    private final Context context;
+    private TruexAdRenderer warmRenderer;
+    private MessageQueue.IdleHandler pendingWarmUp;
+
+    // Main-thread time spent constructing the last renderer, and whether it was handed out warm
+    private long lastConstructionMs;
+    private boolean lastAcquireWasWarm;
+
+    public TruexAdRendererPool(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Construct a renderer the next time the main thread is idle, unless one is already waiting.
+     */
+    public void warmUp() {
+        if (warmRenderer != null || pendingWarmUp != null) {
+            return;
+        }
+
+        pendingWarmUp = () -> {
+            pendingWarmUp = null;
+            if (warmRenderer == null) {
+                warmRenderer = createRenderer();
+                Log.d(CLASSTAG, "Pre-warmed renderer in " + lastConstructionMs + "ms");
+            }
+            return false;
+        };
+        Looper.myQueue().addIdleHandler(pendingWarmUp);
+    }
+
+    /**
+     * Hand out the warm renderer, or construct one now if none is ready.
+     * The caller owns the returned instance and should not give it back once it has been used.
+     */
+    public TruexAdRenderer acquire() {
+        cancelPendingWarmUp();
+
+        TruexAdRenderer renderer = warmRenderer;
+        warmRenderer = null;
+        lastAcquireWasWarm = renderer != null;
+        PlaybackMetrics.getInstance().increment(lastAcquireWasWarm
+            ? PlaybackMetrics.Counter.WARM_RENDERER
+            : PlaybackMetrics.Counter.COLD_RENDERER);
+        if (renderer == null) {
+            renderer = createRenderer();
+            Log.d(CLASSTAG, "No warm renderer available, constructed one in " + lastConstructionMs + "ms");
+        }
+        return renderer;
+    }
+
+    /**
+     * Drop the warm renderer, e.g. when the app is stopped or memory is low.
+     */
+    public void release() {
+        cancelPendingWarmUp();
+        if (warmRenderer != null) {
+            Log.d(CLASSTAG, "Releasing warm renderer");
+            warmRenderer = null;
+        }
+    }
+
+    public boolean hasWarmRenderer() {
+        return warmRenderer != null;
+    }
+
+    public long getLastConstructionMs() {
+        return lastConstructionMs;
+    }
+
+    public boolean wasLastAcquireWarm() {
+        return lastAcquireWasWarm;
+    }
+
+    private TruexAdRenderer createRenderer() {
+        long startMs = SystemClock.elapsedRealtime();
+        TruexAdRenderer renderer = new TruexAdRenderer(context);
+        lastConstructionMs = SystemClock.elapsedRealtime() - startMs;
+        PlaybackMetrics.getInstance().record(PlaybackMetrics.Span.RENDERER_CONSTRUCTION, lastConstructionMs);
+        return renderer;
+    }
+
+    private void cancelPendingWarmUp() {
+        if (pendingWarmUp != null) {
+            Looper.myQueue().removeIdleHandler(pendingWarmUp);
+            pendingWarmUp = null;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.truex.ctv.referenceapp.ads;
+
+import android.content.Context;
+
+import com.truex.ctv.referenceapp.ads.vast.VastParser;
+import com.truex.ctv.referenceapp.player.SharedHttpStack;
+
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.Response;
+
+/**
+ * Loads ad breaks from a VMAP document bundled as a raw resource, standing in for the response
+ * of an ad server. Wrapper ads in the document are followed over the shared HTTP stack.
+ *
+ * Each ad of the requested break is handed to the sink as soon as it has been parsed, or its
+ * wrapper resolved, so the first slots can play while later wrappers are still loading.
+ */
+public class VmapAdBreakLoader implements AdBreakLoader {
+    private final Context context;
+    private final int vmapResId;
+
+    public VmapAdBreakLoader(Context context, int vmapResId) {
+        this.context = context.getApplicationContext();
+        this.vmapResId = vmapResId;
+    }
+
+    @Override
+    public AdBreak loadAdBreak(String breakId) throws IOException {
+        // Without a sink the ads are only handed over with the break
+        return loadAdBreak(breakId, ad -> {
+        });
+    }
+
+    @Override
+    public AdBreak loadAdBreak(String breakId, AdSink sink) throws IOException {
+        BreakCollector collector = new BreakCollector(breakId, sink);
+        try (InputStream in = context.getResources().openRawResource(vmapResId)) {
+            VastParser parser = new VastParser(XmlPullParserFactory.newInstance(), this::openWrapper);
+            parser.parseVmap(in, collector);
+        } catch (XmlPullParserException e) {
+            throw new IOException("Invalid VMAP document", e);
+        }
+
+        if (collector.adBreak == null) {
+            throw new IOException("No ad break with id " + breakId + " in VMAP document");
+        }
+        return collector.adBreak;
+    }
+
+    private InputStream openWrapper(String vastAdTagUri) throws IOException {
+        Response response = SharedHttpStack.get(context).newCall(vastAdTagUri).execute();
+        if (!response.isSuccessful()) {
+            response.close();
+            throw new IOException("HTTP " + response.code() + " for " + vastAdTagUri);
+        }
+        // Closing the stream releases the connection back to the pool
+        return response.body().byteStream();
+    }
+
+    // Keeps the ads of the requested break and skips the others
+    private static class BreakCollector implements VastParser.Handler {
+        private final String breakId;
+        private final AdSink sink;
+        private TimeOffset timeOffset;
+        private List<Ad> ads;
+        AdBreak adBreak;
+
+        BreakCollector(String breakId, AdSink sink) {
+            this.breakId = breakId;
+            this.sink = sink;
+        }
+
+        @Override
+        public void onAdBreakStart(String id, TimeOffset offset) {
+            ads = breakId.equals(id) ? new ArrayList<>() : null;
+            timeOffset = offset;
+        }
+
+        @Override
+        public void onAd(Ad ad) {
+            if (ads != null) {
+                ads.add(ad);
+                sink.onAdDecided(ad);
+            }
+        }
+
+        @Override
+        public void onAdBreakEnd() {
+            if (ads != null) {
+                adBreak = new AdBreak(breakId, timeOffset, ads);
+                ads = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.truex.ctv.referenceapp.metrics;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.media3.common.Player;
+
+import com.truex.adrenderer.TruexAdEvent;
+import com.truex.ctv.referenceapp.BuildConfig;
+import com.truex.ctv.referenceapp.ads.AdManager;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Ring buffer of the most recent ad and playback events, for debugging in the field after
+ * logcat has rolled over. Events are recorded as timestamped codes into preallocated primitive
+ * arrays, so recording does not allocate. The trace is decoded into text, or written as a
+ * compact binary file, only when it is dumped.
+ *
+ * Call sites check {@link #ENABLED} first, so recording is compiled out of builds that disable
+ * it. Expected to be used on the main thread.
+ */
+public class EventTrace {
+    private static final String CLASSTAG = EventTrace.class.getSimpleName();
+
+    public static final boolean ENABLED = BuildConfig.EVENT_TRACE_ENABLED;
+
+    // Power of two, so the write position wraps with a mask
+    private static final int CAPACITY = 4096;
+
+    // Event types. The value and extra of each event depend on its type.
+    public static final int TAR_EVENT = 1;           // value: TruexAdEvent ordinal
+    public static final int CONTENT_PLAYER_STATE = 2; // value: Player.STATE_*
+    public static final int AD_PLAYER_STATE = 3;      // value: Player.STATE_*
+    public static final int CONTENT_PLAYING = 4;      // value: 1 if playing
+    public static final int AD_PLAYING = 5;           // value: 1 if playing
+    public static final int PLAYER_ACTION = 6;        // value: media item index << 8 | PlayerAction ordinal, extra: seek position
+    public static final int AD_STARTED = 7;           // value: index of the ad in the pod
+    public static final int AD_BREAK_ENDED = 8;       // value: 1 if ended on credit
+    public static final int INTERACTIVE_AD_START = 9; // value: AdType ordinal
+
+    private static final String[] TYPE_NAMES = {
+        "?", "TAR_EVENT", "CONTENT_PLAYER_STATE", "AD_PLAYER_STATE", "CONTENT_PLAYING", "AD_PLAYING",
+        "PLAYER_ACTION", "AD_STARTED", "AD_BREAK_ENDED", "INTERACTIVE_AD_START"
+    };
+
+    // File format version, written in the header of binary dumps
+    private static final int BINARY_VERSION = 1;
+
+    private static EventTrace instance;
+
+    private final long[] timesMs = new long[CAPACITY];
+    private final byte[] types = new byte[CAPACITY];
+    private final int[] values = new int[CAPACITY];
+    private final long[] extras = new long[CAPACITY];
+
+    // Total number of events recorded, the next one goes to recordCount & (CAPACITY - 1)
+    private long recordCount;
+
+    public static EventTrace getInstance() {
+        if (instance == null) {
+            instance = new EventTrace();
+        }
+        return instance;
+    }
+
+    private EventTrace() {
+    }
+
+    private EventTrace(EventTrace trace) {
+        System.arraycopy(trace.timesMs, 0, timesMs, 0, CAPACITY);
+        System.arraycopy(trace.types, 0, types, 0, CAPACITY);
+        System.arraycopy(trace.values, 0, values, 0, CAPACITY);
+        System.arraycopy(trace.extras, 0, extras, 0, CAPACITY);
+        recordCount = trace.recordCount;
+    }
+
+    /**
+     * A copy of the events recorded so far, which can be dumped on another thread while
+     * recording goes on.
+     */
+    public EventTrace snapshot() {
+        return new EventTrace(this);
+    }
+
+    public void record(int type, int value) {
+        record(type, value, 0);
+    }
+
+    public void record(int type, int value, long extra) {
+        int index = (int) (recordCount & (CAPACITY - 1));
+        timesMs[index] = SystemClock.elapsedRealtime();
+        types[index] = (byte) type;
+        values[index] = value;
+        extras[index] = extra;
+        recordCount++;
+    }
+
+    /**
+     * Records the playback state changes of a player.
+     */
+    public Player.Listener createPlayerListener(boolean isAdPlayer) {
+        int stateType = isAdPlayer ? AD_PLAYER_STATE : CONTENT_PLAYER_STATE;
+        int playingType = isAdPlayer ? AD_PLAYING : CONTENT_PLAYING;
+        return new Player.Listener() {
+            @Override
+            public void onPlaybackStateChanged(int playbackState) {
+                record(stateType, playbackState);
+            }
+
+            @Override
+            public void onIsPlayingChanged(boolean isPlaying) {
+                record(playingType, isPlaying ? 1 : 0);
+            }
+        };
+    }
+
+    public int size() {
+        return (int) Math.min(recordCount, CAPACITY);
+    }
+
+    public void dumpToLogcat() {
+        StringBuilder line = new StringBuilder();
+        int size = size();
+        for (int i = 0; i < size; i++) {
+            line.setLength(0);
+            appendEvent(line, indexOf(i));
+            Log.i(CLASSTAG, line.toString());
+        }
+    }
+
+    /**
+     * Write the trace as: version, event count, then for each event the time, type,
+     * value and extra, oldest first.
+     */
+    public void dumpToFile(File file) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            int size = size();
+            out.writeByte(BINARY_VERSION);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                int index = indexOf(i);
+                out.writeLong(timesMs[index]);
+                out.writeByte(types[index]);
+                out.writeInt(values[index]);
+                out.writeLong(extras[index]);
+            }
+            Log.i(CLASSTAG, size + " events written to " + file);
+        } catch (IOException e) {
+            Log.w(CLASSTAG, "Failed to write event trace: " + e);
+        }
+    }
+
+    // Index in the arrays of the i-th oldest event still in the buffer
+    private int indexOf(int i) {
+        long first = recordCount - size();
+        return (int) ((first + i) & (CAPACITY - 1));
+    }
+
+    private void appendEvent(StringBuilder out, int index) {
+        int type = types[index];
+        int value = values[index];
+        out.append(timesMs[index]).append(' ').append(type < TYPE_NAMES.length ? TYPE_NAMES[type] : "?").append(' ');
+        switch (type) {
+            case TAR_EVENT:
+                out.append(TruexAdEvent.values()[value]);
+                break;
+            case PLAYER_ACTION:
+                out.append(AdManager.PlayerAction.values()[value & 0xff]).append(" item ").append(value >>> 8)
+                    .append(' ').append(extras[index]).append("ms");
+                break;
+            case CONTENT_PLAYER_STATE:
+            case AD_PLAYER_STATE:
+                out.append(stateName(value));
+                break;
+            default:
+                out.append(value);
+                break;
+        }
+    }
+
+    private static String stateName(int playbackState) {
+        switch (playbackState) {
+            case Player.STATE_IDLE:
+                return "IDLE";
+            case Player.STATE_BUFFERING:
+                return "BUFFERING";
+            case Player.STATE_READY:
+                return "READY";
+            case Player.STATE_ENDED:
+                return "ENDED";
+            default:
+                return String.valueOf(playbackState);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.truex.ctv.referenceapp.metrics;
+
+/**
+ * A fixed-size histogram of millisecond latencies with power-of-two buckets.
+ *
+ * Bucket 0 holds 0ms, bucket i holds [2^(i-1), 2^i) ms, and the last bucket holds everything
+ * above. Recording is a couple of array writes, so it is cheap enough for the playback paths.
+ */
+public class LatencyHistogram {
+    private static final int BUCKET_COUNT = 24;
+
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private long count;
+    private long sumMs;
+    private long minMs = Long.MAX_VALUE;
+    private long maxMs;
+
+    public void record(long latencyMs) {
+        if (latencyMs < 0) {
+            latencyMs = 0;
+        }
+
+        int bucket = Math.min(64 - Long.numberOfLeadingZeros(latencyMs), BUCKET_COUNT - 1);
+        buckets[bucket]++;
+        count++;
+        sumMs += latencyMs;
+        minMs = Math.min(minMs, latencyMs);
+        maxMs = Math.max(maxMs, latencyMs);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMaxMs() {
+        return maxMs;
+    }
+
+    public long getMeanMs() {
+        return count == 0 ? 0 : sumMs / count;
+    }
+
+    /**
+     * @return the upper bound of the bucket holding the given percentile, capped at the max
+     */
+    public long getPercentileMs(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (seen >= target) {
+                long upperBound = i == 0 ? 0 : (1L << i) - 1;
+                return Math.min(upperBound, maxMs);
+            }
+        }
+        return maxMs;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = 0;
+        }
+        count = 0;
+        sumMs = 0;
+        minMs = Long.MAX_VALUE;
+        maxMs = 0;
+    }
+
+    public void appendTo(StringBuilder out) {
+        out.append("count=").append(count);
+        if (count == 0) {
+            return;
+        }
+        out.append(" min=").append(minMs)
+            .append(" mean=").append(getMeanMs())
+            .append(" p50=").append(getPercentileMs(50))
+            .append(" p90=").append(getPercentileMs(90))
+            .append(" p99=").append(getPercentileMs(99))
+            .append(" max=").append(maxMs)
+            .append(" (ms)");
+    }
+}
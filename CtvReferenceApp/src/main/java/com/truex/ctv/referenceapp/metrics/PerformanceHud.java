@@ -0,0 +1,194 @@
+package com.truex.ctv.referenceapp.metrics;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.OptIn;
+import androidx.media3.common.Format;
+import androidx.media3.common.Player;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.exoplayer.DecoderReuseEvaluation;
+import androidx.media3.exoplayer.analytics.AnalyticsListener;
+
+import com.truex.ctv.referenceapp.player.DisplayMode;
+
+/**
+ * On-screen overlay with the live playback numbers, so slow starts and stutter can be
+ * diagnosed on a TV without adb.
+ *
+ * The numbers are collected from the players' analytics callbacks and the overlay is refreshed
+ * every {@link #REFRESH_INTERVAL_MS} while it is shown. A refresh formats into a reused buffer,
+ * so it does not allocate. Expected to be used on the main thread.
+ */
+public class PerformanceHud {
+    public interface Source {
+        DisplayMode getDisplayMode();
+
+        int getCurrentAdIndex();
+
+        /**
+         * @return the player that is on screen, or null if there is none
+         */
+        Player getActivePlayer();
+    }
+
+    private static final long REFRESH_INTERVAL_MS = 500;
+
+    // What the analytics callbacks reported for one player
+    private static class PlayerStats {
+        String videoDecoderName = "-";
+        String audioDecoderName = "-";
+        int videoBitrate = Format.NO_VALUE;
+        long droppedFrames;
+    }
+
+    private final TextView view;
+    private final Source source;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final PlaybackMetrics metrics = PlaybackMetrics.getInstance();
+
+    private PlayerStats contentStats = new PlayerStats();
+    private PlayerStats adStats = new PlayerStats();
+    private long bandwidthEstimate;
+
+    private final StringBuilder text = new StringBuilder(512);
+    private char[] chars = new char[512];
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            update();
+            handler.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+
+    public PerformanceHud(TextView view, Source source) {
+        this.view = view;
+        this.source = source;
+    }
+
+    /**
+     * Listener for one of the players. The numbers of the player start over with every call,
+     * as the players are rebuilt when the app comes back.
+     */
+    @OptIn(markerClass = UnstableApi.class)
+    public AnalyticsListener createAnalyticsListener(boolean isAdPlayer) {
+        PlayerStats stats = new PlayerStats();
+        if (isAdPlayer) {
+            adStats = stats;
+        } else {
+            contentStats = stats;
+        }
+
+        return new AnalyticsListener() {
+            @Override
+            public void onBandwidthEstimate(@NonNull EventTime eventTime, int totalLoadTimeMs, long totalBytesLoaded, long bitrateEstimate) {
+                bandwidthEstimate = bitrateEstimate;
+            }
+
+            @Override
+            public void onVideoInputFormatChanged(@NonNull EventTime eventTime, @NonNull Format format, DecoderReuseEvaluation decoderReuseEvaluation) {
+                stats.videoBitrate = format.bitrate;
+            }
+
+            @Override
+            public void onDroppedVideoFrames(@NonNull EventTime eventTime, int droppedFrames, long elapsedMs) {
+                stats.droppedFrames += droppedFrames;
+            }
+
+            @Override
+            public void onVideoDecoderInitialized(@NonNull EventTime eventTime, @NonNull String decoderName, long initializedTimestampMs, long initializationDurationMs) {
+                stats.videoDecoderName = decoderName;
+            }
+
+            @Override
+            public void onAudioDecoderInitialized(@NonNull EventTime eventTime, @NonNull String decoderName, long initializedTimestampMs, long initializationDurationMs) {
+                stats.audioDecoderName = decoderName;
+            }
+        };
+    }
+
+    public boolean isShown() {
+        return view.getVisibility() == View.VISIBLE;
+    }
+
+    public void toggle() {
+        if (isShown()) {
+            hide();
+        } else {
+            show();
+        }
+    }
+
+    public void show() {
+        // Over the interactive ad overlay too, which is added to the same view group
+        view.bringToFront();
+        view.setVisibility(View.VISIBLE);
+        handler.removeCallbacks(refresh);
+        handler.post(refresh);
+    }
+
+    public void hide() {
+        handler.removeCallbacks(refresh);
+        view.setVisibility(View.GONE);
+    }
+
+    /**
+     * Stop refreshing while the app is in the background, the overlay keeps its visibility.
+     */
+    public void pause() {
+        handler.removeCallbacks(refresh);
+    }
+
+    public void resume() {
+        if (isShown()) {
+            handler.removeCallbacks(refresh);
+            handler.post(refresh);
+        }
+    }
+
+    private void update() {
+        DisplayMode displayMode = source.getDisplayMode();
+        Player player = source.getActivePlayer();
+        PlayerStats stats = displayMode == DisplayMode.CONTENT_STREAM ? contentStats : adStats;
+
+        text.setLength(0);
+        text.append("mode ").append(displayMode.name());
+        if (displayMode != DisplayMode.CONTENT_STREAM) {
+            text.append("  ad ").append(source.getCurrentAdIndex());
+        }
+        text.append("\nbuffered ");
+        if (player != null) {
+            text.append(player.getTotalBufferedDuration()).append("ms");
+        } else {
+            text.append('-');
+        }
+        text.append("  bandwidth ").append(bandwidthEstimate / 1000).append("kbps");
+        text.append("\nvideo ");
+        if (stats.videoBitrate != Format.NO_VALUE) {
+            text.append(stats.videoBitrate / 1000).append("kbps");
+        } else {
+            text.append('-');
+        }
+        text.append("  dropped frames ").append(stats.droppedFrames);
+        text.append("\ndecoders ").append(stats.videoDecoderName).append(", ").append(stats.audioDecoderName);
+        text.append("\nlast transition ");
+        PlaybackMetrics.Span lastSpan = metrics.getLastSpan();
+        if (lastSpan != null) {
+            text.append(lastSpan.name()).append(' ').append(metrics.getLastSpanMs()).append("ms");
+        } else {
+            text.append('-');
+        }
+
+        // The char array overload of setText reuses the view's wrapper around the array
+        int length = text.length();
+        if (chars.length < length) {
+            chars = new char[length * 2];
+        }
+        text.getChars(0, length, chars, 0);
+        view.setText(chars, 0, length);
+    }
+}
@@ -0,0 +1,380 @@
+package com.truex.ctv.referenceapp.metrics;
+
+import android.os.Debug;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.OptIn;
+import androidx.media3.common.Player;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.exoplayer.analytics.AnalyticsListener;
+import androidx.media3.exoplayer.source.LoadEventInfo;
+import androidx.media3.exoplayer.source.MediaLoadData;
+import androidx.media3.exoplayer.source.MediaSource;
+
+import com.truex.adrenderer.TruexAdEvent;
+import com.truex.ctv.referenceapp.ads.AdManager;
+import com.truex.ctv.referenceapp.ads.PlaybackWatchdog;
+import com.truex.ctv.referenceapp.player.BufferProfile;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Collects playback and ad transition latencies into histograms, plus a few counters.
+ *
+ * Spans are started and stopped from the player analytics callbacks, the AdBreakListener
+ * callbacks and the true[X] ad renderer events. The collected numbers can be dumped to logcat or
+ * a file on demand. There is one collector per process, accessed via {@link #getInstance()}.
+ */
+public class PlaybackMetrics {
+    private static final String CLASSTAG = PlaybackMetrics.class.getSimpleName();
+
+    public enum Span {
+        // Cold start phases: from the process start to onCreate, onCreate on the main thread,
+        // the setup run in the background meanwhile, and the setup deferred until the first
+        // content frame, see StartupPipeline
+        STARTUP_PROCESS_TO_ON_CREATE,
+        STARTUP_MAIN_THREAD,
+        STARTUP_BACKGROUND_SETUP,
+        STARTUP_DEFERRED_SETUP,
+        COLD_START_TO_FIRST_CONTENT_FRAME,
+        COLD_START_TO_FIRST_AD_FRAME,
+        AD_BREAK_START_TO_FIRST_AD_FRAME,
+        SLOT_BOUNDARY_TO_SEEK_AND_PAUSE,
+        SEEK_AND_PAUSE_TO_AD_STARTED,
+        AD_COMPLETED_TO_PLAY,
+        AD_BREAK_COMPLETE_TO_CONTENT,
+        RENDERER_CONSTRUCTION,
+        OVERLAY_LAUNCH,
+        CREATIVE_PROBE,
+        POD_PREPARATION,
+        STALL_BEFORE_INTERVENTION,
+        RESUME_TO_FIRST_FRAME,
+        // From requesting the preroll to its first frame, by how the pod is assembled
+        PREROLL_REQUEST_TO_FIRST_AD_FRAME_ALL_OR_NOTHING,
+        PREROLL_REQUEST_TO_FIRST_AD_FRAME_INCREMENTAL,
+        // From the boundary of an interactive slot to its overlay starting, by whether the slot
+        // was entered from the discontinuity or from a player message at the boundary, with its
+        // renderer prepared ahead
+        SLOT_BOUNDARY_TO_OVERLAY_REACTIVE,
+        SLOT_BOUNDARY_TO_OVERLAY_SCHEDULED
+    }
+
+    public enum Counter {
+        WARM_RENDERER,
+        COLD_RENDERER,
+        UNPLAYABLE_CREATIVE,
+        WATCHDOG_SKIP_AD,
+        WATCHDOG_ABANDON_AD_BREAK,
+        WATCHDOG_RETRY_CONTENT,
+        MEMORY_PRESSURE_RELEASE,
+        LATE_AD_SLOT_DROPPED
+    }
+
+    private static final Span[] SPANS = Span.values();
+    private static final Counter[] COUNTERS = Counter.values();
+
+    private static PlaybackMetrics instance;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[SPANS.length];
+    private final long[] spanStartMs = new long[SPANS.length];
+    private final long[] counters = new long[COUNTERS.length];
+
+    // Buffer profiles the players run with, so runs with different profiles can be compared
+    private BufferProfile contentBufferProfile;
+    private BufferProfile adBufferProfile;
+    private long peakJavaHeapBytes;
+    private long peakNativeHeapBytes;
+
+    // Whether the resume in progress ends on an ad frame rather than a content frame
+    private boolean resumingIntoAdBreak;
+
+    // The most recent transition, for the performance HUD
+    private Span lastSpan;
+    private long lastSpanMs;
+
+    public static synchronized PlaybackMetrics getInstance() {
+        if (instance == null) {
+            instance = new PlaybackMetrics();
+        }
+        return instance;
+    }
+
+    private PlaybackMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public synchronized void begin(Span span) {
+        spanStartMs[span.ordinal()] = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Record the time since {@link #begin(Span)}, if the span was started.
+     */
+    public synchronized void end(Span span) {
+        long startMs = spanStartMs[span.ordinal()];
+        if (startMs == 0) {
+            return;
+        }
+        spanStartMs[span.ordinal()] = 0;
+        lastSpan = span;
+        lastSpanMs = Math.max(SystemClock.elapsedRealtime() - startMs, 0);
+        histograms[span.ordinal()].record(lastSpanMs);
+    }
+
+    public synchronized void record(Span span, long latencyMs) {
+        histograms[span.ordinal()].record(latencyMs);
+    }
+
+    public synchronized void increment(Counter counter) {
+        counters[counter.ordinal()]++;
+    }
+
+    public synchronized LatencyHistogram getHistogram(Span span) {
+        return histograms[span.ordinal()];
+    }
+
+    public synchronized long getCount(Counter counter) {
+        return counters[counter.ordinal()];
+    }
+
+    /**
+     * @return the span that was ended last by {@link #end(Span)}, or null if none was
+     */
+    public synchronized Span getLastSpan() {
+        return lastSpan;
+    }
+
+    public synchronized long getLastSpanMs() {
+        return lastSpanMs;
+    }
+
+    /**
+     * Record the time since the process started, the first time this is called for the span.
+     */
+    public synchronized void recordSinceProcessStart(Span span) {
+        LatencyHistogram histogram = histograms[span.ordinal()];
+        if (histogram.getCount() == 0) {
+            histogram.record(SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime());
+        }
+    }
+
+    /**
+     * Start timing a return to the app, until the first frame of the player that was
+     * on screen when the app was stopped.
+     */
+    public synchronized void beginResume(boolean intoAdBreak) {
+        resumingIntoAdBreak = intoAdBreak;
+        begin(Span.RESUME_TO_FIRST_FRAME);
+    }
+
+    private synchronized void endResume(boolean adFrame) {
+        if (resumingIntoAdBreak == adFrame) {
+            end(Span.RESUME_TO_FIRST_FRAME);
+        }
+    }
+
+    public synchronized void setBufferProfiles(BufferProfile contentProfile, BufferProfile adProfile) {
+        contentBufferProfile = contentProfile;
+        adBufferProfile = adProfile;
+    }
+
+    /**
+     * Track the peak memory use. Player buffers live on the Java heap, decoders and the
+     * ad renderer's WebView mostly on the native heap.
+     */
+    public synchronized void sampleMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        peakJavaHeapBytes = Math.max(peakJavaHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+        peakNativeHeapBytes = Math.max(peakNativeHeapBytes, Debug.getNativeHeapAllocatedSize());
+    }
+
+    /**
+     * Listener for the content player.
+     */
+    @OptIn(markerClass = UnstableApi.class)
+    public AnalyticsListener createContentAnalyticsListener() {
+        return new AnalyticsListener() {
+            @Override
+            public void onRenderedFirstFrame(@NonNull EventTime eventTime, @NonNull Object output, long renderTimeMs) {
+                recordSinceProcessStart(Span.COLD_START_TO_FIRST_CONTENT_FRAME);
+                endResume(false);
+            }
+
+            @Override
+            public void onIsPlayingChanged(@NonNull EventTime eventTime, boolean isPlaying) {
+                if (isPlaying) {
+                    end(Span.AD_BREAK_COMPLETE_TO_CONTENT);
+                }
+            }
+
+            @Override
+            public void onLoadCompleted(@NonNull EventTime eventTime, @NonNull LoadEventInfo loadEventInfo, @NonNull MediaLoadData mediaLoadData) {
+                sampleMemory();
+            }
+        };
+    }
+
+    /**
+     * Listener for the ad pod player.
+     */
+    @OptIn(markerClass = UnstableApi.class)
+    public AnalyticsListener createAdAnalyticsListener() {
+        return new AnalyticsListener() {
+            @Override
+            public void onRenderedFirstFrame(@NonNull EventTime eventTime, @NonNull Object output, long renderTimeMs) {
+                recordSinceProcessStart(Span.COLD_START_TO_FIRST_AD_FRAME);
+                end(Span.AD_BREAK_START_TO_FIRST_AD_FRAME);
+                end(Span.PREROLL_REQUEST_TO_FIRST_AD_FRAME_ALL_OR_NOTHING);
+                end(Span.PREROLL_REQUEST_TO_FIRST_AD_FRAME_INCREMENTAL);
+                endResume(true);
+            }
+
+            @Override
+            public void onIsPlayingChanged(@NonNull EventTime eventTime, boolean isPlaying) {
+                if (isPlaying) {
+                    end(Span.AD_COMPLETED_TO_PLAY);
+                }
+            }
+
+            @Override
+            public void onLoadCompleted(@NonNull EventTime eventTime, @NonNull LoadEventInfo loadEventInfo, @NonNull MediaLoadData mediaLoadData) {
+                sampleMemory();
+            }
+
+            @Override
+            public void onPlaybackStateChanged(@NonNull EventTime eventTime, int state) {
+                // The pod is ready again once the seek into the placeholder has been processed
+                if (state == Player.STATE_READY) {
+                    end(Span.SLOT_BOUNDARY_TO_SEEK_AND_PAUSE);
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps the listener given to the AdManager, so that ad break callbacks start and stop spans.
+     */
+    public AdManager.AdBreakListener wrap(AdManager.AdBreakListener listener) {
+        return new AdManager.AdBreakListener() {
+            @Override
+            public void playMediaSource(MediaSource mediaSource) {
+                begin(Span.AD_BREAK_START_TO_FIRST_AD_FRAME);
+                listener.playMediaSource(mediaSource);
+            }
+
+            @Override
+            public void appendMediaSource(MediaSource mediaSource) {
+                listener.appendMediaSource(mediaSource);
+            }
+
+            @Override
+            public void controlPlayer(AdManager.PlayerAction action, int mediaItemIndex, long seekPositionMs) {
+                if (action == AdManager.PlayerAction.SEEK_AND_PAUSE) {
+                    begin(Span.SEEK_AND_PAUSE_TO_AD_STARTED);
+                }
+                listener.controlPlayer(action, mediaItemIndex, seekPositionMs);
+            }
+
+            @Override
+            public void scheduleAdBoundary(int adIndex, int mediaItemIndex, long positionMs) {
+                listener.scheduleAdBoundary(adIndex, mediaItemIndex, positionMs);
+            }
+
+            @Override
+            public void cancelAdBoundaries() {
+                listener.cancelAdBoundaries();
+            }
+
+            @Override
+            public void onInteractiveAdShown() {
+                listener.onInteractiveAdShown();
+            }
+
+            @Override
+            public void onAdBreakComplete() {
+                begin(Span.AD_BREAK_COMPLETE_TO_CONTENT);
+                listener.onAdBreakComplete();
+            }
+
+            @Override
+            public void onSkipToContent() {
+                begin(Span.AD_BREAK_COMPLETE_TO_CONTENT);
+                listener.onSkipToContent();
+            }
+        };
+    }
+
+    public synchronized void recordIntervention(PlaybackWatchdog.Intervention intervention, long stalledMs) {
+        record(Span.STALL_BEFORE_INTERVENTION, stalledMs);
+        switch (intervention) {
+            case SKIP_AD:
+                increment(Counter.WATCHDOG_SKIP_AD);
+                break;
+            case ABANDON_AD_BREAK:
+                increment(Counter.WATCHDOG_ABANDON_AD_BREAK);
+                break;
+            case RETRY_CONTENT:
+                increment(Counter.WATCHDOG_RETRY_CONTENT);
+                break;
+        }
+    }
+
+    public void onTruexAdEvent(TruexAdEvent event) {
+        switch (event) {
+            case AD_STARTED:
+                end(Span.SEEK_AND_PAUSE_TO_AD_STARTED);
+                end(Span.SLOT_BOUNDARY_TO_OVERLAY_REACTIVE);
+                end(Span.SLOT_BOUNDARY_TO_OVERLAY_SCHEDULED);
+                break;
+
+            case AD_ERROR:
+            case AD_COMPLETED:
+            case NO_ADS_AVAILABLE:
+                begin(Span.AD_COMPLETED_TO_PLAY);
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    public synchronized String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append("Playback metrics at ").append(SystemClock.elapsedRealtime()).append("ms uptime\n");
+        out.append("Buffer profiles: content ").append(contentBufferProfile).append(", ads ").append(adBufferProfile)
+            .append(", peak Java heap ").append(peakJavaHeapBytes / (1024 * 1024)).append("MB")
+            .append(", peak native heap ").append(peakNativeHeapBytes / (1024 * 1024)).append("MB\n");
+        for (Span span : SPANS) {
+            out.append(span.name()).append(": ");
+            histograms[span.ordinal()].appendTo(out);
+            out.append('\n');
+        }
+        for (Counter counter : COUNTERS) {
+            out.append(counter.name()).append(": ").append(counters[counter.ordinal()]).append('\n');
+        }
+        return out.toString();
+    }
+
+    public void dumpToLogcat() {
+        for (String line : dump().split("\n")) {
+            Log.i(CLASSTAG, line);
+        }
+    }
+
+    public void dumpToFile(File file) {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(dump());
+            Log.i(CLASSTAG, "Metrics written to " + file);
+        } catch (IOException e) {
+            Log.w(CLASSTAG, "Failed to write metrics: " + e);
+        }
+    }
+}
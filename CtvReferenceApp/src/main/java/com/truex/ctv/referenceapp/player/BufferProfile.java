@@ -0,0 +1,92 @@
+package com.truex.ctv.referenceapp.player;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import androidx.annotation.OptIn;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.exoplayer.DefaultLoadControl;
+import androidx.media3.exoplayer.LoadControl;
+
+import java.util.Locale;
+
+/**
+ * Named buffering configurations for the players. ExoPlayer's defaults buffer up to 50 seconds,
+ * which is more than a 1 GB streaming stick can spare while the WebView based ad renderer is
+ * running as well.
+ *
+ * The profiles are picked from the memory class of the device, and can be overridden when
+ * launching the app, e.g. {@code adb shell am start -n <activity> --es content_buffer_profile LOW_MEMORY}.
+ */
+public enum BufferProfile {
+    // Starts as soon as possible on a small buffer, for ads that only run for seconds
+    FAST_START(15_000, 30_000, 1_000, 2_500, 0, 16 * 1024 * 1024),
+    BALANCED(30_000, 50_000, 2_500, 5_000, 10_000, 32 * 1024 * 1024),
+    LOW_MEMORY(10_000, 20_000, 1_500, 3_000, 0, 8 * 1024 * 1024);
+
+    private static final String CLASSTAG = BufferProfile.class.getSimpleName();
+
+    public static final String EXTRA_CONTENT_PROFILE = "content_buffer_profile";
+    public static final String EXTRA_AD_PROFILE = "ad_buffer_profile";
+
+    // Devices with at most this much heap per app are treated as low-end
+    private static final int LOW_END_MEMORY_CLASS_MB = 192;
+
+    public final int minBufferMs;
+    public final int maxBufferMs;
+    public final int bufferForPlaybackMs;
+    public final int bufferForPlaybackAfterRebufferMs;
+    public final int backBufferMs;
+    public final int targetBufferBytes;
+
+    BufferProfile(int minBufferMs, int maxBufferMs, int bufferForPlaybackMs, int bufferForPlaybackAfterRebufferMs,
+                  int backBufferMs, int targetBufferBytes) {
+        this.minBufferMs = minBufferMs;
+        this.maxBufferMs = maxBufferMs;
+        this.bufferForPlaybackMs = bufferForPlaybackMs;
+        this.bufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+        this.backBufferMs = backBufferMs;
+        this.targetBufferBytes = targetBufferBytes;
+    }
+
+    @OptIn(markerClass = UnstableApi.class)
+    public LoadControl createLoadControl() {
+        return new DefaultLoadControl.Builder()
+            .setBufferDurationsMs(minBufferMs, maxBufferMs, bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs)
+            .setBackBuffer(backBufferMs, false)
+            .setTargetBufferBytes(targetBufferBytes)
+            // Stop buffering at the byte cap even if the duration targets have not been reached
+            .setPrioritizeTimeOverSizeThresholds(false)
+            .build();
+    }
+
+    public static BufferProfile forContent(Context context, Intent intent) {
+        BufferProfile profile = isLowEndDevice(context) ? LOW_MEMORY : BALANCED;
+        return fromIntent(intent, EXTRA_CONTENT_PROFILE, profile);
+    }
+
+    public static BufferProfile forAds(Context context, Intent intent) {
+        BufferProfile profile = isLowEndDevice(context) ? LOW_MEMORY : FAST_START;
+        return fromIntent(intent, EXTRA_AD_PROFILE, profile);
+    }
+
+    private static boolean isLowEndDevice(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        return activityManager.isLowRamDevice() || activityManager.getMemoryClass() <= LOW_END_MEMORY_CLASS_MB;
+    }
+
+    private static BufferProfile fromIntent(Intent intent, String extra, BufferProfile defaultProfile) {
+        String name = intent != null ? intent.getStringExtra(extra) : null;
+        if (name == null) {
+            return defaultProfile;
+        }
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            Log.w(CLASSTAG, "Unknown buffer profile " + name + ", using " + defaultProfile);
+            return defaultProfile;
+        }
+    }
+}
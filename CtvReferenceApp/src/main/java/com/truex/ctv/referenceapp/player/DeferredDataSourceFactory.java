@@ -0,0 +1,43 @@
+package com.truex.ctv.referenceapp.player;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.OptIn;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.DataSource;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A data source factory that can be handed to the players before the real one is built, which
+ * involves disk and package manager access that should stay off the main thread.
+ *
+ * Data sources are only created on the players' loading threads, which wait for the real factory
+ * if they get there first.
+ */
+@OptIn(markerClass = UnstableApi.class)
+public class DeferredDataSourceFactory implements DataSource.Factory {
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private volatile DataSource.Factory factory;
+
+    public void set(DataSource.Factory factory) {
+        this.factory = factory;
+        ready.countDown();
+    }
+
+    @NonNull
+    @Override
+    public DataSource createDataSource() {
+        boolean interrupted = false;
+        while (factory == null) {
+            try {
+                ready.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return factory.createDataSource();
+    }
+}
@@ -0,0 +1,220 @@
+package com.truex.ctv.referenceapp.player;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.OptIn;
+import androidx.media3.common.C;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.database.StandaloneDatabaseProvider;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.TransferListener;
+import androidx.media3.datasource.cache.Cache;
+import androidx.media3.datasource.cache.CacheDataSource;
+import androidx.media3.datasource.cache.CacheEvictor;
+import androidx.media3.datasource.cache.CacheKeyFactory;
+import androidx.media3.datasource.cache.CacheSpan;
+import androidx.media3.datasource.cache.LeastRecentlyUsedCacheEvictor;
+import androidx.media3.datasource.cache.SimpleCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide on-disk cache shared by the content stream and the ad pod creatives.
+ *
+ * Media items are keyed by their URL (see {@link #cacheKeyFor(String)}), so a placeholder video
+ * that is used by several interactive slots, or a creative that repeats across ad breaks, is only
+ * downloaded once and later breaks start from local disk. The cache is bounded by
+ * {@link #MAX_CACHE_BYTES} and evicts the least recently used spans first.
+ */
+@OptIn(markerClass = UnstableApi.class)
+public class MediaCache {
+    private static final String CLASSTAG = MediaCache.class.getSimpleName();
+
+    private static final String CACHE_DIRECTORY = "media";
+    private static final long MAX_CACHE_BYTES = 256L * 1024 * 1024;
+
+    private static MediaCache instance;
+
+    private final SimpleCache cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong bytesReadFromCache = new AtomicLong();
+
+    /**
+     * SimpleCache only allows a single instance per directory, so the cache is shared by every
+     * activity instance in the process.
+     */
+    public static synchronized MediaCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new MediaCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MediaCache(Context context) {
+        File cacheDir = new File(context.getCacheDir(), CACHE_DIRECTORY);
+        CacheEvictor evictor = new CountingEvictor(new LeastRecentlyUsedCacheEvictor(MAX_CACHE_BYTES));
+        cache = new SimpleCache(cacheDir, evictor, new StandaloneDatabaseProvider(context));
+    }
+
+    /**
+     * The key under which a media URL is stored. Use this as the custom cache key of a MediaItem.
+     */
+    public static String cacheKeyFor(String url) {
+        return url;
+    }
+
+    /**
+     * Wraps the given upstream factory so that reads go through the shared disk cache.
+     */
+    public DataSource.Factory buildDataSourceFactory(DataSource.Factory upstreamFactory) {
+        CacheDataSource.Factory cacheFactory = new CacheDataSource.Factory()
+            .setCache(cache)
+            .setUpstreamDataSourceFactory(upstreamFactory)
+            .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR)
+            .setEventListener(new CacheDataSource.EventListener() {
+                @Override
+                public void onCachedBytesRead(long cacheSizeBytes, long cachedBytesRead) {
+                    bytesReadFromCache.addAndGet(cachedBytesRead);
+                }
+
+                @Override
+                public void onCacheIgnored(int reason) {
+                }
+            });
+        return () -> new CountingDataSource(cacheFactory.createDataSource());
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getBytesReadFromCache() {
+        return bytesReadFromCache.get();
+    }
+
+    public long getCacheSpaceBytes() {
+        return cache.getCacheSpace();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return CLASSTAG + "{hits=" + hits.get()
+            + ", misses=" + misses.get()
+            + ", evictions=" + evictions.get()
+            + ", bytesFromCache=" + bytesReadFromCache.get()
+            + ", size=" + cache.getCacheSpace() + "/" + MAX_CACHE_BYTES + "}";
+    }
+
+    /**
+     * Counts an open as a hit when the requested range already starts with cached data.
+     */
+    private class CountingDataSource implements DataSource {
+        private final DataSource delegate;
+
+        CountingDataSource(DataSource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void addTransferListener(@NonNull TransferListener transferListener) {
+            delegate.addTransferListener(transferListener);
+        }
+
+        @Override
+        public long open(@NonNull DataSpec dataSpec) throws IOException {
+            String key = CacheKeyFactory.DEFAULT.buildCacheKey(dataSpec);
+            long length = dataSpec.length == C.LENGTH_UNSET ? Long.MAX_VALUE : dataSpec.length;
+            if (cache.getCachedLength(key, dataSpec.position, length) > 0) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+            }
+            return delegate.open(dataSpec);
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+            return delegate.read(buffer, offset, length);
+        }
+
+        @Nullable
+        @Override
+        public Uri getUri() {
+            return delegate.getUri();
+        }
+
+        @NonNull
+        @Override
+        public Map<String, List<String>> getResponseHeaders() {
+            return delegate.getResponseHeaders();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    /**
+     * LeastRecentlyUsedCacheEvictor is final, so evictions are counted by delegating to it.
+     * Apart from the rare stale span cleanup, spans are only removed by the evictor.
+     */
+    private class CountingEvictor implements CacheEvictor {
+        private final CacheEvictor delegate;
+
+        CountingEvictor(CacheEvictor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean requiresCacheSpanTouches() {
+            return delegate.requiresCacheSpanTouches();
+        }
+
+        @Override
+        public void onCacheInitialized() {
+            delegate.onCacheInitialized();
+        }
+
+        @Override
+        public void onStartFile(@NonNull Cache cache, @NonNull String key, long position, long length) {
+            delegate.onStartFile(cache, key, position, length);
+        }
+
+        @Override
+        public void onSpanAdded(@NonNull Cache cache, @NonNull CacheSpan span) {
+            delegate.onSpanAdded(cache, span);
+        }
+
+        @Override
+        public void onSpanRemoved(@NonNull Cache cache, @NonNull CacheSpan span) {
+            evictions.incrementAndGet();
+            delegate.onSpanRemoved(cache, span);
+        }
+
+        @Override
+        public void onSpanTouched(@NonNull Cache cache, @NonNull CacheSpan oldSpan, @NonNull CacheSpan newSpan) {
+            delegate.onSpanTouched(cache, oldSpan, newSpan);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.truex.ctv.referenceapp.player;
+
+import com.truex.ctv.referenceapp.ads.Ad;
+
+import java.util.List;
+
+/**
+ * Where playback was when the players were released, so they can be rebuilt and resume at the
+ * same point: the content position and, if a break was playing, the ad and pod position.
+ */
+public class PlaybackSnapshot {
+    public final long contentPositionMs;
+
+    // The pod that was playing, or null if the viewer was watching content
+    public final List<Ad> adBreakAds;
+    public final int adIndex;
+    public final long podPositionMs;
+
+    // A break was about to start, waiting for its creatives to be probed
+    public final boolean adBreakStarting;
+
+    public PlaybackSnapshot(long contentPositionMs, List<Ad> adBreakAds, int adIndex, long podPositionMs, boolean adBreakStarting) {
+        this.contentPositionMs = contentPositionMs;
+        this.adBreakAds = adBreakAds;
+        this.adIndex = adIndex;
+        this.podPositionMs = podPositionMs;
+        this.adBreakStarting = adBreakStarting;
+    }
+
+    public boolean isInAdBreak() {
+        return adBreakAds != null;
+    }
+
+    @Override
+    public String toString() {
+        return isInAdBreak()
+            ? "ad " + adIndex + " of " + adBreakAds.size() + " at pod position " + podPositionMs + "ms, content at " + contentPositionMs + "ms"
+            : "content at " + contentPositionMs + "ms";
+    }
+}
@@ -0,0 +1,119 @@
+package com.truex.ctv.referenceapp.player;
+
+import androidx.annotation.NonNull;
+import androidx.media3.common.PlaybackException;
+import androidx.media3.common.Player;
+import androidx.media3.common.Timeline;
+
+import com.truex.ctv.referenceapp.ads.SubscriberList;
+
+/**
+ * The only Player.Listener registered on a player. Events are fanned out to its subscribers, so
+ * per ad break listeners are subscribed for the break and released with it instead of being
+ * added to the player every time a pod is played.
+ *
+ * Must be used on the player's application thread.
+ */
+public class PlayerEventDispatcher implements Player.Listener {
+    private final Player player;
+    private final SubscriberList<Player.Listener> subscribers = new SubscriberList<>();
+
+    public PlayerEventDispatcher(Player player) {
+        this.player = player;
+        player.addListener(this);
+    }
+
+    public void subscribe(Player.Listener listener) {
+        subscribers.add(listener);
+    }
+
+    public void unsubscribe(Player.Listener listener) {
+        subscribers.remove(listener);
+    }
+
+    /**
+     * Subscribe for the current ad break, until {@link #releaseAdBreakSubscriptions()}.
+     */
+    public void subscribeForAdBreak(Player.Listener listener) {
+        subscribers.addScoped(listener);
+    }
+
+    public void releaseAdBreakSubscriptions() {
+        subscribers.releaseScoped();
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.getSubscriberCount();
+    }
+
+    public void release() {
+        player.removeListener(this);
+        subscribers.releaseScoped();
+    }
+
+    @Override
+    public void onPlaybackStateChanged(int playbackState) {
+        for (int i = 0, n = subscribers.beginDispatch(); i < n; i++) {
+            Player.Listener listener = subscribers.get(i);
+            if (listener != null) {
+                listener.onPlaybackStateChanged(playbackState);
+            }
+        }
+        subscribers.endDispatch();
+    }
+
+    @Override
+    public void onIsPlayingChanged(boolean isPlaying) {
+        for (int i = 0, n = subscribers.beginDispatch(); i < n; i++) {
+            Player.Listener listener = subscribers.get(i);
+            if (listener != null) {
+                listener.onIsPlayingChanged(isPlaying);
+            }
+        }
+        subscribers.endDispatch();
+    }
+
+    @Override
+    public void onTimelineChanged(@NonNull Timeline timeline, int reason) {
+        for (int i = 0, n = subscribers.beginDispatch(); i < n; i++) {
+            Player.Listener listener = subscribers.get(i);
+            if (listener != null) {
+                listener.onTimelineChanged(timeline, reason);
+            }
+        }
+        subscribers.endDispatch();
+    }
+
+    @Override
+    public void onPositionDiscontinuity(@NonNull Player.PositionInfo oldPosition, @NonNull Player.PositionInfo newPosition, int reason) {
+        for (int i = 0, n = subscribers.beginDispatch(); i < n; i++) {
+            Player.Listener listener = subscribers.get(i);
+            if (listener != null) {
+                listener.onPositionDiscontinuity(oldPosition, newPosition, reason);
+            }
+        }
+        subscribers.endDispatch();
+    }
+
+    @Override
+    public void onRenderedFirstFrame() {
+        for (int i = 0, n = subscribers.beginDispatch(); i < n; i++) {
+            Player.Listener listener = subscribers.get(i);
+            if (listener != null) {
+                listener.onRenderedFirstFrame();
+            }
+        }
+        subscribers.endDispatch();
+    }
+
+    @Override
+    public void onPlayerError(@NonNull PlaybackException error) {
+        for (int i = 0, n = subscribers.beginDispatch(); i < n; i++) {
+            Player.Listener listener = subscribers.get(i);
+            if (listener != null) {
+                listener.onPlayerError(error);
+            }
+        }
+        subscribers.endDispatch();
+    }
+}
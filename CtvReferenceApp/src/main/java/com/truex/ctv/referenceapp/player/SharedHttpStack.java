@@ -0,0 +1,58 @@
+package com.truex.ctv.referenceapp.player;
+
+import android.content.Context;
+
+import androidx.annotation.OptIn;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.common.util.Util;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.okhttp.OkHttpDataSource;
+
+import com.truex.ctv.referenceapp.ads.http.HttpStack;
+
+/**
+ * The process-wide {@link HttpStack}, shared by content, ad creatives, VAST documents and
+ * beacons, so they all draw from one connection pool.
+ *
+ * Building it loads the application label and sets up TLS, so it is first built on a startup
+ * background thread. Later callers get the same instance.
+ */
+@OptIn(markerClass = UnstableApi.class)
+public class SharedHttpStack {
+    private static HttpStack instance;
+
+    public static synchronized HttpStack get(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            String applicationName = appContext.getApplicationInfo().loadLabel(appContext.getPackageManager()).toString();
+            instance = new HttpStack(Util.getUserAgent(appContext, applicationName));
+        }
+        return instance;
+    }
+
+    /**
+     * An upstream factory for the players that loads over the shared client.
+     */
+    public static DataSource.Factory buildDataSourceFactory(Context context) {
+        HttpStack stack = get(context);
+        return new OkHttpDataSource.Factory(stack.getClient())
+            .setUserAgent(stack.getUserAgent());
+    }
+
+    /**
+     * Close the idle connections of the shared stack, without building it if it was not built yet.
+     *
+     * @return the number of connections closed
+     */
+    public static synchronized int evictIdleConnections() {
+        if (instance == null) {
+            return 0;
+        }
+        int count = instance.getClient().connectionPool().idleConnectionCount();
+        instance.evictIdleConnections();
+        return count;
+    }
+
+    private SharedHttpStack() {
+    }
+}